@@ -0,0 +1,110 @@
+/**
+ * Class which holds the number of steps between every two open tiles of a small map. Only the open
+ * tiles are numbered, each pair is stored once, and a distance takes a single byte on maps of fewer
+ * than 255 open tiles and two bytes otherwise, so the table of a map of 2000 open tiles takes about 4MB.
+ * It is computed once, with one breadth first search from each open tile, and shared by every game
+ * played on the map.
+ */
+public final class AllPairsDistances {
+
+    // declaring fields
+    public static final int UNREACHABLE = PathFinder.UNREACHABLE;
+    public static final int MAX_TILES = 2048; // larger maps do not get a table
+    private static final int BYTE_UNREACHABLE = 0xFF; // the distances fit in bytes when they are below it
+    private static final int CHAR_UNREACHABLE = 0xFFFF;
+    private final int[] numbers; // number of each tile of the map, -1 for walls
+    private final int[] tiles; // index in the map of each numbered tile
+    private final byte[] byteDistances; // distances of the pairs, if they all fit in a byte
+    private final char[] charDistances; // otherwise
+    private final int unreachable; // value stored for the pairs which cannot reach each other
+
+    /**
+     * Constructor which computes the distances between every two open tiles.
+     * @param grid WalkableGrid of the map, with at most MAX_TILES open tiles
+     */
+    public AllPairsDistances(WalkableGrid grid){
+        int size = grid.getRows() * grid.getColumns();
+        numbers = new int[size];
+        int count = 0;
+        for(int index = 0; index < size; index++){
+            numbers[index] = grid.isWalkable(index) ? count++ : -1;
+        }
+        if(count > MAX_TILES){
+            throw new IllegalArgumentException("The map has " + count + " open tiles, more than " + MAX_TILES);
+        }
+        tiles = new int[count];
+        for(int index = 0; index < size; index++){
+            if(numbers[index] != -1){
+                tiles[numbers[index]] = index;
+            }
+        }
+        // a path visits each open tile at most once, so it is shorter than the number of open tiles
+        boolean small = count < BYTE_UNREACHABLE;
+        long pairs = (long) count * (count - 1) / 2;
+        byteDistances = small ? new byte[(int) pairs] : null;
+        charDistances = small ? null : new char[(int) pairs];
+        unreachable = small ? BYTE_UNREACHABLE : CHAR_UNREACHABLE;
+        PathFinder pathFinder = PathFinder.forCurrentThread();
+        for(int from = 0; from < count; from++){
+            pathFinder.fill(grid, tiles[from]);
+            for(int to = from + 1; to < count; to++){
+                int distance = pathFinder.getDistance(tiles[to]);
+                int stored = distance == PathFinder.UNREACHABLE ? unreachable : distance;
+                int pair = pair(from, to);
+                if(small){
+                    byteDistances[pair] = (byte) stored;
+                }
+                else{
+                    charDistances[pair] = (char) stored;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the number of steps between two tiles.
+     * @param from index of a tile of the map, row * columns + column
+     * @param to index of another tile of the map
+     * @return number of steps, or UNREACHABLE if either tile is a wall or they cannot reach each other
+     */
+    public int get(int from, int to){
+        int first = numbers[from];
+        int second = numbers[to];
+        if(first == -1 || second == -1){
+            return UNREACHABLE;
+        }
+        if(first == second){
+            return 0;
+        }
+        int pair = first < second ? pair(first, second) : pair(second, first);
+        int stored = byteDistances != null ? byteDistances[pair] & 0xFF : charDistances[pair];
+        return stored == unreachable ? UNREACHABLE : stored;
+    }
+
+    /**
+     * Return the number of open tiles.
+     * @return number of tiles in the table
+     */
+    public int getOpenTiles(){
+        return tiles.length;
+    }
+
+    /**
+     * Return the index in the map of an open tile.
+     * @param number number of the open tile, from 0 to getOpenTiles() - 1
+     * @return index of the tile
+     */
+    public int getTile(int number){
+        return tiles[number];
+    }
+
+    /**
+     * Return the position of a pair in the table, which holds the pairs (0, 1), (0, 2)... (1, 2)...
+     * @param first number of the first tile
+     * @param second number of the second tile, larger than the first
+     * @return position of the pair
+     */
+    private int pair(int first, int second){
+        return (int) ((long) first * (2L * tiles.length - first - 1) / 2) + second - first - 1;
+    }
+}
@@ -1,4 +1,3 @@
-import java.util.ArrayList; //used to implement array lists
 import java.util.Random; //used to get random decisions
 
 /**
@@ -8,18 +7,37 @@ import java.util.Random; //used to get random decisions
  */
 public class BotPlayer extends Player {
 
-    private ArrayList<char[]> memoryMap; // 5*5 grid shown when calling look command
+    /**
+     * The ways a bot can play.
+     */
+    public enum Strategy {
+        LOCAL, // only knows the grid of its last look, and moves randomly when the player is not in it
+        PLANNING // remembers the whole map it has seen and plans its way over it (see PlanningBotPlayer)
+    }
+
+    private LookView memoryMap; // 5*5 grid shown when calling look command
     private int Decision = 1; // counter to alternate between moving and looking
     private boolean PlayerFound = false;
     private int playerRow;
     private int playerColumn;
+    private final Random random; // used for the random movements
 
     /**
      * Constructor which calls the super() method
      * from its parent class.
      */
     public BotPlayer() {
+        this(new Random());
+    }
+
+    /**
+     * Constructor which uses a specified source of randomness
+     * for the random movements, so games can be replayed from a seed.
+     * @param random Random object used for the random movements
+     */
+    public BotPlayer(Random random) {
         super();
+        this.random = random;
     }
 
     /**
@@ -51,9 +69,10 @@ public class BotPlayer extends Player {
      * Updates the memoryMap variable with the 5*5 grid obtained
      * when the bot calls the look command.
      * @param visibleMap 5*5 grid which is shown to the bot
-                        when calling the look command
+                        when calling the look command; it is filled
+                        again by the bot's next look
      */
-    public void updateMemoryMap(ArrayList<char[]> visibleMap){
+    public void updateMemoryMap(LookView visibleMap){
         memoryMap = visibleMap;
     }
 
@@ -81,79 +100,45 @@ public class BotPlayer extends Player {
     }
 
     /**
-     * Makes use of Lee's algorithm for shortest path finding, implemented in the Lee class
+     * Makes use of the thread's PathFinder (Lee's algorithm on primitive arrays)
      * to find the shortest path to the player's position.
      * @return the first move the bot has to make, from this shortest path
      */
     private String pathToPlayer()
     {
-        /*
-         * coordinates which will be updated, as we backtrack our way
-         * from target to start
-         */
-        int leeRow = playerRow;
-        int leeColumn = playerColumn;
-        int[][] leeMap; // map which contains the minimum number of moves from the center to each point
-        /*
-         * create a Lee object, which will generate
-         * the map of minimum steps to each point from the centre
-         * based on grid obtained from the "look" command
-         */
-        Lee lee = new Lee(memoryMap);
-        leeMap = lee.getLeeMap();
-
-        // Player is in an unreachable position (only apparently)
-        if(leeMap[leeRow][leeColumn] == 26){
-            return randomMovement();
+        int centre = LookView.CENTRE * LookView.SIZE + LookView.CENTRE;
+        int step = PathFinder.forCurrentThread().firstStep(memoryMap, centre, playerRow * LookView.SIZE + playerColumn);
+        // Being 1 step away from the source, we are in one of th 4 possible adjacent positions
+        if(step == centre + 1){
+            return "move e";
         }
-
-        // Keep backtracking from the target, until we are 1 step away from the source
-        while(leeMap[leeRow][leeColumn] != 1){
-            // Check for map limits
-            if(leeRow > 0){
-                if(leeMap[leeRow - 1][leeColumn] < leeMap[leeRow][leeColumn]){
-                    leeRow -= 1;
-                    continue;
-                }
-            }
-            if(leeColumn > 0){
-                if(leeMap[leeRow][leeColumn - 1] < leeMap[leeRow][leeColumn]){
-                    leeColumn -= 1;
-                    continue;
-                }
-            }
-            if(leeRow < 4){
-                if(leeMap[leeRow + 1][leeColumn] < leeMap[leeRow][leeColumn]){
-                    leeRow += 1;
-                    continue;
-                }
-            }
-            if(leeColumn < 4){
-                if(leeMap[leeRow][leeColumn + 1] < leeMap[leeRow][leeColumn]){
-                    leeColumn += 1;
-                }
-            }
+        if(step == centre - 1){
+            return "move w";
         }
-
-        // Being 1 step away from the source, we are in one of th 4 possible adjacent positions
-        if(leeRow == 2){
-            if(leeColumn == 3){
-                return "move e";
-            }
-            if(leeColumn == 1){
-                return "move w";
-            }
+        if(step == centre + LookView.SIZE){
+            return "move s";
         }
-        if(leeColumn == 2){
-            if(leeRow == 3){
-                return "move s";
-            }
-            if(leeRow == 1){
-                return "move n";
-            }
+        if(step == centre - LookView.SIZE){
+            return "move n";
         }
+        // Player is in an unreachable position (only apparently)
+        return randomMovement();
+    }
+
+    /**
+     * Returns whether the player was in the grid of the last "look" command.
+     * @return true if the player was seen
+     */
+    protected boolean isPlayerFound(){
+        return PlayerFound;
+    }
 
-        return randomMovement(); // if anything went wrong along the way, end the function with a random movement
+    /**
+     * Returns the source of randomness of the bot.
+     * @return Random object
+     */
+    protected Random getRandom(){
+        return random;
     }
 
     /**
@@ -162,20 +147,20 @@ public class BotPlayer extends Player {
      * The bot will use its knowledge from the previous "look" command to
      * make sure that its decision will always be a success.
      * @return the command "move " + the direction*/
-    private String randomMovement(){
+    protected String randomMovement(){
         while(true){
             String decision = "move ";
-            int direction = new Random().nextInt(1000)%4;
+            int direction = random.nextInt(4);
             char mapCharacter = ' ';
             // get the tile character on which the bot would land, based on its "random" decision
             switch (direction){
-                case 0: mapCharacter = memoryMap.get(2)[3];
+                case 0: mapCharacter = memoryMap.get(2, 3);
                             decision = decision.replace("move ", "move e"); break;
-                case 1: mapCharacter = memoryMap.get(2)[1];
+                case 1: mapCharacter = memoryMap.get(2, 1);
                             decision = decision.replace("move ", "move w"); break;
-                case 2: mapCharacter = memoryMap.get(1)[2];
+                case 2: mapCharacter = memoryMap.get(1, 2);
                             decision = decision.replace("move ", "move n"); break;
-                case 3: mapCharacter = memoryMap.get(3)[2];
+                case 3: mapCharacter = memoryMap.get(3, 2);
                             decision = decision.replace("move ", "move s"); break;
             }
             // check if it is valid or not
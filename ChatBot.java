@@ -9,9 +9,10 @@ public class ChatBot extends ChatClient {
      * Constructor which calls the super method on its parent.
      * @param address String IP address of the server
      * @param port integer representing the port number of the port
+     * @param binaryProtocol true to use the binary protocol, false to use the text protocol
      */
-    public ChatBot(String address, int port){
-        super(address, port);
+    public ChatBot(String address, int port, boolean binaryProtocol){
+        super(address, port, binaryProtocol);
     }
 
     /**
@@ -60,16 +61,14 @@ public class ChatBot extends ChatClient {
             public void run(){
                 try{
                     while(!isServerClosed){
-                        String serverResponse = serverIn.readLine();
-                        // find the sender's name
-                        String senderName = serverResponse.substring(0, serverResponse.indexOf(':'));
-                        if(!name.equals(senderName)) {
-                            System.out.println(serverResponse);
+                        ChatMessage serverResponse = receiveMessage();
+                        if(!name.equals(serverResponse.getSenderName())) {
+                            System.out.println(serverResponse.getLine());
                         }
                         // check if message is "hey quacky"
-                        if(serverResponse.substring(serverResponse.indexOf(":") + 2).
-                                toLowerCase().equals("hey quacky")){
-                            serverOut.println(name + ": Quack Quack!!");
+                        if(serverResponse.getSenderName() != null &&
+                                serverResponse.getText().toLowerCase().equals("hey quacky")){
+                            sendToServer("Quack Quack!!");
                         }
                     }
                 } catch (IOException e){
@@ -88,12 +87,13 @@ public class ChatBot extends ChatClient {
      * Main method which creates a new ChatBot and initializes the object. A connection is made
      * to the client.
      * @param args String[] which contains command line arguments
-     *            such as the IP address and the port for the server
+     *            such as the IP address and the port for the server, and the protocol
      */
     public static void main(String[] args) {
-        // default address and port
+        // default address, port and protocol
         String address = "localhost";
         String port = "14001";
+        boolean binaryProtocol = false;
         for(int index = 0; index < args.length; index++){
             if(args[index].equals("-cca")){
                 address = args[index+1];
@@ -102,8 +102,11 @@ public class ChatBot extends ChatClient {
             else if (args[index].equals("-ccp")){
                 port = args[index+1];
             }
+            else if (args[index].equals("-protocol")){
+                binaryProtocol = args[index+1].equals("binary");
+            }
         }
-        ChatBot Quacky = new ChatBot(address, Integer.parseInt(port));
+        ChatBot Quacky = new ChatBot(address, Integer.parseInt(port), binaryProtocol);
         Quacky.go();
     }
 
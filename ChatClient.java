@@ -1,13 +1,20 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.ConnectException;
 import java.net.Socket;
+import java.util.HashMap;
 
 /**
  * Class representing the client. Handles receiving input from the user, sending it to the server
- * and printing messages from the server to the user.
+ * and printing messages from the server to the user. The client talks to the server either with
+ * the text protocol or, if requested, with the binary protocol described in WireProtocol.
  */
 public class ChatClient {
 
@@ -16,27 +23,54 @@ public class ChatClient {
     public String name; // client's username
     public BufferedReader userIn; // BufferedReader for user input
     public PrintWriter serverOut; // Writer to the server
-    public BufferedReader serverIn; // BufferedReader for the server's messages
+    public BufferedReader serverIn; // BufferedReader for the server's messages (text protocol)
+    public boolean binaryProtocol; // value is true if the client uses the binary protocol
+    public DataInputStream serverDataIn; // stream of the server's messages (binary protocol)
+    public DataOutputStream serverDataOut; // stream to the server (binary protocol)
+    private final HashMap<Integer, String> senderNames = new HashMap<>(); // announced by the server
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(); // reused to read lines
     public boolean isServerClosed = false; // value is true if the server is closed
+    private volatile boolean isDisconnecting = false; // value is true once the user has asked to disconnect
     public Thread printingThread;
     public Thread listeningThread;
-    private boolean isPlaying = false; // value is true if user is playing DOD
+    private boolean isPlaying = false; // value is true if user is playing DOD in the console
+    private static final String LOCAL_PLAY_COMMAND = "/play DOD local"; // plays without the server
     // String containing the instructions for the user when joining the server
     private static final String CONFIRMATION_MESSAGE = "Thank you for joining the server...enjoy!\n" +
-            "To play DOD, enter in the" + " chat the command: '/play DOD'.\n" + "To make Quacky quack, just say" +
-            " in the chat: 'hey Quacky'.\n" + "If Quacky does not quack, it might be that it isn't connected.";
+            "To play DOD, enter in the" + " chat the command: '/play DOD' ('/play DOD local' to play offline).\n" + "To make Quacky quack, just say" +
+            " in the chat: 'hey Quacky'.\n" + "If Quacky does not quack, it might be that it isn't connected.\n" +
+            "To talk in other rooms, use '/join <room>', '/leave <room>' and '/rooms'.\n" +
+            "To message one user only, use '/msg <user> <message>'.";
 
     /**
-     * Constructor which establishes the connection to the server and creates the input and output streams
+     * Constructor which establishes the connection to the server, using the text protocol.
      * @param address String representing the IP address of the server
      * @param port integer representing the port of the server
      */
     public ChatClient(String address, int port){
+        this(address, port, false);
+    }
+
+    /**
+     * Constructor which establishes the connection to the server and creates the input and output streams
+     * @param address String representing the IP address of the server
+     * @param port integer representing the port of the server
+     * @param binaryProtocol true to use the binary protocol, false to use the text protocol
+     */
+    public ChatClient(String address, int port, boolean binaryProtocol){
+        this.binaryProtocol = binaryProtocol;
         try{
             server = new Socket(address, port);
             userIn = new BufferedReader(new InputStreamReader(System.in));
             serverOut = new PrintWriter(server.getOutputStream(), true);
-            serverIn = new BufferedReader(new InputStreamReader(server.getInputStream()));
+            if(binaryProtocol){
+                // read byte by byte, so the first frames are not swallowed while reading the handshake lines
+                serverDataIn = new DataInputStream(new BufferedInputStream(server.getInputStream()));
+                serverDataOut = new DataOutputStream(new BufferedOutputStream(server.getOutputStream()));
+            }
+            else{
+                serverIn = new BufferedReader(new InputStreamReader(server.getInputStream()));
+            }
         } catch(ConnectException e){
             System.out.println("Whoops...Looks like the server is down...");
             System.exit(0);
@@ -79,9 +113,80 @@ public class ChatClient {
         return userIn;
     }
 
+    /**
+     * Read a line sent by the server during the handshake.
+     * @return String representing the line, or null if the server closed the connection
+     * @throws IOException if the connection cannot be read
+     */
+    public String readServerLine() throws IOException {
+        return binaryProtocol ? WireProtocol.readLine(serverDataIn, lineBuffer) : serverIn.readLine();
+    }
+
+    /**
+     * Wait for the next message from the server, whatever the protocol.
+     * @return ChatMessage object containing the sender and the text of the message,
+     *          or null if the server closed the connection
+     * @throws IOException if the connection cannot be read
+     */
+    public ChatMessage receiveMessage() throws IOException {
+        if(!binaryProtocol){
+            String line = serverIn.readLine();
+            return line == null ? null : ChatMessage.parseLine(line);
+        }
+        while(true){
+            WireProtocol.Frame frame = WireProtocol.readFrame(serverDataIn);
+            if(frame == null){
+                return null;
+            }
+            switch (frame.getType()){
+                case WireProtocol.SENDER:
+                    // remember the sender's name, so the following messages only carry its id
+                    senderNames.put(frame.getSenderId(), frame.getPayload());
+                    break;
+                case WireProtocol.MESSAGE:
+                    String senderName = senderNames.getOrDefault(frame.getSenderId(), "user" + frame.getSenderId());
+                    return new ChatMessage(frame.getSenderId(), senderName, frame.getPayload());
+                default:
+                    return ChatMessage.fromServer(frame.getPayload());
+            }
+        }
+    }
+
+    /**
+     * Send a chat message written by the user to the server.
+     * With the text protocol, it uses the format: "user-name: message".
+     * @param userInput String representing the message
+     * @throws IOException if the connection cannot be written
+     */
+    public synchronized void sendToServer(String userInput) throws IOException {
+        if(binaryProtocol){
+            WireProtocol.writeFrame(serverDataOut, WireProtocol.MESSAGE, 0, userInput);
+        }
+        else{
+            serverOut.println(name + ": " + userInput);
+        }
+    }
+
+    /**
+     * Send a command, such as "/disconnect" or "/join <room>", to the server. With the binary
+     * protocol, it is sent as a COMMAND frame; with the text protocol, without the user-name.
+     * @param command String representing the command
+     * @throws IOException if the connection cannot be written
+     */
+    public synchronized void sendCommand(String command) throws IOException {
+        if(binaryProtocol){
+            WireProtocol.writeFrame(serverDataOut, WireProtocol.COMMAND, 0, command);
+        }
+        else{
+            serverOut.println(command);
+        }
+    }
+
     /**
      * Creates a new inner thread object which listens for input from the user.
-     * Handles 2 special commands, "/disconnect" and "/play DOD".
+     * Handles 2 special commands, "/disconnect" and "/play DOD local". Other input, including
+     * "/play DOD" which starts a game hosted by the server, is sent to the server, as a command
+     * if it starts with "/".
      */
     public void createListeningThread(){
         listeningThread = new Thread() {
@@ -91,26 +196,30 @@ public class ChatClient {
                     String userInput = userIn.readLine();
                     // if the user inputs "/disconnect", then close the connection
                     while(!userInput.equals("/disconnect")){
-                        // if the user inputs "/play DOD", then start a new game for the user
-                        if(userInput.equals("/play DOD")){
+                        // if the user inputs "/play DOD local", then start a new game in the console
+                        if(userInput.equals(LOCAL_PLAY_COMMAND)){
                             // update the value of "isPlaying" accordingly
                             isPlaying = true;
                             new DungeonsOfDoom(getInstance());
                             isPlaying = false;
                         }
+                        else if(userInput.startsWith("/")){
+                            sendCommand(userInput);
+                        }
                         else{
-                            /*
-                            Send the user's message to the server.
-                            Use the format: "user-name: message".
-                             */
-                            serverOut.println(name + ": " + userInput);
+                            // Send the user's message to the server.
+                            sendToServer(userInput);
                         }
                         if(isServerClosed){
                             break;
                         }
                         userInput = userIn.readLine();
                     }
-                    // close the connection with the server
+                    // let the server know the user leaves, then close the connection with the server
+                    isDisconnecting = true;
+                    if(!isServerClosed){
+                        sendCommand("/disconnect");
+                    }
                     server.close();
                 }catch (IOException e){
                     e.printStackTrace();
@@ -130,17 +239,22 @@ public class ChatClient {
             public void run(){
                 try{
                     while(!isServerClosed){
-                        String serverResponse = serverIn.readLine();
-                        // find the sender's username
-                        String senderName = serverResponse.substring(0, serverResponse.indexOf(':'));
-                        if(!name.equals(senderName) && !isPlaying) {
-                            System.out.println(serverResponse);
+                        ChatMessage serverResponse = receiveMessage();
+                        // do not show the user's own messages
+                        if(!name.equals(serverResponse.getSenderName()) && !isPlaying) {
+                            System.out.println(serverResponse.getLine());
                         }
                     }
                 } catch (IOException e){
                     System.out.println("Disconnecting from the server...");
                     System.out.println("You disconnected from the server...hope to see you back soon!");
                 } catch (NullPointerException e){
+                    // the server closes the connection of a user who disconnects
+                    if(isDisconnecting){
+                        System.out.println("Disconnecting from the server...");
+                        System.out.println("You disconnected from the server...hope to see you back soon!");
+                        return;
+                    }
                     System.out.println("Whoops...Looks like the server is down...");
                     isServerClosed = true;
                     System.exit(0);
@@ -158,15 +272,23 @@ public class ChatClient {
 
         // send the chosen user-name to the server and wait for a confirmation that it is available
         try{
+            // ask for the binary protocol first, if needed
+            if(binaryProtocol){
+                serverOut.println(WireProtocol.PROTOCOL_REQUEST);
+                if(!WireProtocol.PROTOCOL_REQUEST.equals(readServerLine())){
+                    System.out.println("Whoops...Looks like the server does not support the binary protocol...");
+                    System.exit(0);
+                }
+            }
             serverOut.println(name);
-            String confirmation = serverIn.readLine();
+            String confirmation = readServerLine();
             // confirmation from the server
             while(!confirmation.equals("Thank you for joining the server...enjoy!")){
                 // keep trying until a valid user-name is entered
                 System.out.println(confirmation);
                 setUserName();
                 serverOut.println(name);
-                confirmation = serverIn.readLine();
+                confirmation = readServerLine();
             }
             System.out.println(CONFIRMATION_MESSAGE);
         } catch (IOException e){
@@ -186,12 +308,13 @@ public class ChatClient {
     /**
      * Main method which establishes the connection to the server.
      * @param args String[] containing the command line arguments
-     *             which can specify the IP address and port of the server
+     *             which can specify the IP address and port of the server, and the protocol
      */
     public static void main(String[] args) {
-        // default address and port
+        // default address, port and protocol
         String address = "localhost";
         String port = "14001";
+        boolean binaryProtocol = false;
         for(int index = 0; index < args.length; index++){
             if(args[index].equals("-cca")){
                 address = args[index+1];
@@ -200,8 +323,11 @@ public class ChatClient {
             else if (args[index].equals("-ccp")){
                 port = args[index+1];
             }
+            else if (args[index].equals("-protocol")){
+                binaryProtocol = args[index+1].equals("binary");
+            }
         }
-        ChatClient myClient = new ChatClient(address, Integer.parseInt(port));
+        ChatClient myClient = new ChatClient(address, Integer.parseInt(port), binaryProtocol);
         myClient.go();
     }
 }
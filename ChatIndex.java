@@ -0,0 +1,355 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Class which indexes the chat log, so moderators can search it without reading it: an inverted
+ * index from each word to the offsets of the messages containing it, and an index from each sender
+ * to the offsets of its messages. Both are posting lists of delta-encoded varints (see PostingList).
+ *
+ * The index is built by a thread of its own which follows the end of the log, so sending a message
+ * costs nothing more than appending it to the log. Once a segment of the log is complete, its part
+ * of the index is saved next to it, in a file with the same name and the ".idx" suffix, so a
+ * restarted server only reads the segments whose index is missing.
+ */
+public class ChatIndex implements Runnable {
+
+    // declaring fields
+    public static final int MAX_TERM_LENGTH = 64; // longer words are not indexed
+    public static final int MAX_READ_RECORDS = 4096; // records a query reads at most, looking for visible ones
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_MAGIC = 0x43494458; // "CIDX", first bytes of an index file
+    private static final long POLL_INTERVAL_MILLIS = 50; // how often the end of the log is checked
+    private final ChatLog chatLog;
+    // the whole index; only changed by the indexing thread, read by the commands, guarded by this
+    private final HashMap<String, PostingList> terms = new HashMap<>();
+    private final HashMap<String, PostingList> senders = new HashMap<>();
+    // index of the segment being indexed, saved once it is complete; only used by the indexing thread
+    private HashMap<String, PostingList> segmentTerms = new HashMap<>();
+    private HashMap<String, PostingList> segmentSenders = new HashMap<>();
+    private volatile long indexedMessages = 0;
+    private volatile boolean closed = false;
+    private final Thread indexer;
+
+    /**
+     * Constructor which starts indexing a chat log in the background.
+     * @param chatLog ChatLog to index
+     */
+    public ChatIndex(ChatLog chatLog){
+        this.chatLog = chatLog;
+        indexer = new Thread(this, "chat-log-indexer");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    /**
+     * Load the saved index of the complete segments, then index the rest of the log and keep
+     * following its end until the index is closed. Runs on the indexing thread.
+     */
+    @Override
+    public void run(){
+        List<Long> baseOffsets = chatLog.getSegmentBaseOffsets();
+        long next = baseOffsets.get(0);
+        // the last segment is still appended to, so it never has a saved index
+        for(int index = 0; index < baseOffsets.size() - 1 && loadSegmentIndex(baseOffsets.get(index)); index++){
+            next = baseOffsets.get(index + 1);
+        }
+        long segmentBase = chatLog.getSegmentBaseOffset(next);
+        while(!closed){
+            LogRecord record;
+            while((record = chatLog.read(next)) != null){
+                long recordSegment = chatLog.getSegmentBaseOffset(record.getOffset());
+                if(recordSegment != segmentBase){
+                    saveSegmentIndex(segmentBase);
+                    segmentBase = recordSegment;
+                }
+                index(record);
+                next = record.getNextOffset();
+            }
+            try{
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e){
+                break;
+            }
+        }
+    }
+
+    /**
+     * Add a record to the index.
+     * @param record LogRecord to index
+     */
+    private void index(LogRecord record){
+        long offset = record.getOffset();
+        Set<String> words = tokenize(record.getText());
+        synchronized (this){
+            for(String word:words){
+                terms.computeIfAbsent(word, key -> new PostingList()).add(offset);
+            }
+            senders.computeIfAbsent(record.getSenderName(), key -> new PostingList()).add(offset);
+        }
+        for(String word:words){
+            segmentTerms.computeIfAbsent(word, key -> new PostingList()).add(offset);
+        }
+        segmentSenders.computeIfAbsent(record.getSenderName(), key -> new PostingList()).add(offset);
+        indexedMessages++;
+    }
+
+    /**
+     * Split a text into the words which are indexed: runs of letters and digits, in lower case.
+     * @param text String representing the text of a message or a query
+     * @return Set of the distinct words, in the order they appear
+     */
+    public static Set<String> tokenize(String text){
+        Set<String> words = new LinkedHashSet<>();
+        int start = -1;
+        for(int index = 0; index <= text.length(); index++){
+            boolean wordCharacter = index < text.length() && Character.isLetterOrDigit(text.charAt(index));
+            if(wordCharacter && start < 0){
+                start = index;
+            }
+            else if(!wordCharacter && start >= 0){
+                if(index - start <= MAX_TERM_LENGTH){
+                    words.add(text.substring(start, index).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Return the most recent messages which contain every word of a query, among the messages of some rooms.
+     * @param query String representing the words to look for
+     * @param limit maximum number of messages to return
+     * @param rooms Set of the names of the rooms whose messages can be returned
+     * @return List of LogRecord objects, oldest first
+     */
+    public List<LogRecord> search(String query, int limit, Set<String> rooms){
+        Set<String> words = tokenize(query);
+        if(words.isEmpty()){
+            return new ArrayList<>();
+        }
+        long[] matches = null;
+        for(String word:words){
+            long[] offsets;
+            synchronized (this){
+                PostingList postings = terms.get(word);
+                offsets = postings == null ? new long[0] : postings.toArray();
+            }
+            matches = matches == null ? offsets : intersect(matches, offsets);
+            if(matches.length == 0){
+                break;
+            }
+        }
+        return readLatest(matches, limit, rooms);
+    }
+
+    /**
+     * Return the most recent messages sent by a user, among the messages of some rooms.
+     * @param senderName String representing the user-name of the sender
+     * @param limit maximum number of messages to return
+     * @param rooms Set of the names of the rooms whose messages can be returned
+     * @return List of LogRecord objects, oldest first
+     */
+    public List<LogRecord> history(String senderName, int limit, Set<String> rooms){
+        long[] offsets;
+        synchronized (this){
+            PostingList postings = senders.get(senderName);
+            offsets = postings == null ? new long[0] : postings.toArray();
+        }
+        return readLatest(offsets, limit, rooms);
+    }
+
+    /**
+     * Return the offsets which are in both of two ascending arrays.
+     * @param first array of offsets, ascending
+     * @param second array of offsets, ascending
+     * @return array of the common offsets, ascending
+     */
+    private static long[] intersect(long[] first, long[] second){
+        long[] common = new long[Math.min(first.length, second.length)];
+        int count = 0;
+        int firstIndex = 0;
+        int secondIndex = 0;
+        while(firstIndex < first.length && secondIndex < second.length){
+            if(first[firstIndex] < second[secondIndex]){
+                firstIndex++;
+            }
+            else if(first[firstIndex] > second[secondIndex]){
+                secondIndex++;
+            }
+            else{
+                common[count++] = first[firstIndex];
+                firstIndex++;
+                secondIndex++;
+            }
+        }
+        long[] result = new long[count];
+        System.arraycopy(common, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Read the records at the last offsets of an array which were sent to some rooms, newest first,
+     * reading at most MAX_READ_RECORDS records.
+     * @param offsets array of offsets, ascending
+     * @param limit maximum number of records to return
+     * @param rooms Set of the names of the rooms whose records can be returned
+     * @return List of LogRecord objects, oldest first
+     */
+    private List<LogRecord> readLatest(long[] offsets, int limit, Set<String> rooms){
+        List<LogRecord> records = new ArrayList<>();
+        int stop = Math.max(0, offsets.length - MAX_READ_RECORDS);
+        for(int index = offsets.length - 1; index >= stop && records.size() < limit; index--){
+            LogRecord record = chatLog.read(offsets[index]);
+            if(record != null && rooms.contains(record.getRoom())){
+                records.add(record);
+            }
+        }
+        Collections.reverse(records);
+        return records;
+    }
+
+    /**
+     * Save the index of a complete segment next to it, and start the index of the next segment.
+     * @param baseOffset base offset of the complete segment
+     */
+    private void saveSegmentIndex(long baseOffset){
+        Path file = indexFile(baseOffset);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))){
+            out.writeInt(INDEX_MAGIC);
+            writePostings(out, segmentTerms);
+            writePostings(out, segmentSenders);
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+        try{
+            // the index file only appears once it is complete
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+        segmentTerms = new HashMap<>();
+        segmentSenders = new HashMap<>();
+    }
+
+    /**
+     * Add the saved index of a complete segment to the index.
+     * @param baseOffset base offset of the segment
+     * @return true if the index was loaded, false if it is missing or not valid
+     */
+    private boolean loadSegmentIndex(long baseOffset){
+        HashMap<String, PostingList> loadedTerms;
+        HashMap<String, PostingList> loadedSenders;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile(baseOffset))))){
+            if(in.readInt() != INDEX_MAGIC){
+                return false;
+            }
+            loadedTerms = readPostings(in);
+            loadedSenders = readPostings(in);
+        } catch (NoSuchFileException e){
+            return false;
+        } catch (IOException e){
+            System.out.println("Cannot read the index of segment " + baseOffset + "...indexing it again.");
+            return false;
+        }
+        long messages = 0;
+        synchronized (this){
+            merge(terms, loadedTerms);
+            merge(senders, loadedSenders);
+        }
+        for(PostingList postings:loadedSenders.values()){
+            messages += postings.size();
+        }
+        indexedMessages += messages;
+        return true;
+    }
+
+    /**
+     * Append the offsets of a segment's posting lists to the lists of the whole index.
+     * The segment must follow every segment already in the index.
+     * @param index HashMap of the whole index
+     * @param segment HashMap of the segment's index
+     */
+    private static void merge(HashMap<String, PostingList> index, HashMap<String, PostingList> segment){
+        for(java.util.Map.Entry<String, PostingList> entry:segment.entrySet()){
+            PostingList postings = index.computeIfAbsent(entry.getKey(), key -> new PostingList());
+            for(long offset:entry.getValue().toArray()){
+                postings.add(offset);
+            }
+        }
+    }
+
+    /**
+     * Write posting lists to a stream.
+     * @param out DataOutputStream to write to
+     * @param postings HashMap of the posting lists, by key
+     * @throws IOException if the stream cannot be written
+     */
+    private static void writePostings(DataOutputStream out, HashMap<String, PostingList> postings) throws IOException {
+        out.writeInt(postings.size());
+        for(java.util.Map.Entry<String, PostingList> entry:postings.entrySet()){
+            out.writeUTF(entry.getKey());
+            entry.getValue().writeTo(out);
+        }
+    }
+
+    /**
+     * Read posting lists written by writePostings().
+     * @param in DataInputStream to read from
+     * @return HashMap of the posting lists, by key
+     * @throws IOException if the stream cannot be read or is not valid
+     */
+    private static HashMap<String, PostingList> readPostings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if(size < 0){
+            throw new IOException("Invalid index");
+        }
+        HashMap<String, PostingList> postings = new HashMap<>();
+        for(int index = 0; index < size; index++){
+            String key = in.readUTF();
+            postings.put(key, PostingList.readFrom(in));
+        }
+        return postings;
+    }
+
+    /**
+     * Return the index file of a segment.
+     * @param baseOffset base offset of the segment
+     * @return Path of the index file, next to the segment
+     */
+    private Path indexFile(long baseOffset){
+        String segmentName = LogSegment.fileName(baseOffset);
+        return chatLog.getDirectory().resolve(segmentName.substring(0, segmentName.lastIndexOf('.')) + INDEX_SUFFIX);
+    }
+
+    /**
+     * Return the number of messages in the index.
+     * @return number of indexed messages
+     */
+    public long getIndexedMessages(){
+        return indexedMessages;
+    }
+
+    /**
+     * Stop following the log.
+     */
+    public void close(){
+        closed = true;
+        indexer.interrupt();
+    }
+}
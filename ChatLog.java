@@ -0,0 +1,293 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Class which persists the chat: an append-only log of the messages sent to the rooms, split into
+ * memory-mapped segment files (see LogSegment). Appending a message only copies it into the mapped
+ * file; a background thread writes the appended records to the disk every flush interval, so all
+ * the messages of an interval share one fsync and the broadcasts never wait for the disk.
+ */
+public class ChatLog {
+
+    // declaring fields
+    private final Path directory;
+    private final int segmentSize; // size of a new segment file
+    private final long flushIntervalMillis; // 0 writes every message to the disk before returning
+    private final List<LogSegment> segments = new ArrayList<>(); // oldest first, the last one is appended to
+    private LogSegment activeSegment;
+    private final int tailSegment; // index of the segment which was last when the log was opened
+    private volatile boolean dirty = false; // value is true if records were appended since the last flush
+    // offset after the last appended record; records before it can be read by any thread
+    private volatile long endOffset;
+    private volatile boolean closed = false;
+    private Thread flusher;
+
+    /**
+     * Constructor which opens the log in a directory, creating it if needed.
+     * @param directory Path of the directory holding the segment files
+     * @param segmentSize size of a new segment file, in bytes
+     * @param flushIntervalMillis how often the appended records are written to the disk, in milliseconds
+     * @throws IOException if the directory or the segments cannot be opened
+     */
+    public ChatLog(Path directory, int segmentSize, long flushIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        Files.createDirectories(directory);
+        List<Long> baseOffsets = new ArrayList<>();
+        try(Stream<Path> files = Files.list(directory)){
+            files.forEach(file -> {
+                long baseOffset = LogSegment.parseBaseOffset(file.getFileName().toString());
+                if(baseOffset >= 0){
+                    baseOffsets.add(baseOffset);
+                }
+            });
+        }
+        baseOffsets.sort(null);
+        for(int index = 0; index < baseOffsets.size(); index++){
+            boolean last = index == baseOffsets.size() - 1;
+            // full segments keep their size and their files are closed; their mappings stay readable
+            LogSegment segment = LogSegment.open(directory, baseOffsets.get(index), last ? segmentSize : 0);
+            if(!last){
+                segment.close();
+            }
+            segments.add(segment);
+        }
+        if(segments.isEmpty()){
+            segments.add(LogSegment.open(directory, 0, segmentSize));
+        }
+        tailSegment = segments.size() - 1;
+        activeSegment = segments.get(tailSegment);
+        endOffset = activeSegment.getEndOffset();
+        if(flushIntervalMillis > 0){
+            flusher = new Thread(this::flushPeriodically, "chat-log-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    /**
+     * Append a message sent to a room. The record is in the log when the method returns, and on
+     * the disk at the end of the current flush interval.
+     * @param room String representing the name of the room
+     * @param message ChatMessage which was sent
+     * @return offset of the record in the log, or -1 if it could not be written
+     */
+    public long append(String room, ChatMessage message){
+        // encode outside the lock, so concurrent broadcasts only serialise on the copy
+        byte[] roomBytes = truncate(room.getBytes(StandardCharsets.UTF_8));
+        byte[] senderBytes = truncate(message.getSenderName().getBytes(StandardCharsets.UTF_8));
+        byte[] textBytes = message.getText().getBytes(StandardCharsets.UTF_8);
+        long timestamp = System.currentTimeMillis();
+        long offset;
+        synchronized (this){
+            if(closed){
+                return -1;
+            }
+            offset = activeSegment.append(timestamp, message.getSenderId(), roomBytes, senderBytes, textBytes);
+            if(offset < 0){
+                try{
+                    rollSegment(LogSegment.recordSize(roomBytes, senderBytes, textBytes));
+                } catch (IOException e){
+                    e.printStackTrace();
+                    return -1;
+                }
+                offset = activeSegment.append(timestamp, message.getSenderId(), roomBytes, senderBytes, textBytes);
+            }
+            if(flushIntervalMillis <= 0){
+                activeSegment.force();
+            }
+            endOffset = activeSegment.getEndOffset();
+        }
+        dirty = true;
+        return offset;
+    }
+
+    /**
+     * Close the full segment and start a new one after it. The lock must be held.
+     * @param recordSize size of the record which did not fit, so a big record gets a big enough segment
+     * @throws IOException if the new segment cannot be created
+     */
+    private void rollSegment(int recordSize) throws IOException {
+        LogSegment full = activeSegment;
+        activeSegment = LogSegment.open(directory, full.getEndOffset(), Math.max(segmentSize, recordSize + 4));
+        segments.add(activeSegment);
+        full.close();
+    }
+
+    /**
+     * Read every record of the segment which was the last one when the log was opened, oldest first.
+     * That tail of the log is what the server rebuilds its recent history from, without reading the rest.
+     * @param consumer Consumer which gets each LogRecord
+     */
+    public void readTail(Consumer<LogRecord> consumer){
+        LogSegment segment;
+        synchronized (this){
+            segment = segments.get(tailSegment);
+        }
+        int position = 0;
+        LogRecord record;
+        while((record = segment.read(position)) != null){
+            consumer.accept(record);
+            position = (int) (record.getNextOffset() - segment.getBaseOffset());
+        }
+    }
+
+    /**
+     * Read the record at an offset of the log. Only offsets below getEndOffset() can be read.
+     * @param offset offset of the record, as returned by append() or LogRecord.getNextOffset()
+     * @return LogRecord object, or null if there is no record at that offset
+     */
+    public LogRecord read(long offset){
+        if(offset >= endOffset){
+            return null;
+        }
+        LogSegment segment;
+        synchronized (this){
+            segment = findSegment(offset);
+        }
+        if(segment == null){
+            return null;
+        }
+        return segment.read((int) (offset - segment.getBaseOffset()));
+    }
+
+    /**
+     * Return the offset after the last record appended to the log.
+     * @return end offset of the log
+     */
+    public long getEndOffset(){
+        return endOffset;
+    }
+
+    /**
+     * Return the base offset of the segment holding an offset.
+     * @param offset offset in the log
+     * @return base offset of the segment, or -1 if the offset is before the first segment
+     */
+    public long getSegmentBaseOffset(long offset){
+        LogSegment segment;
+        synchronized (this){
+            segment = findSegment(offset);
+        }
+        return segment == null ? -1 : segment.getBaseOffset();
+    }
+
+    /**
+     * Return the base offsets of the segments, oldest first. The last one is still appended to.
+     * @return List of the base offsets
+     */
+    public synchronized List<Long> getSegmentBaseOffsets(){
+        List<Long> baseOffsets = new ArrayList<>(segments.size());
+        for(LogSegment segment:segments){
+            baseOffsets.add(segment.getBaseOffset());
+        }
+        return baseOffsets;
+    }
+
+    /**
+     * Find the segment holding an offset: the last one which starts at or before it. The lock must be held.
+     * @param offset offset in the log
+     * @return LogSegment object, or null if the offset is before the first segment
+     */
+    private LogSegment findSegment(long offset){
+        int low = 0;
+        int high = segments.size() - 1;
+        LogSegment found = null;
+        while(low <= high){
+            int middle = (low + high) >>> 1;
+            LogSegment segment = segments.get(middle);
+            if(segment.getBaseOffset() <= offset){
+                found = segment;
+                low = middle + 1;
+            }
+            else{
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Write the records appended since the last flush to the disk, every flush interval.
+     * Runs on the flusher thread.
+     */
+    private void flushPeriodically(){
+        while(!closed){
+            try{
+                Thread.sleep(flushIntervalMillis);
+            } catch (InterruptedException e){
+                break;
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Write the records appended since the last flush to the disk. The fsync happens outside
+     * the lock, so messages keep being appended meanwhile.
+     */
+    public void flush(){
+        if(!dirty){
+            return;
+        }
+        dirty = false;
+        LogSegment segment;
+        synchronized (this){
+            segment = activeSegment;
+        }
+        segment.force();
+    }
+
+    /**
+     * Write every appended record to the disk and close the log.
+     */
+    public void close(){
+        synchronized (this){
+            if(closed){
+                return;
+            }
+            closed = true;
+        }
+        if(flusher != null){
+            flusher.interrupt();
+        }
+        synchronized (this){
+            for(LogSegment segment:segments){
+                try{
+                    segment.close();
+                } catch (IOException e){
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cut a name to the longest length the record header can hold.
+     * @param bytes bytes of the name
+     * @return the bytes, or their first Short.MAX_VALUE bytes
+     */
+    private static byte[] truncate(byte[] bytes){
+        if(bytes.length <= Short.MAX_VALUE){
+            return bytes;
+        }
+        byte[] truncated = new byte[Short.MAX_VALUE];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        return truncated;
+    }
+
+    /**
+     * Return the directory holding the segment files.
+     * @return Path of the directory
+     */
+    public Path getDirectory(){
+        return directory;
+    }
+}
@@ -0,0 +1,118 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Class which represents a message of the chat: its sender and its text. The server encodes
+ * a broadcast message at most once for each protocol (a text line and a binary frame), and
+ * every recipient gets a duplicate of the encoding it needs.
+ */
+public class ChatMessage {
+
+    // declaring fields
+    private final int senderId; // interned id of the sender, 0 for messages of the server
+    private final String senderName; // null for messages of the server
+    private final String text;
+    private volatile ByteBuffer textLine; // encoded for the text protocol, once needed
+    private volatile ByteBuffer binaryFrame; // encoded for the binary protocol, once needed
+
+    /**
+     * Constructor which creates a message sent by a user.
+     * @param senderId interned id of the sender
+     * @param senderName String representing the user-name of the sender
+     * @param text String representing the text of the message
+     */
+    public ChatMessage(int senderId, String senderName, String text){
+        this.senderId = senderId;
+        this.senderName = senderName;
+        this.text = text;
+    }
+
+    /**
+     * Create a message of the server itself, which is not sent by any user.
+     * @param text String representing the text of the message
+     * @return ChatMessage object without a sender
+     */
+    public static ChatMessage fromServer(String text){
+        return new ChatMessage(0, null, text);
+    }
+
+    /**
+     * Create a message from a line of the text protocol, of the form "user-name: text".
+     * A line without a user-name is a message of the server.
+     * @param line String representing the received line
+     * @return ChatMessage object with the sender and the text of the line
+     */
+    public static ChatMessage parseLine(String line){
+        int separator = line.indexOf(": ");
+        if(separator <= 0){
+            return fromServer(line);
+        }
+        return new ChatMessage(0, line.substring(0, separator), line.substring(separator + 2));
+    }
+
+    /**
+     * Return the interned id of the sender.
+     * @return id of the sender, 0 for messages of the server or when the id is not known
+     */
+    public int getSenderId(){
+        return senderId;
+    }
+
+    /**
+     * Return the user-name of the sender.
+     * @return String representing the user-name, or null for messages of the server
+     */
+    public String getSenderName(){
+        return senderName;
+    }
+
+    /**
+     * Return the text of the message.
+     * @return String representing the text
+     */
+    public String getText(){
+        return text;
+    }
+
+    /**
+     * Return the message as it is shown to the users and sent with the text protocol.
+     * @return String of the form "user-name: text", or just the text for messages of the server
+     */
+    public String getLine(){
+        return senderName == null ? text : senderName + ": " + text;
+    }
+
+    /**
+     * Return the message encoded for the text protocol. It is encoded the first time only.
+     * @return read-only ByteBuffer which belongs to the caller
+     */
+    public ByteBuffer getTextLine(){
+        ByteBuffer encoded = textLine;
+        if(encoded == null){
+            synchronized (this){
+                if(textLine == null){
+                    textLine = MessageEncoder.encode(getLine());
+                }
+                encoded = textLine;
+            }
+        }
+        return encoded.duplicate();
+    }
+
+    /**
+     * Return the message encoded as a frame of the binary protocol. It is encoded the first time only.
+     * @return read-only ByteBuffer which belongs to the caller
+     */
+    public ByteBuffer getBinaryFrame(){
+        ByteBuffer encoded = binaryFrame;
+        if(encoded == null){
+            synchronized (this){
+                if(binaryFrame == null){
+                    binaryFrame = senderName == null ? MessageEncoder.encodeFrame(WireProtocol.SERVER, 0, text) :
+                            MessageEncoder.encodeFrame(WireProtocol.MESSAGE, senderId, text);
+                }
+                encoded = binaryFrame;
+            }
+        }
+        return encoded.duplicate();
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Class which represents a named room of the chat. Each room keeps its own set of subscribers
+ * and a message sent to the room is only delivered to them.
+ */
+public class ChatRoom {
+
+    // declaring fields
+    private final String name;
+    private final ConnectionSet members = new ConnectionSet(); // clients which have joined the room
+    private final MessageHistory history; // recent messages, replayed to clients which join
+
+    /**
+     * Constructor which creates an empty room.
+     * @param name String representing the name of the room
+     * @param historySize number of recent messages kept for the room
+     */
+    public ChatRoom(String name, int historySize){
+        this.name = name;
+        this.history = new MessageHistory(historySize);
+    }
+
+    /**
+     * Return the name of the room.
+     * @return String representing the name
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * Return the recent messages of the room.
+     * @return MessageHistory of the room
+     */
+    public MessageHistory getHistory(){
+        return history;
+    }
+
+    /**
+     * Return the clients which have joined the room, as an array which must not be modified.
+     * @return array of ClientConnection objects
+     */
+    public ClientConnection[] getMembers(){
+        return members.toArray();
+    }
+
+    /**
+     * Check if a client has joined the room.
+     * @param connection ClientConnection representing the client
+     * @return true if the client is a member of the room
+     */
+    public boolean hasMember(ClientConnection connection){
+        return members.contains(connection);
+    }
+
+    /**
+     * Return the number of clients in the room.
+     * @return number of members
+     */
+    public int size(){
+        return members.size();
+    }
+
+    /**
+     * Add a client to the room. Only called by RoomRegistry, which removes empty rooms.
+     * @param connection ClientConnection representing the client
+     * @return true if the client was not in the room yet
+     */
+    boolean addMember(ClientConnection connection){
+        return members.add(connection);
+    }
+
+    /**
+     * Remove a client from the room. Only called by RoomRegistry, which removes empty rooms.
+     * @param connection ClientConnection representing the client
+     * @return true if the client was in the room
+     */
+    boolean removeMember(ClientConnection connection){
+        return members.remove(connection);
+    }
+
+    /**
+     * Check if nobody is in the room.
+     * @return true if the room has no members
+     */
+    boolean isEmpty(){
+        return members.isEmpty();
+    }
+}
@@ -1,30 +1,93 @@
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Server class which starts the server and accepts connections from new clients.
+ * The clients are either served by a thread per connection (ConnectionThread), which can be
+ * a platform thread or a virtual thread, or, in "nio" mode, by a few NIO event loops (NioEventLoop).
  */
 public class ChatServer {
 
     // declaring the fields
+    public static final String THREAD_MODE = "thread"; // one platform thread per connection
+    public static final String VIRTUAL_MODE = "virtual"; // one virtual thread per connection
+    public static final String NIO_MODE = "nio"; // non-blocking connections served by event loops
     private boolean closeTheServer = false; // value is true if the server should be closed
+    private final ServerOptions options; // settings read from the command line
+    private final String mode; // server engine serving the connections
     private ServerSocket in; // represents the server
+    private ExecutorService connectionExecutor; // runs the ConnectionThreads in "thread" and "virtual" mode
+    private ServerSocketChannel channelIn; // represents the server in "nio" mode
+    private NioEventLoop[] eventLoops; // loops serving the connections in "nio" mode
+    private int nextEventLoop = 0; // index of the loop which gets the next connection
     private String userInput;
-    private ArrayList<ConnectionThread>connectedClients;
-    private ArrayList<String> userNames = new ArrayList<>();
+    // number of broadcast messages queued for all the clients
+    private final AtomicLong deliveredMessages = new AtomicLong();
+    private final SessionRegistry sessions = new SessionRegistry(); // connected clients and their user-names
+    private final RoomRegistry rooms; // rooms and the clients which have joined them
+    private ChatLog chatLog; // persisted messages, null if the chat is not persisted
+    private ChatIndex chatIndex; // word and sender index of the persisted messages
+    // reads the chat log for "/search" and "/history", so the connections' threads and loops never wait for it
+    private ExecutorService logReader;
+    public static final int MAX_SEARCH_RESULTS = 10; // messages shown by "/search"
+    public static final int MAX_HISTORY_RESULTS = 50; // messages "/history" can show
+    // games of Dungeons of Doom hosted for the clients, and the few workers which play all of them
+    private final ConcurrentHashMap<ClientConnection, GameSession> games = new ConcurrentHashMap<>();
+    private final GameScheduler gameScheduler;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
+            .withZone(ZoneId.systemDefault());
 
     /**
-     * Constructor which opens the server on a specified port and initializes the connectedClients ArrayList.
+     * Constructor which opens the server on a specified port, using the default settings.
      * @param port integer representing the port on which the server should be opened.
      */
     public ChatServer(int port){
-        connectedClients = new ArrayList<>();
+        this(createOptions(port));
+    }
+
+    /**
+     * Constructor which opens the server.
+     * @param options ServerOptions object containing the port, the server engine and the other settings
+     */
+    public ChatServer(ServerOptions options){
+        this.options = options;
+        this.mode = options.getMode();
+        this.rooms = new RoomRegistry(options.getHistorySize());
+        this.gameScheduler = new GameScheduler(options.getGameWorkers(), options.getGameTickMillis());
+        openChatLog();
+        int port = options.getPort();
         try{
-            in = new ServerSocket(port);
+            if(mode.equals(NIO_MODE)){
+                // the main thread accepts the connections and hands them over to one loop per core
+                channelIn = ServerSocketChannel.open();
+                channelIn.bind(new InetSocketAddress(port));
+                eventLoops = new NioEventLoop[Runtime.getRuntime().availableProcessors()];
+                for(int index = 0; index < eventLoops.length; index++){
+                    eventLoops[index] = new NioEventLoop("nio-event-loop-" + index);
+                    eventLoops[index].start();
+                }
+            }
+            else{
+                in = new ServerSocket(port);
+                connectionExecutor = createConnectionExecutor(mode);
+            }
             System.out.println("Listening for connections...");
         } catch (IOException e){
             e.printStackTrace();
@@ -41,14 +104,32 @@ public class ChatServer {
                     // keep listening for user input until the command is "EXIT"
                     do {
                         userInput = userIn.readLine();
+                        if(userInput.equals("STATS")){
+                            printStats();
+                        }
                     } while (!userInput.equals("EXIT"));
+                    if(chatLog != null){
+                        logReader.shutdownNow();
+                        chatIndex.close();
+                        chatLog.close();
+                    }
                     // close each connection with the clients
-                    for(ConnectionThread client:connectedClients){
+                    for(ClientConnection client:sessions.getConnections()){
                         client.setServerClosed();
-                        client.getConnection().close();
+                        client.closeConnection();
                     }
+                    gameScheduler.shutdown();
                     // close the server
-                    in.close();
+                    if(mode.equals(NIO_MODE)){
+                        channelIn.close();
+                        for(NioEventLoop eventLoop:eventLoops){
+                            eventLoop.shutdown();
+                        }
+                    }
+                    else{
+                        in.close();
+                        connectionExecutor.shutdown();
+                    }
                 } catch (IOException e){
                     e.printStackTrace();
                 }
@@ -59,41 +140,376 @@ public class ChatServer {
     }
 
     /**
-     * Add a new userName to the list of connected client's user-names.
-     * @param userName String representing the username of a new client.
+     * Create the default settings for a server opened on a specified port.
+     * @param port integer representing the port on which the server should be opened.
+     * @return ServerOptions object containing the settings
      */
-    public void addUser(String userName){
-        userNames.add(userName);
+    private static ServerOptions createOptions(int port){
+        ServerOptions options = new ServerOptions();
+        options.setPort(port);
+        return options;
     }
 
     /**
-     * Get the list of all connected client's user-names.
-     * @return ArrayList of Strings representing the user-names of the connected clients.
+     * Create the executor which runs the ConnectionThreads: a new virtual thread per connection
+     * in "virtual" mode and a pool of platform threads, one per active connection, otherwise.
+     * @param mode String representing the server engine
+     * @return ExecutorService which runs one ConnectionThread per task
      */
-    public ArrayList<String> getUserNames(){
-        return userNames;
+    private static ExecutorService createConnectionExecutor(String mode){
+        if(mode.equals(VIRTUAL_MODE)){
+            try{
+                // looked up at runtime so the server still builds and runs on JVMs without virtual threads
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e){
+                System.out.println("Virtual threads are not supported by this JVM...using platform threads.");
+            }
+        }
+        return Executors.newCachedThreadPool();
     }
 
     /**
-     * Broadcast a message received by the server from a client, to all clients.
-     * @param message String representing the received message to be broadcast.
+     * Open the chat log, if the chat is persisted, and rebuild the history of the rooms from
+     * the tail of the log, so clients joining after a restart still see the recent messages.
      */
-    synchronized public void printMessageToAllClients(String message){
-        for (ConnectionThread client: connectedClients) {
-            client.getClientOut().println(message);
+    private void openChatLog(){
+        if(options.getLogDirectory() == null){
+            return;
         }
+        try{
+            chatLog = new ChatLog(Paths.get(options.getLogDirectory()), options.getSegmentSize(),
+                    options.getFsyncIntervalMillis());
+        } catch (IOException e){
+            e.printStackTrace();
+            System.out.println("Cannot open the chat log...messages will not be persisted.");
+            return;
+        }
+        long[] restored = new long[1];
+        chatLog.readTail(record -> {
+            // ids are not persisted, so the sender gets the id of its name in this server
+            String senderName = record.getSenderName();
+            rooms.restoreRoom(record.getRoom()).getHistory().append(
+                    new ChatMessage(getSenderId(senderName), senderName, record.getText()));
+            restored[0]++;
+        });
+        System.out.println("Restored " + restored[0] + " messages from the chat log.");
+        chatIndex = new ChatIndex(chatLog);
+        logReader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread reader = new Thread(runnable, "chat-log-reader");
+            reader.setDaemon(true);
+            return reader;
+        });
+    }
+
+    /**
+     * Return the settings of the server.
+     * @return ServerOptions object containing the settings read from the command line
+     */
+    public ServerOptions getOptions(){
+        return options;
+    }
+
+    /**
+     * Print to the server's console the counters which show how the server copes with the load.
+     */
+    private void printStats(){
+        System.out.println("Connected users: " + sessions.size());
+        System.out.println("Rooms: " + rooms.getRooms().size());
+        System.out.println("Games in progress: " + gameScheduler.getActiveGames() + " (" +
+                GameScheduler.getTicks() + " partition ticks played)");
+        MapRegistry maps = MapRegistry.getDefault();
+        System.out.println("Maps: " + maps.getMapFileNames().size() + " (" + maps.getLoadedMaps() + " in memory)");
+        if(chatIndex != null){
+            System.out.println("Chat log: " + chatLog.getEndOffset() + " bytes, " +
+                    chatIndex.getIndexedMessages() + " messages indexed");
+        }
+        System.out.println("Broadcast messages delivered: " + deliveredMessages.get());
+        System.out.println("Messages encoded: " + MessageEncoder.getEncodedMessages() +
+                " (" + MessageEncoder.getEncodedBytes() + " bytes)");
+        System.out.println("Encoding buffers allocated: " + MessageEncoder.getAllocatedBuffers());
+        System.out.println("Messages written: " + WriteCoalescer.getWrittenMessages() +
+                " in " + WriteCoalescer.getSocketWrites() + " socket writes");
+        System.out.println("Messages dropped for slow clients: " + OutboundQueue.getTotalDroppedMessages());
+        System.out.println("Slow clients disconnected: " + OutboundQueue.getTotalDisconnectedClients());
+    }
+
+    /**
+     * Try to claim a user-name for a client. Two clients can never get the same user-name,
+     * even when they ask for it at the same time. A client which gets its user-name joins the default room.
+     * @param userName String representing the requested user-name
+     * @param connection ClientConnection representing the client
+     * @return true if the user-name now belongs to the client, false if it is already taken
+     */
+    public boolean claimUserName(String userName, ClientConnection connection){
+        if(!sessions.claim(userName, connection)){
+            return false;
+        }
+        rooms.join(connection, RoomRegistry.DEFAULT_ROOM);
+        return true;
+    }
+
+    /**
+     * Return the interned id of a user-name, used to identify senders in the binary protocol.
+     * @param userName String representing the user-name
+     * @return id of the user-name
+     */
+    public int getSenderId(String userName){
+        return sessions.internSender(userName);
+    }
+
+    /**
+     * Handle a line received from a client which uses the text protocol. Clients prefix their
+     * messages with "user-name: ", which is removed so the message does not depend on the protocol.
+     * @param client ClientConnection which sent the line
+     * @param line String representing the received line
+     */
+    public void handleClientLine(ClientConnection client, String line){
+        String prefix = client.getUserName() + ": ";
+        handleClientMessage(client, line.startsWith(prefix) ? line.substring(prefix.length()) : line);
+    }
+
+    /**
+     * Handle the input of a client, without the user-name prefix: a command of the client's game,
+     * if it is playing, a command of the server, or a message, which is sent to the client's active room.
+     * @param client ClientConnection which sent the input
+     * @param text String representing the user's input
+     */
+    public void handleClientMessage(ClientConnection client, String text){
+        GameSession game = games.get(client);
+        if(game != null){
+            game.submit(text);
+            return;
+        }
+        if(text.startsWith("/") && handleCommand(client, text)){
+            return;
+        }
+        ChatRoom room = rooms.getActiveRoom(client);
+        if(room == null){
+            client.sendMessage("You are not in any room...use /join <room> to join one.");
+            return;
+        }
+        // messages of the default room look the same as before rooms existed
+        if(!room.getName().equals(RoomRegistry.DEFAULT_ROOM)){
+            text = "[" + room.getName() + "] " + text;
+        }
+        printMessageToRoom(room, new ChatMessage(client.getSenderId(), client.getUserName(), text));
+    }
+
+    /**
+     * Handle a command of a client: "/join <room>", "/leave [room]", "/rooms", "/msg <user> <text>",
+     * "/search <words>", "/history <user> [n]" or "/play DOD".
+     * @param client ClientConnection which sent the command
+     * @param text String representing the command
+     * @return true if the command was handled, false if it is not a room command
+     */
+    private boolean handleCommand(ClientConnection client, String text){
+        String[] words = text.trim().split("\\s+");
+        switch (words[0]){
+            case "/join":
+                if(words.length != 2 || !RoomRegistry.isValidName(words[1])){
+                    client.sendMessage("Usage: /join <room>, where the name of the room has no spaces and at most " +
+                            RoomRegistry.MAX_ROOM_NAME_LENGTH + " characters.");
+                }
+                else{
+                    client.holdChatMessages();
+                    ChatRoom room = rooms.join(client, words[1]);
+                    client.sendMessage("You are now talking in " + room.getName() + " (" + room.size() + " users).");
+                    replayHistory(client);
+                }
+                return true;
+            case "/leave":
+                ChatRoom active = rooms.getActiveRoom(client);
+                String name = words.length > 1 ? words[1] : active == null ? null : active.getName();
+                if(name == null || !rooms.leave(client, name)){
+                    client.sendMessage("You are not in that room.");
+                }
+                else{
+                    ChatRoom next = rooms.getActiveRoom(client);
+                    client.sendMessage("You have left " + name + (next == null ? ". You are not in any room now." :
+                            ". You are now talking in " + next.getName() + "."));
+                }
+                return true;
+            case "/rooms":
+                StringBuilder list = new StringBuilder("Rooms:");
+                for(ChatRoom room:rooms.getRooms()){
+                    list.append(' ').append(room.getName()).append(" (").append(room.size()).append(')');
+                }
+                ChatRoom current = rooms.getActiveRoom(client);
+                list.append(". You are in: ").append(String.join(", ", rooms.getJoinedRoomNames(client)));
+                if(current != null){
+                    list.append(". You are talking in ").append(current.getName());
+                }
+                client.sendMessage(list.append('.').toString());
+                return true;
+            case "/msg":
+                String[] parts = text.trim().split("\\s+", 3);
+                if(parts.length != 3){
+                    client.sendMessage("Usage: /msg <user> <message>");
+                }
+                else{
+                    sendDirectMessage(client, parts[1], parts[2]);
+                }
+                return true;
+            case "/play":
+                if(!text.trim().equals(GameSession.PLAY_COMMAND)){
+                    return false;
+                }
+                GameSession session = new GameSession(gameScheduler.nextGameId(), client, this, options.getBotStrategy());
+                games.put(client, session);
+                session.start();
+                gameScheduler.add(session);
+                return true;
+            case "/search":
+                if(words.length < 2){
+                    client.sendMessage("Usage: /search <words>");
+                }
+                else if(chatIndex == null){
+                    client.sendMessage("The chat is not logged, so it cannot be searched.");
+                }
+                else{
+                    String query = text.trim().substring(words[0].length()).trim();
+                    // only the rooms the client is in can be searched
+                    Set<String> searchedRooms = getJoinedRooms(client);
+                    logReader.execute(() -> sendLogRecords(client, chatIndex.search(query, MAX_SEARCH_RESULTS,
+                            searchedRooms), "No message of your rooms contains " + query + "."));
+                }
+                return true;
+            case "/history":
+                int count = MAX_SEARCH_RESULTS;
+                try{
+                    if(words.length == 3){
+                        count = Math.min(Integer.parseInt(words[2]), MAX_HISTORY_RESULTS);
+                    }
+                } catch (NumberFormatException e){
+                    count = -1;
+                }
+                if(words.length < 2 || words.length > 3 || count <= 0){
+                    client.sendMessage("Usage: /history <user> [number of messages, at most " + MAX_HISTORY_RESULTS + "]");
+                }
+                else if(chatIndex == null){
+                    client.sendMessage("The chat is not logged, so it has no history.");
+                }
+                else{
+                    String sender = words[1];
+                    int limit = count;
+                    Set<String> historyRooms = getJoinedRooms(client);
+                    logReader.execute(() -> sendLogRecords(client, chatIndex.history(sender, limit, historyRooms),
+                            sender + " has not sent any message to your rooms."));
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Return the rooms a client is in, whose logged messages it may search. Direct messages are
+     * never logged, so they cannot be searched by anyone.
+     * @param client ClientConnection representing the client
+     * @return Set of the names of the rooms
+     */
+    private Set<String> getJoinedRooms(ClientConnection client){
+        return new HashSet<>(rooms.getJoinedRoomNames(client));
+    }
+
+    /**
+     * Send messages read from the chat log to a client, with the time they were sent, in a single write.
+     * Runs on the log reader; the messages are only queued, so the client's own thread or loop writes them.
+     * @param client ClientConnection representing the client
+     * @param records List of LogRecord objects, oldest first
+     * @param noResults String representing the message sent if there are no records
+     */
+    private void sendLogRecords(ClientConnection client, List<LogRecord> records, String noResults){
+        if(records.isEmpty()){
+            client.sendMessage(noResults);
+            return;
+        }
+        ChatMessage[] messages = new ChatMessage[records.size()];
+        for(int index = 0; index < messages.length; index++){
+            LogRecord record = records.get(index);
+            messages[index] = ChatMessage.fromServer(TIME_FORMAT.format(Instant.ofEpochMilli(record.getTimestamp())) +
+                    " " + record.getSenderName() + ": " + record.getText());
+        }
+        client.sendChatMessages(messages);
+    }
+
+    /**
+     * Send a message to one user only. The recipient is found through the user-name index,
+     * so nobody else gets the message, and the sender is told if the user is not online.
+     * @param client ClientConnection which sent the message
+     * @param recipientName String representing the user-name of the recipient
+     * @param text String representing the message
+     */
+    private void sendDirectMessage(ClientConnection client, String recipientName, String text){
+        ClientConnection recipient = sessions.get(recipientName);
+        if(recipient == null){
+            client.sendMessage(recipientName + " is not online.");
+            return;
+        }
+        recipient.sendChatMessage(new ChatMessage(client.getSenderId(), client.getUserName(), "(private) " + text));
+        deliveredMessages.incrementAndGet();
+    }
+
+    /**
+     * Send a message to the members of a room only and add it to the room's history. The message
+     * is encoded at most once per protocol and only added to each member's outbound queue, so a
+     * slow client cannot hold up the others.
+     * @param room ChatRoom which the message is sent to
+     * @param message ChatMessage representing the message
+     */
+    public void printMessageToRoom(ChatRoom room, ChatMessage message){
+        room.getHistory().append(message);
+        if(chatLog != null){
+            chatLog.append(room.getName(), message);
+        }
+        ClientConnection[] members = room.getMembers();
+        for (ClientConnection member: members) {
+            member.sendChatMessage(message);
+        }
+        deliveredMessages.addAndGet(members.length);
+    }
+
+    /**
+     * Forget the game of a client, once it has ended, so the client's input goes to the chat again.
+     * @param client ClientConnection representing the client
+     * @param session GameSession which has ended
+     */
+    public void endGame(ClientConnection client, GameSession session){
+        if(games.remove(client, session)){
+            client.sendMessage("The game has ended...you are back in the chat.");
+        }
+    }
+
+    /**
+     * Send the most recent messages of a client's active room to the client, as a single write,
+     * then the live messages which the client held back since it joined the room.
+     * Called when the client joins the chat, right after the confirmation, and when it joins a room;
+     * the client must have called holdChatMessages() before joining the room.
+     * @param client ClientConnection representing the client
+     */
+    public void replayHistory(ClientConnection client){
+        ChatRoom room = rooms.getActiveRoom(client);
+        ChatMessage[] history = new ChatMessage[0];
+        if(room != null && options.getReplayCount() > 0){
+            history = room.getHistory().getLatest(options.getReplayCount());
+        }
+        client.releaseChatMessages(history);
     }
 
     /**
      * Close the connection with a client which has disconnected.
      * @param userName String representing the client's user-name
-     * @param connection ConnectionThread representing the connection between the server and the client
+     * @param connection ClientConnection representing the connection between the server and the client
      */
-    public void disconnect(String userName, ConnectionThread connection){
+    public void disconnect(String userName, ClientConnection connection){
         System.out.println(userName + " has disconnected...:(");
-        // remove the user-name from the list of connected user-names and close the connection
-        userNames.remove(userName);
-        connectedClients.remove(connection);
+        // stop the game, leave the rooms, free the user-name and forget the connection
+        GameSession game = games.remove(connection);
+        if(game != null){
+            game.stop();
+        }
+        rooms.leaveAll(connection);
+        sessions.release(userName, connection);
     }
 
     /**
@@ -101,12 +517,25 @@ public class ChatServer {
      */
     public void go(){
         try{
+            if(mode.equals(NIO_MODE)){
+                SocketChannel newClient = channelIn.accept();
+                System.out.println("Connection accepted...");
+                // hand the connection over to the event loops in turn
+                NioEventLoop eventLoop = eventLoops[nextEventLoop];
+                nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+                NioConnection client = new NioConnection(newClient, this, eventLoop);
+                sessions.addConnection(client);
+                eventLoop.register(client);
+                return;
+            }
             Socket newClient = in.accept();
             System.out.println("Connection accepted...");
-            // create a new thread representing the connection between the client and the server
+            // create a new handler representing the connection between the client and the server
             ConnectionThread client = new ConnectionThread(newClient, this);
-            connectedClients.add(client);
-            client.start();
+            sessions.addConnection(client);
+            connectionExecutor.execute(client);
+            // the client's messages are written by a task of its own, draining its outbound queue
+            connectionExecutor.execute(client::writeMessages);
         } catch(IOException e){
             closeTheServer = true;
             System.out.println("Server is shutting down...");
@@ -118,15 +547,16 @@ public class ChatServer {
      * @param args String[] representing the command line arguments
      */
     public static void main(String[] args){
-        String port = "14001"; // default port
-        // check to see if user has requested the server to open on a different port than the default one
-        for(int index = 0; index < args.length; index++){
-            if(args[index].equals("-csp")){
-                port = args[index+1];
-            }
+        ServerOptions options;
+        try{
+            options = ServerOptions.parse(args);
+        } catch (IllegalArgumentException e){
+            System.out.println("Usage error: " + e.getMessage());
+            System.exit(1);
+            return;
         }
         // create a new object
-        ChatServer myServer = new ChatServer(Integer.parseInt(port));
+        ChatServer myServer = new ChatServer(options);
         // keep listening for new connections until the server is shut down
         while(!myServer.closeTheServer){
             myServer.go();
@@ -0,0 +1,72 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Interface which represents the connection between a client and the server, independently
+ * of the server engine which handles it (a thread per connection or a NIO event loop).
+ */
+public interface ClientConnection {
+
+    /**
+     * Send a message from the server to the client.
+     * @param message String representing the message, without the line terminator
+     */
+    void sendMessage(String message);
+
+    /**
+     * Send a chat message to the client, encoded for the client's protocol.
+     * @param message ChatMessage to send
+     */
+    void sendChatMessage(ChatMessage message);
+
+    /**
+     * Send several chat messages to the client at once, encoded for the client's protocol into
+     * a single buffer, so they are written together. Used to replay the history of a room.
+     * @param messages array of ChatMessage objects to send, oldest first
+     */
+    void sendChatMessages(ChatMessage[] messages);
+
+    /**
+     * Start holding back the live chat messages sent to the client, until releaseChatMessages() is
+     * called. Used before the client joins a room, so no message is lost or repeated while the
+     * history of the room is replayed.
+     */
+    void holdChatMessages();
+
+    /**
+     * Stop holding back the live chat messages, and send the history of a room followed by the
+     * messages which were held, as a single write. Messages which are both in the history and
+     * held are sent once.
+     * @param history array of ChatMessage objects representing the history of the room, oldest first
+     */
+    void releaseChatMessages(ChatMessage[] history);
+
+    /**
+     * Send a message which has already been encoded by MessageEncoder.
+     * @param message ByteBuffer containing the encoded message, owned by this connection from now on
+     */
+    void sendEncodedMessage(ByteBuffer message);
+
+    /**
+     * Set that the server is closed.
+     */
+    void setServerClosed();
+
+    /**
+     * Close the connection with the client.
+     * @throws IOException if the underlying socket cannot be closed
+     */
+    void closeConnection() throws IOException;
+
+    /**
+     * Return the user-name of the client.
+     * @return String representing the user-name, or null if it has not been set yet
+     */
+    String getUserName();
+
+    /**
+     * Return the interned id of the client's user-name, used by the binary protocol.
+     * @return id of the user-name, 0 if it has not been set yet
+     */
+    int getSenderId();
+}
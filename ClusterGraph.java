@@ -0,0 +1,300 @@
+import java.util.Arrays;
+
+/**
+ * Class which represents the abstract graph hierarchical pathfinding (HPA*) plans over, built once for
+ * a map (see HierarchicalPlanner). The map is cut into square clusters; where two neighbouring clusters
+ * have open tiles facing each other, the border is an entrance, and one or two pairs of facing tiles
+ * of each entrance become nodes of the graph. Nodes on both sides of an entrance are linked by one step,
+ * and the nodes of a cluster are linked by the length of the shortest path between them inside the
+ * cluster. The graph never changes, so it is shared by every game played on the map.
+ */
+public final class ClusterGraph {
+
+    // declaring fields
+    public static final int DEFAULT_CLUSTER_SIZE = 16; // rows and columns of a cluster
+    private static final int WIDE_ENTRANCE = 6; // entrances at least this wide get a node at each end
+    private final Grid grid;
+    private final int clusterSize;
+    private final int clusterRows, clusterColumns; // number of clusters down and across the map
+    private final int[] nodeTiles; // tile of each node; the nodes of a cluster are numbered one after the other
+    private final int[] clusterFirstNode; // first node of each cluster, and the number of nodes at the end
+    private final int[] edgeStart; // first edge of each node, and the number of edges at the end
+    private final int[] edgeTargets; // node each edge leads to
+    private final int[] edgeCosts; // number of steps of each edge
+
+    /**
+     * Constructor which builds the graph of a map.
+     * @param grid Grid of the map
+     * @param clusterSize rows and columns of a cluster
+     */
+    public ClusterGraph(Grid grid, int clusterSize){
+        this.grid = grid;
+        this.clusterSize = clusterSize;
+        this.clusterRows = (grid.getRows() + clusterSize - 1) / clusterSize;
+        this.clusterColumns = (grid.getColumns() + clusterSize - 1) / clusterSize;
+        // find the pairs of tiles facing each other across the borders of the clusters
+        IntList pairs = new IntList();
+        for(int clusterRow = 0; clusterRow < clusterRows; clusterRow++){
+            for(int clusterColumn = 0; clusterColumn < clusterColumns; clusterColumn++){
+                int top = clusterRow * clusterSize;
+                int left = clusterColumn * clusterSize;
+                int bottom = Math.min(top + clusterSize, grid.getRows());
+                int right = Math.min(left + clusterSize, grid.getColumns());
+                if(right < grid.getColumns()){
+                    // border with the cluster to the east
+                    findEntrances(pairs, top * grid.getColumns() + right - 1, bottom - top, grid.getColumns(), 1);
+                }
+                if(bottom < grid.getRows()){
+                    // border with the cluster to the south
+                    findEntrances(pairs, (bottom - 1) * grid.getColumns() + left, right - left, 1, grid.getColumns());
+                }
+            }
+        }
+        // number the nodes, cluster after cluster
+        int[] tiles = pairs.toArray();
+        Arrays.sort(tiles);
+        int count = 0;
+        for(int index = 0; index < tiles.length; index++){
+            if(index == 0 || tiles[index] != tiles[index - 1]){
+                tiles[count++] = tiles[index];
+            }
+        }
+        int clusters = clusterRows * clusterColumns;
+        clusterFirstNode = new int[clusters + 1];
+        for(int index = 0; index < count; index++){
+            clusterFirstNode[getCluster(tiles[index]) + 1]++;
+        }
+        for(int cluster = 0; cluster < clusters; cluster++){
+            clusterFirstNode[cluster + 1] += clusterFirstNode[cluster];
+        }
+        nodeTiles = new int[count];
+        int[] next = Arrays.copyOf(clusterFirstNode, clusters);
+        for(int index = 0; index < count; index++){
+            nodeTiles[next[getCluster(tiles[index])]++] = tiles[index];
+        }
+        // link the nodes: across the entrances, and inside each cluster
+        IntList[] edges = new IntList[count];
+        for(int node = 0; node < count; node++){
+            edges[node] = new IntList();
+        }
+        int[] pairTiles = pairs.toArray();
+        for(int index = 0; index < pairTiles.length; index += 2){
+            int first = getNode(pairTiles[index]);
+            int second = getNode(pairTiles[index + 1]);
+            edges[first].add(second);
+            edges[first].add(1);
+            edges[second].add(first);
+            edges[second].add(1);
+        }
+        PathFinder pathFinder = PathFinder.forCurrentThread();
+        for(int cluster = 0; cluster < clusters; cluster++){
+            for(int node = clusterFirstNode[cluster]; node < clusterFirstNode[cluster + 1]; node++){
+                fillCluster(pathFinder, nodeTiles[node]);
+                for(int other = clusterFirstNode[cluster]; other < clusterFirstNode[cluster + 1]; other++){
+                    int distance = pathFinder.getDistance(nodeTiles[other]);
+                    if(other != node && distance != PathFinder.UNREACHABLE){
+                        edges[node].add(other);
+                        edges[node].add(distance);
+                    }
+                }
+            }
+        }
+        edgeStart = new int[count + 1];
+        for(int node = 0; node < count; node++){
+            edgeStart[node + 1] = edgeStart[node] + edges[node].size() / 2;
+        }
+        edgeTargets = new int[edgeStart[count]];
+        edgeCosts = new int[edgeStart[count]];
+        for(int node = 0; node < count; node++){
+            for(int edge = 0; edge < edges[node].size() / 2; edge++){
+                edgeTargets[edgeStart[node] + edge] = edges[node].get(2 * edge);
+                edgeCosts[edgeStart[node] + edge] = edges[node].get(2 * edge + 1);
+            }
+        }
+    }
+
+    /**
+     * Find the entrances along a border: the runs of open tiles whose neighbours across the border are
+     * open too. A narrow entrance gets a pair of nodes in its middle, a wide one a pair at each end.
+     * @param pairs IntList to add the facing tiles of the chosen pairs to
+     * @param first index of the first tile of the border, on the near side
+     * @param length number of tiles of the border
+     * @param along index difference between two tiles following each other on the border
+     * @param across index difference between a tile and the one facing it across the border
+     */
+    private void findEntrances(IntList pairs, int first, int length, int along, int across){
+        int runStart = -1;
+        for(int position = 0; position <= length; position++){
+            int tile = first + position * along;
+            boolean open = position < length && grid.isWalkable(tile) && grid.isWalkable(tile + across);
+            if(open && runStart == -1){
+                runStart = position;
+            }
+            else if(!open && runStart != -1){
+                int runLength = position - runStart;
+                if(runLength < WIDE_ENTRANCE){
+                    int middle = first + (runStart + runLength / 2) * along;
+                    pairs.add(middle);
+                    pairs.add(middle + across);
+                }
+                else{
+                    int start = first + runStart * along;
+                    int end = first + (position - 1) * along;
+                    pairs.add(start);
+                    pairs.add(start + across);
+                    pairs.add(end);
+                    pairs.add(end + across);
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    /**
+     * Compute the distances from a tile to the tiles of its cluster, without leaving the cluster.
+     * @param pathFinder PathFinder to search with; its distances hold the result
+     * @param tile index of the tile
+     * @return number of tiles reached
+     */
+    public int fillCluster(PathFinder pathFinder, int tile){
+        int cluster = getCluster(tile);
+        int top = (cluster / clusterColumns) * clusterSize;
+        int left = (cluster % clusterColumns) * clusterSize;
+        return pathFinder.fillWithin(grid, tile, top, left, Math.min(top + clusterSize, grid.getRows()),
+                Math.min(left + clusterSize, grid.getColumns()));
+    }
+
+    /**
+     * Return the cluster a tile belongs to.
+     * @param tile index of the tile
+     * @return number of the cluster
+     */
+    public int getCluster(int tile){
+        return (tile / grid.getColumns() / clusterSize) * clusterColumns + (tile % grid.getColumns()) / clusterSize;
+    }
+
+    /**
+     * Return the node of a tile.
+     * @param tile index of the tile
+     * @return number of the node, or -1 if the tile is not a node
+     */
+    public int getNode(int tile){
+        int cluster = getCluster(tile);
+        int node = Arrays.binarySearch(nodeTiles, clusterFirstNode[cluster], clusterFirstNode[cluster + 1], tile);
+        return node < 0 ? -1 : node;
+    }
+
+    /**
+     * Return the first node of a cluster.
+     * @param cluster number of the cluster
+     * @return number of the node; the nodes of the cluster go up to getFirstNode(cluster + 1), excluded
+     */
+    public int getFirstNode(int cluster){
+        return clusterFirstNode[cluster];
+    }
+
+    /**
+     * Return the tile of a node.
+     * @param node number of the node
+     * @return index of the tile
+     */
+    public int getNodeTile(int node){
+        return nodeTiles[node];
+    }
+
+    /**
+     * Return the first edge of a node.
+     * @param node number of the node
+     * @return number of the edge; the edges of the node go up to getFirstEdge(node + 1), excluded
+     */
+    public int getFirstEdge(int node){
+        return edgeStart[node];
+    }
+
+    /**
+     * Return the node an edge leads to.
+     * @param edge number of the edge
+     * @return number of the node
+     */
+    public int getEdgeTarget(int edge){
+        return edgeTargets[edge];
+    }
+
+    /**
+     * Return the number of steps of an edge.
+     * @param edge number of the edge
+     * @return number of steps
+     */
+    public int getEdgeCost(int edge){
+        return edgeCosts[edge];
+    }
+
+    /**
+     * Return the number of nodes.
+     * @return number of nodes
+     */
+    public int getNodes(){
+        return nodeTiles.length;
+    }
+
+    /**
+     * Return the number of edges, counting both directions.
+     * @return number of edges
+     */
+    public int getEdges(){
+        return edgeTargets.length;
+    }
+
+    /**
+     * Return the grid of the map.
+     * @return Grid object
+     */
+    public Grid getGrid(){
+        return grid;
+    }
+
+    /**
+     * Class which represents a growing list of ints, used while the graph is built.
+     */
+    private static class IntList {
+
+        private int[] values = new int[8];
+        private int size = 0;
+
+        /**
+         * Add a value at the end of the list.
+         * @param value the value
+         */
+        private void add(int value){
+            if(size == values.length){
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Return a value of the list.
+         * @param index position of the value
+         * @return the value
+         */
+        private int get(int index){
+            return values[index];
+        }
+
+        /**
+         * Return the number of values.
+         * @return size of the list
+         */
+        private int size(){
+            return size;
+        }
+
+        /**
+         * Return the values as an array.
+         * @return array of the values
+         */
+        private int[] toArray(){
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
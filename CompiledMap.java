@@ -0,0 +1,316 @@
+import java.io.File; // library for manipulating files
+import java.io.FileOutputStream; // writing the compiled maps
+import java.io.IOException; // file manipulation exception handling
+import java.io.RandomAccessFile; // updating the header of a compiled map
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets; // encoding the name of the map
+import java.nio.file.Files; // replacing a compiled map in one step
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32; // checksum of the map files
+
+/**
+ * Class which reads and writes compiled maps: a binary copy of a map file, kept next to it, which
+ * holds its name, gold to win and size in a fixed header, then its tiles one byte each, and for
+ * maps which are not too large the distances to the exits (see DistanceField). A compiled map is
+ * loaded with a few bulk copies from a memory-mapped file, without parsing anything.
+ * The header also records the length, modification time and CRC-32 checksum of the map file it was
+ * compiled from. A map file with the same length and time is trusted without being read; otherwise
+ * its checksum decides, so a file which was only touched keeps its compiled map (whose header then
+ * records the new time), and a changed one gets a new compiled map the next time it is read.
+ *
+ * Usage: java CompiledMap [map files...]
+ */
+public final class CompiledMap {
+
+    /**
+     * Class which identifies the contents of a map file, so a compiled map can tell whether it is
+     * still up to date.
+     */
+    private static class Stamp {
+
+        private final long length;
+        private final long modified;
+        private final long checksum;
+
+        /**
+         * Constructor which stores the identity of a map file.
+         * @param length length of the file, in bytes
+         * @param modified time the file was last modified
+         * @param checksum CRC-32 checksum of the contents of the file
+         */
+        private Stamp(long length, long modified, long checksum){
+            this.length = length;
+            this.modified = modified;
+            this.checksum = checksum;
+        }
+    }
+
+    // declaring fields
+    public static final String EXTENSION = ".dodmap";
+    public static final int MAX_DISTANCE_TILES = 1 << 22; // larger maps are compiled without the distances to the exits
+    private static final int MAGIC = 0x444F444D; // "DODM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 56; // bytes of the header before the name
+    private static final int MODIFIED_OFFSET = 16; // where the header keeps the map file's modification time
+    private static final int CHUNK = 64 * 1024; // bytes written at a time
+
+    /**
+     * Main method which compiles the map files given, or every map of the registry.
+     * @param args the names of the map files
+     */
+    public static void main(String[] args){
+        MapRegistry registry = MapRegistry.getDefault();
+        List<String> fileNames = args.length > 0 ? Arrays.asList(args) : registry.getMapFileNames();
+        for(String fileName : fileNames){
+            File source = new File(fileName);
+            if(!source.isFile()){
+                source = new File(registry.getDirectory(), fileName);
+            }
+            try{
+                long start = System.nanoTime();
+                Map map = compile(source);
+                System.out.printf("%s: %dx%d tiles, compiled to %s (%d bytes) in %.1f ms%n", fileName, map.getRows(),
+                        map.getColumns(), fileFor(source).getName(), fileFor(source).length(), (System.nanoTime() - start) / 1e6);
+            } catch (IOException | RuntimeException e){
+                System.out.println(fileName + ": could not be compiled: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Return the file of the compiled map of a map file.
+     * @param source File object representing the map file
+     * @return File object representing the compiled map, in the same directory
+     */
+    public static File fileFor(File source){
+        String name = source.getName();
+        if(name.endsWith(MapRegistry.EXTENSION)){
+            name = name.substring(0, name.length() - MapRegistry.EXTENSION.length());
+        }
+        return new File(source.getParentFile(), name + EXTENSION);
+    }
+
+    /**
+     * Load a map from its compiled map if it is up to date, otherwise read the map file and compile it
+     * for the next time. A compiled map which cannot be written (for example in a read-only directory)
+     * is reported, and the map is still returned.
+     * @param source File object representing the map file
+     * @return Map object
+     * @throws IllegalArgumentException if the map file is not a valid map
+     */
+    public static Map loadOrCompile(File source){
+        try{
+            Map map = load(source);
+            if(map != null){
+                return map;
+            }
+        } catch (IOException e){
+            System.out.println("The compiled map of " + source.getName() + " could not be read: " + e.getMessage());
+        }
+        try{
+            return compile(source);
+        } catch (IOException e){
+            System.out.println("The map " + source.getName() + " could not be compiled: " + e.getMessage());
+            return new Map(source);
+        }
+    }
+
+    /**
+     * Load a map from its compiled map.
+     * @param source File object representing the map file
+     * @return Map object, or null if there is no compiled map, it is not valid, or the map file has changed since
+     * @throws IOException if the compiled map or the map file cannot be read
+     */
+    public static Map load(File source) throws IOException {
+        File compiled = fileFor(source);
+        if(!compiled.isFile() || !source.isFile()){
+            return null;
+        }
+        ByteBuffer contents = MapReader.readFile(compiled);
+        if(contents.limit() < HEADER_SIZE || contents.getInt(0) != MAGIC || contents.getInt(4) != VERSION){
+            return null;
+        }
+        long sourceLength = contents.getLong(8);
+        long sourceModified = contents.getLong(MODIFIED_OFFSET);
+        long sourceChecksum = contents.getLong(24);
+        // the length and modification time are checked first, so an unchanged map file is not read at all
+        Stamp touched = null; // the map file's stamp, if only its time has changed
+        if(sourceLength != source.length()){
+            return null;
+        }
+        if(sourceModified != source.lastModified()){
+            touched = stamp(source);
+            if(touched.checksum != sourceChecksum){
+                return null;
+            }
+        }
+        int goldToWin = contents.getInt(32);
+        int rows = contents.getInt(36);
+        int columns = contents.getInt(40);
+        int exitTargets = contents.getInt(44);
+        int exitMaxDistance = contents.getInt(48);
+        int nameLength = contents.getInt(52);
+        long tiles = (long) rows * columns;
+        if(rows < 0 || columns < 0 || nameLength < 0 || tiles > Integer.MAX_VALUE ||
+                contents.limit() != fileLength(nameLength, tiles, exitTargets >= 0)){
+            return null;
+        }
+        byte[] name = new byte[nameLength];
+        contents.get(HEADER_SIZE, name);
+        byte[] grid = new byte[(int) tiles];
+        int tilesOffset = align(HEADER_SIZE + nameLength);
+        contents.get(tilesOffset, grid);
+        DistanceField exitDistances = null;
+        if(exitTargets >= 0){
+            int[] distances = new int[(int) tiles];
+            contents.position(align(tilesOffset + tiles));
+            contents.asIntBuffer().get(distances);
+            exitDistances = new DistanceField(distances, columns, exitTargets, exitMaxDistance);
+        }
+        if(touched != null){
+            refreshStamp(compiled, touched.modified);
+        }
+        return new Map(new String(name, StandardCharsets.UTF_8), goldToWin, new Grid(rows, columns, grid), exitDistances);
+    }
+
+    /**
+     * Record the new modification time of a map file whose contents have not changed, so the next
+     * load trusts it again without reading it. A compiled map which cannot be written keeps the old
+     * time, and the map file's checksum is computed again on the next load.
+     * @param compiled File object representing the compiled map
+     * @param modified time the map file was last modified
+     */
+    private static void refreshStamp(File compiled, long modified){
+        try(RandomAccessFile file = new RandomAccessFile(compiled, "rw")){
+            file.seek(MODIFIED_OFFSET);
+            file.writeLong(modified);
+        } catch (IOException e){
+            System.out.println("The compiled map " + compiled.getName() + " could not be updated: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read a map file and write its compiled map, replacing the old one. The compiled map is only
+     * written if the map file did not change while it was read.
+     * @param source File object representing the map file
+     * @return Map object read from the map file
+     * @throws IOException if the map file cannot be read or the compiled map cannot be written
+     * @throws IllegalArgumentException if the map file is not a valid map
+     */
+    public static Map compile(File source) throws IOException {
+        Stamp stamp = stamp(source);
+        Map map = new Map(source);
+        if(map.getRows() == 0 || source.length() != stamp.length || source.lastModified() != stamp.modified){
+            return map;
+        }
+        write(map, stamp, fileFor(source));
+        return map;
+    }
+
+    /**
+     * Write a compiled map to a temporary file, then move it in place, so a compiled map is never
+     * seen half written.
+     * @param map Map object to compile
+     * @param stamp Stamp of the map file it was read from
+     * @param compiled File object representing the compiled map
+     * @throws IOException if the compiled map cannot be written
+     */
+    private static void write(Map map, Stamp stamp, File compiled) throws IOException {
+        Grid grid = map.getGrid();
+        int tiles = grid.getRows() * grid.getColumns();
+        DistanceField exitDistances = tiles <= MAX_DISTANCE_TILES ? map.getExitDistances() : null;
+        byte[] name = map.getName().getBytes(StandardCharsets.UTF_8);
+        File temporary = new File(compiled.getParentFile(), compiled.getName() + ".tmp");
+        try(FileOutputStream out = new FileOutputStream(temporary); FileChannel channel = out.getChannel()){
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(CHUNK, align(HEADER_SIZE + name.length)));
+            buffer.putInt(MAGIC).putInt(VERSION);
+            buffer.putLong(stamp.length).putLong(stamp.modified).putLong(stamp.checksum);
+            buffer.putInt(map.getGold()).putInt(grid.getRows()).putInt(grid.getColumns());
+            buffer.putInt(exitDistances == null ? -1 : exitDistances.getTargets());
+            buffer.putInt(exitDistances == null ? 0 : exitDistances.getMaxDistance());
+            buffer.putInt(name.length).put(name);
+            pad(buffer);
+            for(int index = 0; index < tiles; index++){
+                if(!buffer.hasRemaining()){
+                    flush(channel, buffer);
+                }
+                buffer.put((byte) grid.get(index));
+            }
+            if(exitDistances != null){
+                pad(buffer);
+                for(int index = 0; index < tiles; index++){
+                    if(buffer.remaining() < Integer.BYTES){
+                        flush(channel, buffer);
+                    }
+                    buffer.putInt(exitDistances.get(index));
+                }
+            }
+            flush(channel, buffer);
+        }
+        Files.move(temporary.toPath(), compiled.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read the length, modification time and checksum of a map file.
+     * @param source File object representing the map file
+     * @return Stamp of the file
+     * @throws IOException if the file cannot be read
+     */
+    private static Stamp stamp(File source) throws IOException {
+        long modified = source.lastModified();
+        ByteBuffer contents = MapReader.readFile(source);
+        CRC32 checksum = new CRC32();
+        checksum.update(contents);
+        return new Stamp(contents.limit(), modified, checksum.getValue());
+    }
+
+    /**
+     * Return the length a compiled map must have.
+     * @param nameLength number of bytes of the name
+     * @param tiles number of tiles
+     * @param withDistances true if the compiled map holds the distances to the exits
+     * @return number of bytes
+     */
+    private static long fileLength(int nameLength, long tiles, boolean withDistances){
+        long length = align(HEADER_SIZE + nameLength) + tiles;
+        return withDistances ? align(length) + tiles * Integer.BYTES : length;
+    }
+
+    /**
+     * Round an offset up to a multiple of 4 bytes, where the next section starts.
+     * @param offset offset in the compiled map
+     * @return the rounded offset
+     */
+    private static int align(long offset){
+        return (int) ((offset + 3) & ~3L);
+    }
+
+    /**
+     * Write zeros up to the next multiple of 4 bytes. The buffer's position is always the offset in the
+     * file modulo its capacity, which is a multiple of 4.
+     * @param buffer ByteBuffer being filled
+     */
+    private static void pad(ByteBuffer buffer){
+        while((buffer.position() & 3) != 0){
+            buffer.put((byte) 0);
+        }
+    }
+
+    /**
+     * Write the filled part of a buffer to a channel and empty the buffer.
+     * @param channel FileChannel to write to
+     * @param buffer ByteBuffer to write
+     * @throws IOException if the channel cannot be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class which represents a concurrent set of connections which messages are fanned out to.
+ * Adding and removing are O(1). Fan-outs iterate over a snapshot array, which is only rebuilt
+ * after the set changed, so they never see a half updated set and never block the clients
+ * which are added or removed meanwhile.
+ */
+public class ConnectionSet {
+
+    /**
+     * Class which represents a snapshot of the set, together with the version of the
+     * set it was taken from.
+     */
+    private static class Snapshot {
+
+        private final long version;
+        private final ClientConnection[] connections;
+
+        /**
+         * Constructor which stores the snapshot and its version.
+         * @param version version of the set when the snapshot was taken
+         * @param connections array of the connections in the set at that time
+         */
+        private Snapshot(long version, ClientConnection[] connections){
+            this.version = version;
+            this.connections = connections;
+        }
+    }
+
+    // declaring fields
+    private static final ClientConnection[] NO_CONNECTIONS = new ClientConnection[0];
+    private final Set<ClientConnection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong version = new AtomicLong(); // incremented whenever the set changes
+    private volatile Snapshot snapshot = new Snapshot(0, NO_CONNECTIONS);
+
+    /**
+     * Add a connection to the set.
+     * @param connection ClientConnection to add
+     * @return true if the connection was not in the set yet
+     */
+    public boolean add(ClientConnection connection){
+        if(!connections.add(connection)){
+            return false;
+        }
+        version.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Remove a connection from the set.
+     * @param connection ClientConnection to remove
+     * @return true if the connection was in the set
+     */
+    public boolean remove(ClientConnection connection){
+        if(!connections.remove(connection)){
+            return false;
+        }
+        version.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Check if a connection is in the set.
+     * @param connection ClientConnection to look for
+     * @return true if the connection is in the set
+     */
+    public boolean contains(ClientConnection connection){
+        return connections.contains(connection);
+    }
+
+    /**
+     * Return the connections in the set, as an array which must not be modified.
+     * The array is shared by all the fan-outs until the set changes.
+     * @return array of ClientConnection objects
+     */
+    public ClientConnection[] toArray(){
+        Snapshot current = snapshot;
+        long currentVersion = version.get();
+        if(current.version == currentVersion){
+            return current.connections;
+        }
+        ClientConnection[] array = connections.toArray(NO_CONNECTIONS);
+        // only cache the array if the set did not change while it was built
+        if(version.get() == currentVersion){
+            snapshot = new Snapshot(currentVersion, array);
+        }
+        return array;
+    }
+
+    /**
+     * Check if the set is empty.
+     * @return true if there are no connections in the set
+     */
+    public boolean isEmpty(){
+        return connections.isEmpty();
+    }
+
+    /**
+     * Return the number of connections in the set.
+     * @return number of connections
+     */
+    public int size(){
+        return connections.size();
+    }
+}
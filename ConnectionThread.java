@@ -1,24 +1,41 @@
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * Class which represents the connection between a client and the server.
- * Handles the message flow and extends Thread so the server can be
- * multi-threaded.
+ * Handles the message flow and implements Runnable so the server can run each
+ * connection on its own thread, either a platform thread or a virtual thread.
  */
-public class ConnectionThread extends Thread {
+public class ConnectionThread implements Runnable, ClientConnection {
 
     // declaring fields
     private Socket connection; // client side
-    private BufferedReader clientIn;
-    private PrintWriter clientOut;
+    private DataInputStream clientIn; // read byte by byte, so the protocol can switch to binary frames
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(); // reused to read lines
+    private OutputStream clientOut;
+    private final OutboundQueue outbound; // messages waiting to be written by writeMessages()
+    private final WriteCoalescer coalescer; // decides how the queued messages are batched into writes
+    private static final int INITIAL_BATCH_BYTES = 2048; // size of the batch of an idle client
+    private byte[] batch; // reused to collect a batch of messages, grows while the client is busy
+    private int batchLength = 0; // number of bytes in the batch
+    private int batchWrites = 0; // number of socket writes used for the current batch
     private final ChatServer server; // server side
-    private boolean serverClosed = false;
-    private boolean isUsernameSet = false;
+    private volatile boolean serverClosed = false;
+    private volatile boolean isUsernameSet = false;
     private String userName;
+    private int senderId; // interned id of the user-name
+    private boolean binaryRequested = false; // value is true if the client asked for the binary protocol
+    private volatile boolean binaryProtocol = false; // value is true once the binary protocol is used
+    private final BitSet announcedSenders = new BitSet(); // senders whose name the client knows
+    private final ReplayBuffer replayBuffer = new ReplayBuffer(); // live chat messages held back while the history is replayed
     private static final String CONFIRMATION_MESSAGE = "Thank you for joining the server...enjoy!";
 
     /**
@@ -29,12 +46,14 @@ public class ConnectionThread extends Thread {
     public ConnectionThread(Socket connection, ChatServer server){
         this.server = server;
         this.connection = connection;
+        this.outbound = server.getOptions().createOutboundQueue();
+        this.coalescer = server.getOptions().createWriteCoalescer();
+        this.batch = new byte[Math.min(INITIAL_BATCH_BYTES, coalescer.getMaxBatchBytes())];
         try {
-            InputStreamReader r = new InputStreamReader(connection.getInputStream());
             // Data input stream from Client to server
-            clientIn = new BufferedReader(r);
+            clientIn = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
             // Data output stream from server to Client
-            clientOut = new PrintWriter(connection.getOutputStream(), true);
+            clientOut = connection.getOutputStream();
         } catch (IOException e){
             e.printStackTrace();
         }
@@ -43,6 +62,7 @@ public class ConnectionThread extends Thread {
     /**
      * Set that the server is closed.
      */
+    @Override
     public void setServerClosed(){
         serverClosed = true;
     }
@@ -56,11 +76,232 @@ public class ConnectionThread extends Thread {
     }
 
     /**
-     * Return the output stream from the server to the client
-     * @return PrintWriter object representing the output stream from the server to the Client
+     * Queue a message of the server for the client, using the client's protocol.
+     * @param message String representing the message, without the line terminator
+     */
+    @Override
+    public void sendMessage(String message){
+        sendEncodedMessage(binaryProtocol ? MessageEncoder.encodeFrame(WireProtocol.SERVER, 0, message) :
+                MessageEncoder.encode(message));
+    }
+
+    /**
+     * Queue a chat message for the client, using the client's protocol. Messages received while
+     * the history of a room is replayed are held back until the replay has been sent.
+     * @param message ChatMessage to send
+     */
+    @Override
+    public void sendChatMessage(ChatMessage message){
+        if(!replayBuffer.offer(message)){
+            deliverChatMessage(message);
+        }
+    }
+
+    /**
+     * Start holding back the live chat messages, before the client joins a room whose history is replayed.
+     */
+    @Override
+    public void holdChatMessages(){
+        replayBuffer.hold();
+    }
+
+    /**
+     * Send the history of a room followed by the chat messages held back since the client joined it.
+     * @param history array of ChatMessage objects representing the history of the room, oldest first
+     */
+    @Override
+    public void releaseChatMessages(ChatMessage[] history){
+        replayBuffer.release(history, this::sendChatMessages);
+    }
+
+    /**
+     * Queue a chat message for the client, using the client's protocol. With the binary protocol,
+     * the sender's name is announced before the first message from it. Messages sent before the
+     * client has joined the chat are ignored.
+     * @param message ChatMessage to send
+     */
+    private void deliverChatMessage(ChatMessage message){
+        if(!isUsernameSet){
+            return;
+        }
+        if(!binaryProtocol){
+            sendEncodedMessage(message.getTextLine());
+            return;
+        }
+        // keep the announcement and the message together when several clients send at once
+        synchronized (announcedSenders){
+            int messageSenderId = message.getSenderId();
+            if(message.getSenderName() != null && !announcedSenders.get(messageSenderId)){
+                announcedSenders.set(messageSenderId);
+                // the client needs the name for every later message of the sender, so it is never dropped
+                queueMessage(MessageEncoder.encodeFrame(WireProtocol.SENDER, messageSenderId,
+                        message.getSenderName()), true);
+            }
+            sendEncodedMessage(message.getBinaryFrame());
+        }
+    }
+
+    /**
+     * Queue several chat messages for the client as a single encoded buffer, using the client's
+     * protocol. Unlike sendChatMessage(), it does not wait for the client to have joined the chat,
+     * since it is used to replay the history while the client joins.
+     * @param messages array of ChatMessage objects to send, oldest first
+     */
+    @Override
+    public void sendChatMessages(ChatMessage[] messages){
+        if(messages.length == 0){
+            return;
+        }
+        ArrayList<ByteBuffer> encoded = new ArrayList<>(messages.length);
+        if(!binaryProtocol){
+            for(ChatMessage message:messages){
+                encoded.add(message.getTextLine());
+            }
+            sendEncodedMessage(MessageEncoder.concatenate(encoded));
+            return;
+        }
+        synchronized (announcedSenders){
+            boolean announced = false; // value is true if the buffer announces a sender
+            for(ChatMessage message:messages){
+                int messageSenderId = message.getSenderId();
+                if(message.getSenderName() != null && !announcedSenders.get(messageSenderId)){
+                    announcedSenders.set(messageSenderId);
+                    encoded.add(MessageEncoder.encodeFrame(WireProtocol.SENDER, messageSenderId,
+                            message.getSenderName()));
+                    announced = true;
+                }
+                encoded.add(message.getBinaryFrame());
+            }
+            queueMessage(MessageEncoder.concatenate(encoded), announced);
+        }
+    }
+
+    /**
+     * Queue an encoded message for the client. Never blocks: if the client is too slow and the
+     * slow consumer policy says so, the connection is closed instead.
+     * @param message ByteBuffer containing the encoded message
      */
-    public PrintWriter getClientOut(){
-        return clientOut;
+    @Override
+    public void sendEncodedMessage(ByteBuffer message){
+        queueMessage(message, false);
+    }
+
+    /**
+     * Queue an encoded message for the client, closing the connection if the slow consumer policy says so.
+     * @param message ByteBuffer containing the encoded message
+     * @param pinned true if the slow consumer policy must not drop the message (see OutboundQueue)
+     */
+    private void queueMessage(ByteBuffer message, boolean pinned){
+        if(!outbound.offer(message, pinned)){
+            System.out.println(userName + " is too slow to keep up with the chat...");
+            try{
+                // the reading side notices the closed socket and disconnects the client
+                connection.close();
+            } catch (IOException e){
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Write the queued messages to the client until the connection is closed.
+     * Runs on its own thread, so only this client waits for its socket. All the messages
+     * queued at the same time are written with a single write, and when the client is busy
+     * the writer waits a short window for more messages to add to the batch.
+     */
+    public void writeMessages(){
+        try{
+            ByteBuffer message;
+            while((message = outbound.take()) != null){
+                int batchedMessages = 0;
+                long deadline = System.nanoTime() + coalescer.getWindowNanos();
+                while(message != null){
+                    addToBatch(message);
+                    batchedMessages++;
+                    if(batchLength >= coalescer.getMaxBatchBytes()){
+                        break;
+                    }
+                    message = outbound.poll();
+                    if(message == null && coalescer.shouldWaitForMore(batchLength)){
+                        message = outbound.poll(deadline - System.nanoTime());
+                    }
+                }
+                writeBatch();
+                clientOut.flush();
+                coalescer.batchWritten(batchedMessages, batchWrites);
+                batchWrites = 0;
+                // an idle client does not keep a large batch
+                if(batchedMessages == 1 && batch.length > INITIAL_BATCH_BYTES){
+                    batch = new byte[INITIAL_BATCH_BYTES];
+                }
+            }
+        } catch (IOException e){
+            outbound.close();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Copy a message into the batch. The batch grows up to the batching threshold when it fills
+     * up, and is written to the socket once it has reached the threshold.
+     * The message is shared with the other clients, so only its position is changed.
+     * @param message ByteBuffer containing the encoded message
+     * @throws IOException if the batch cannot be written to the socket
+     */
+    private void addToBatch(ByteBuffer message) throws IOException {
+        while(message.hasRemaining()){
+            if(batchLength == batch.length){
+                if(batch.length < coalescer.getMaxBatchBytes()){
+                    batch = Arrays.copyOf(batch, (int) Math.min(2L * batch.length, coalescer.getMaxBatchBytes()));
+                }
+                else{
+                    writeBatch();
+                }
+            }
+            int length = Math.min(message.remaining(), batch.length - batchLength);
+            message.get(batch, batchLength, length);
+            batchLength += length;
+        }
+    }
+
+    /**
+     * Write the batch to the socket and empty it.
+     * @throws IOException if the batch cannot be written to the socket
+     */
+    private void writeBatch() throws IOException {
+        if(batchLength > 0){
+            clientOut.write(batch, 0, batchLength);
+            batchLength = 0;
+            batchWrites++;
+        }
+    }
+
+    /**
+     * Close the client side connection.
+     * @throws IOException if the socket cannot be closed
+     */
+    @Override
+    public void closeConnection() throws IOException {
+        connection.close();
+    }
+
+    /**
+     * Return the user-name of the client.
+     * @return String representing the user-name, or null if it has not been set yet
+     */
+    @Override
+    public String getUserName(){
+        return userName;
+    }
+
+    /**
+     * Return the interned id of the client's user-name.
+     * @return id of the user-name, 0 if it has not been set yet
+     */
+    @Override
+    public int getSenderId(){
+        return senderId;
     }
 
     /**
@@ -71,21 +312,32 @@ public class ConnectionThread extends Thread {
         // set the username of the client
         try {
             while (!isUsernameSet) {
-                String username = clientIn.readLine();
-                if (server.getUserNames().size() != 0) {
-                    if (!server.getUserNames().contains(username)) {
-                        isUsernameSet = true;
-                        server.addUser(username);
-                        userName = username;
-                        clientOut.println(CONFIRMATION_MESSAGE);
-                        break;
-                    }
-                    clientOut.println("Please try again...this username is already taken");
-                } else {
-                    isUsernameSet = true;
+                String username = WireProtocol.readLine(clientIn, lineBuffer);
+                // the client left before choosing a user-name
+                if (username == null) {
+                    server.disconnect(null, this);
+                    outbound.close();
+                    return;
+                }
+                // the client asks to use the binary protocol once it has joined
+                if (username.equals(WireProtocol.PROTOCOL_REQUEST) && !binaryRequested) {
+                    binaryRequested = true;
+                    sendMessage(WireProtocol.PROTOCOL_REQUEST);
+                    continue;
+                }
+                // messages sent to the room once the client has joined wait for the replay of its history
+                replayBuffer.hold();
+                if (server.claimUserName(username, this)) {
                     userName = username;
-                    server.addUser(username);
-                    clientOut.println(CONFIRMATION_MESSAGE);
+                    senderId = server.getSenderId(username);
+                    sendMessage(CONFIRMATION_MESSAGE);
+                    // the confirmation is the last message sent with the text protocol
+                    binaryProtocol = binaryRequested;
+                    isUsernameSet = true;
+                    server.replayHistory(this);
+                } else {
+                    releaseChatMessages(new ChatMessage[0]);
+                    sendMessage("Please try again...this username is already taken");
                 }
             }
         } catch (IOException e) {
@@ -94,21 +346,42 @@ public class ConnectionThread extends Thread {
         // listen for messages from the client and make the server broadcast them
         while (!serverClosed){
             try{
-                String userInput = clientIn.readLine();
+                String userInput;
+                if(binaryProtocol){
+                    // both MESSAGE and COMMAND frames carry just the user's input
+                    WireProtocol.Frame frame = WireProtocol.readFrame(clientIn);
+                    userInput = frame == null ? null : frame.getPayload();
+                }
+                else{
+                    userInput = WireProtocol.readLine(clientIn, lineBuffer);
+                }
                 // check if the user disconnects
                 if(userInput.equals("/disconnect")){
                     connection.close();
+                    server.disconnect(userName, this);
                     break;
                 }
-                server.printMessageToAllClients(userInput);
+                if(binaryProtocol){
+                    server.handleClientMessage(this, userInput);
+                }
+                else{
+                    server.handleClientLine(this, userInput);
+                }
             } catch (IOException e){
                 // print to the server console that the user has disconnected
                 System.out.println("There is something wrong with " + userName +
                         ". Probably the server is shutting down.");
+                // the socket cannot be read anymore, so stop serving the client
+                if(!serverClosed){
+                    server.disconnect(userName, this);
+                }
+                break;
             } catch (NullPointerException e){
                 server.disconnect(userName, this);
                 serverClosed = true;
             }
         }
+        // stop the writer
+        outbound.close();
     }
 }
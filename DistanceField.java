@@ -0,0 +1,108 @@
+/**
+ * Class which holds the number of steps from every tile of a map to the nearest of some target
+ * tiles, such as the exits. It is computed once, with a breadth first search from all the targets
+ * at the same time, and never changes, so it is shared by every game played on the map and answers
+ * "how far is the nearest target" and "which way is it" without searching.
+ */
+public final class DistanceField {
+
+    // declaring fields
+    public static final int UNREACHABLE = PathFinder.UNREACHABLE; // distance of the tiles no target can be reached from
+    private final int[] distances; // steps from each tile to the nearest target, row after row
+    private final int columns;
+    private final int targets; // number of target tiles
+    private final int maxDistance; // largest distance of a reachable tile
+
+    /**
+     * Constructor which computes the distances from the nearest target to every tile.
+     * @param grid WalkableGrid of the map
+     * @param targets array of the indexes of the target tiles
+     */
+    public DistanceField(WalkableGrid grid, int[] targets){
+        int size = grid.getRows() * grid.getColumns();
+        this.columns = grid.getColumns();
+        this.targets = targets.length;
+        this.distances = new int[size];
+        PathFinder pathFinder = PathFinder.forCurrentThread();
+        pathFinder.fill(grid, targets);
+        int max = 0;
+        for(int index = 0; index < size; index++){
+            distances[index] = pathFinder.getDistance(index);
+            max = Math.max(max, distances[index]);
+        }
+        this.maxDistance = max;
+    }
+
+    /**
+     * Constructor which stores distances computed before, such as the ones of a compiled map (see CompiledMap).
+     * @param distances array of the steps from each tile to the nearest target, which must not be changed afterwards
+     * @param columns number of columns of the map
+     * @param targets number of target tiles
+     * @param maxDistance largest distance of a reachable tile
+     */
+    public DistanceField(int[] distances, int columns, int targets, int maxDistance){
+        this.distances = distances;
+        this.columns = columns;
+        this.targets = targets;
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * Return the number of steps from a tile to the nearest target.
+     * @param index index of the tile, row * columns + column
+     * @return number of steps, or UNREACHABLE if no target can be reached from the tile (or it is a wall)
+     */
+    public int get(int index){
+        return distances[index];
+    }
+
+    /**
+     * Return the number of steps from a tile to the nearest target.
+     * @param row row of the tile
+     * @param column column of the tile
+     * @return number of steps, or UNREACHABLE if no target can be reached from the tile (or it is a wall)
+     */
+    public int get(int row, int column){
+        return distances[row * columns + column];
+    }
+
+    /**
+     * Return the neighbour of a tile which is one step closer to the nearest target, looking north,
+     * then west, then south, then east.
+     * @param index index of the tile
+     * @return index of the neighbour, the tile itself if it is a target, or UNREACHABLE
+     */
+    public int nextStep(int index){
+        int distance = distances[index];
+        if(distance <= 0){
+            return distance == 0 ? index : UNREACHABLE;
+        }
+        int column = index % columns;
+        if(index >= columns && distances[index - columns] == distance - 1){
+            return index - columns;
+        }
+        if(column > 0 && distances[index - 1] == distance - 1){
+            return index - 1;
+        }
+        if(index + columns < distances.length && distances[index + columns] == distance - 1){
+            return index + columns;
+        }
+        return index + 1;
+    }
+
+    /**
+     * Return the number of target tiles.
+     * @return number of targets
+     */
+    public int getTargets(){
+        return targets;
+    }
+
+    /**
+     * Return the largest number of steps from a tile to its nearest target.
+     * @return largest distance of a tile which can reach a target
+     */
+    public int getMaxDistance(){
+        return maxDistance;
+    }
+}
@@ -1,6 +1,6 @@
-import java.io.File; // file manipulation
 import java.util.ArrayList; // using array list
 import java.util.InputMismatchException; // file manipulation exception handling
+import java.util.List; // returning the names of the map files
 import java.util.Scanner; // user input
 
 /**
@@ -11,10 +11,6 @@ public class DungeonsOfDoom {
     //Declaring fields
     private static ArrayList<String> filePathList; // array list of all the map files' names
     private static Map map; // game map
-    // directory which contains all the maps
-    private static final File directory = new File(DungeonsOfDoom.class.getProtectionDomain().
-                                            getCodeSource().getLocation().getPath());
-    private static final File[] files = directory.listFiles();
     private int mapNumber;
 
     /**
@@ -26,6 +22,7 @@ public class DungeonsOfDoom {
         initializeFilePath();
         printWelcomeMessage();
         loadMap();
+        System.out.println(map.getName());
         GameLogic game = new GameLogic(map, player);
         game.play();
     }
@@ -33,26 +30,25 @@ public class DungeonsOfDoom {
      * Create the array list of map files's names
      */
     private void initializeFilePath(){
-        if(files != null){
-            for(File file: files){
-                // be sure to get just the .txt files
-                if(file.getName().contains(".txt")){
-                    filePathList.add(file.getName());
-                }
-            }
-        }
+        filePathList.addAll(getMapFileNames());
+    }
+
+    /**
+     * Returns the names of the map files, in the order they are shown to the player.
+     * @return list of the map files' names, with the extension
+     */
+    public static List<String> getMapFileNames(){
+        return MapRegistry.getDefault().getMapFileNames();
     }
     /**
      * Print the name of each map file, without the extension
      */
     private void printMaps(){
         int index = 1;
-        for(File file: files){
-            if(file.getName().contains(".txt")){
-                System.out.println(index + " --- " +
-                        file.getName().substring(0, file.getName().length() - 4));
-                index++;
-            }
+        for(String fileName: filePathList){
+            System.out.println(index + " --- " +
+                    fileName.substring(0, fileName.length() - MapRegistry.EXTENSION.length()));
+            index++;
         }
     }
     /**
@@ -86,15 +82,16 @@ public class DungeonsOfDoom {
                 "current session and restart the game.");
     }
     /**
-     * Instantiate the correspondent Map object
+     * Get the correspondent Map object from the registry of the maps
      */
     private void loadMap(){
-        if(mapNumber == -1){
-            // default map
-            map = new Map("easyMap.txt");
+        map = null;
+        if(mapNumber != -1){
+            map = MapRegistry.getDefault().get(filePathList.get(mapNumber));
         }
-        else{
-            map = new Map(filePathList.get(mapNumber));
+        if(map == null){
+            // default map, also used if the chosen one has been removed meanwhile
+            map = MapRegistry.getDefault().get("easyMap.txt");
         }
     }
 }
\ No newline at end of file
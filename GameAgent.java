@@ -0,0 +1,19 @@
+/**
+ * Interface which represents a player of Dungeons of Doom which is not a human typing commands,
+ * used to play games without a user (see GameSimulation). It gets the same messages a human player
+ * would see and answers with the same commands.
+ */
+public interface GameAgent {
+
+    /**
+     * Receive a message of the game, such as the grid shown by LOOK or "SUCCESS".
+     * @param message String representing the message, without the line terminator
+     */
+    void onOutput(String message);
+
+    /**
+     * Return the agent's next command, such as "look" or "move n".
+     * @return String representing the command
+     */
+    String nextCommand();
+}
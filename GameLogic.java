@@ -1,31 +1,88 @@
 import java.io.IOException;
-import java.util.ArrayList; // using array lists
 import java.util.Random; // randomly spawning the player and the bot on the map
+import java.util.function.Consumer; // where the game's output is sent
 
 /**
- * Class contains the game's logic
+ * Class contains the game's logic. The game is a state machine driven one step at a time:
+ * in the PLAYER_TURN state it waits for the human player's command, in the BOT_TURN state
+ * the bot plays, and in the ENDED state the result is known.
  */
 class GameLogic {
 
+    /**
+     * The states of a game.
+     */
+    public enum State {
+        NOT_STARTED, // the players have not been spawned yet
+        PLAYER_TURN, // waiting for the human player's command
+        BOT_TURN, // the bot plays next
+        ENDED // the player quit or was caught
+    }
+
     private Player player;
     private BotPlayer bot;
-    private int turn = 0; // counter to decide whose turn it is
     private Map map; // game map
-    private ArrayList<char[]> navigationMap; // the game map which will be used in the game logic for computation
+    private final GridOverlay navigationMap; // the tiles of this game, on top of the map's shared grid
     private boolean gameEnded = false;
+    private State state = State.NOT_STARTED;
+    private int turns = 0; // number of commands played by the human player
     private int goldToWin;
-    private ChatClient chatPlayer; // the user who plays the game
+    private ChatClient chatPlayer; // the user who plays the game locally, null if the server hosts the game
+    private final Consumer<String> output; // receives each message of the game for the human player
+    private final Random random; // spawns the players and drives the bot, so a seed replays the same game
+    private final BotPlayer.Strategy botStrategy; // how the bot plays
+    private boolean playerCaught = false; // value is true if the bot caught the player
+    private final LookView playerView = new LookView(); // filled by the human player's LOOK
+    private final LookView botView = new LookView(); // filled by the bot's LOOK
+    private final StringBuilder lookText = new StringBuilder(LookView.SIZE * (LookView.SIZE + 1)); // renders the human player's view
 
     /**
-     * Constructor which initializes the game's logic on a specified map for a specified user
+     * Constructor which initializes the game's logic on a specified map for a specified user,
+     * who plays in the console.
      * @param map Map object representing the DoD map
      * @param chatPlayer ChatClient object which represents the user who plays the game
      */
     public GameLogic(Map map, ChatClient chatPlayer){
-        this.map = map;
+        this(map, System.out::println);
         this.chatPlayer = chatPlayer;
+    }
+
+    /**
+     * Constructor which initializes the game's logic on a specified map. The human player's commands
+     * are given to playTurn() and the game's messages are sent to the output.
+     * @param map Map object representing the DoD map
+     * @param output Consumer which receives each message of the game, without the line terminator
+     */
+    public GameLogic(Map map, Consumer<String> output){
+        this(map, output, new Random());
+    }
+
+    /**
+     * Constructor which initializes the game's logic on a specified map, with a specified source of
+     * randomness, so that games can be replayed from a seed.
+     * @param map Map object representing the DoD map
+     * @param output Consumer which receives each message of the game, without the line terminator
+     * @param random Random object used to spawn the players and by the bot
+     */
+    public GameLogic(Map map, Consumer<String> output, Random random){
+        this(map, output, random, BotPlayer.Strategy.LOCAL);
+    }
+
+    /**
+     * Constructor which initializes the game's logic on a specified map, with a specified source of
+     * randomness and a specified kind of bot.
+     * @param map Map object representing the DoD map
+     * @param output Consumer which receives each message of the game, without the line terminator
+     * @param random Random object used to spawn the players and by the bot
+     * @param botStrategy how the bot plays
+     */
+    public GameLogic(Map map, Consumer<String> output, Random random, BotPlayer.Strategy botStrategy){
+        this.map = map;
+        this.output = output;
+        this.random = random;
+        this.botStrategy = botStrategy;
         this.goldToWin = map.getGold();
-        this.navigationMap = map.getMap();
+        this.navigationMap = new GridOverlay(map.getGrid());
     }
 
     /**
@@ -33,25 +90,24 @@ class GameLogic {
      * @param player Player object representing either the human player or the bot
      */
     private void generateRandomCoordinates(Player player){
-        Random random = new Random();
         int row = random.nextInt(map.getRows());
         int column = random.nextInt(map.getColumns());
         // depending on whether it is the human player or the bot, spawn them differently
         // keep trying to randomly spawn them until the Player object is placed on a valid tile
         if(player == this.player){
-            while(navigationMap.get(row)[column] != '.' && navigationMap.get(row)[column] != 'E'){
+            while(navigationMap.get(row, column) != Grid.FLOOR && navigationMap.get(row, column) != Grid.EXIT){
                 row = random.nextInt(map.getRows());
                 column = random.nextInt(map.getColumns());
             }
         }
         else{
-            while(navigationMap.get(row)[column] == 'P' || navigationMap.get(row)[column] == '#'){
+            while(navigationMap.get(row, column) == GridOverlay.PLAYER || navigationMap.get(row, column) == Grid.WALL){
                 row = random.nextInt(map.getRows());
                 column = random.nextInt(map.getColumns());
             }
         }
         // update the player's fields accordingly
-        player.setCurrentTile(navigationMap.get(row)[column]);
+        player.setCurrentTile(navigationMap.getTile(row, column));
         player.setColumn(column);
         player.setRow(row);
     }
@@ -77,70 +133,53 @@ class GameLogic {
             case "quit": QUIT();return;
             default:
                 // Command is not valid and the turn is wasted.
-                System.out.println("Unrecognized command.\nFAIL.");
+                if(player == this.player){
+                    output.accept("Unrecognized command.\nFAIL.");
+                }
         }
     }
 
     /**
-     * Look method. Analyzes the 5*5 grid surrounding the player.
+     * Look method. Fills the looking player's view with the 5*5 grid surrounding them.
      * If it is the human player, it displays it.
-     * Else, the bot calls the updateMemoryMap() method to make use
-     * of the grid for its next decision.
+     * Else, the bot gets the view to make use of the grid for its next decision.
      * @param player Player object which can be either a human player or a bot
      */
     private void LOOK(Player player){
         boolean playerFound = false; // checking to see if the player is in sight
-        ArrayList<char[]> visibleMap = new ArrayList<>(); // the 5*5 grid which will be passed to the bot if needed
-        int visibleRowIndex;
-        int row = player.getRow();
-        int column = player.getColumn();
+        LookView view = player == this.player ? playerView : botView;
+        int row = player.getRow() - LookView.CENTRE;
+        int column = player.getColumn() - LookView.CENTRE;
         // Player is always in the centre
-        for(int rowIndex = row - 2; rowIndex <= row + 2; rowIndex++){
-            // create arrays of characters for each row, and add them to the array list
-            char[] visibleRow = new char[100];
-            visibleRowIndex = 0;
-            for(int columnIndex = column - 2; columnIndex <= column + 2; columnIndex++){
+        for(int viewRow = 0; viewRow < LookView.SIZE; viewRow++){
+            for(int viewColumn = 0; viewColumn < LookView.SIZE; viewColumn++){
+                int rowIndex = row + viewRow;
+                int columnIndex = column + viewColumn;
                 // Visible area outside the map
-                if(rowIndex < 0 || columnIndex < 0 ||
-                        rowIndex >= map.getRows() || columnIndex >= map.getColumns()){
-                    // checking which player called this method
-                    if(player == this.player){
-                        System.out.print('#');
-                    }
-                    else{
-                        visibleRow[visibleRowIndex] = '#';
-                        visibleRowIndex++;
-                    }
-                }
+                char tile = Grid.WALL;
                 // Visible area inside the map
-                else {
-                    if(player == this.player){
-                        System.out.print(navigationMap.get(rowIndex)[columnIndex]);
-                    }
-                    else{
-                        // if we found the player, update the value of the boolean variable and let the bot know
-                        if(navigationMap.get(rowIndex)[columnIndex] == 'P'){
-                            this.bot.setPlayerFound(rowIndex + 2 - row, columnIndex + 2 - column);
-                            playerFound = true;
-                        }
-                        visibleRow[visibleRowIndex] = navigationMap.get(rowIndex)[columnIndex];
-                        visibleRowIndex++;
-                    }
+                if(navigationMap.isInside(rowIndex, columnIndex)){
+                    tile = navigationMap.get(rowIndex, columnIndex);
                 }
-            }
-            if(player == this.player){
-                System.out.println();
-            }
-            if(player == this.bot){
-                visibleMap.add(visibleRow);
+                // if the bot found the player, update the value of the boolean variable and let the bot know
+                if(tile == GridOverlay.PLAYER && player == this.bot){
+                    this.bot.setPlayerFound(viewRow, viewColumn);
+                    playerFound = true;
+                }
+                view.set(viewRow, viewColumn, tile);
             }
         }
-        // if bot called method, pass the information further
-        if(player != this.player){
-            bot.updateMemoryMap(visibleMap);
+        if(player == this.player){
+            // the grid is rendered in a reused buffer, so only the message itself is allocated
+            lookText.setLength(0);
+            view.appendTo(lookText);
+            output.accept(lookText.toString());
+            return;
         }
-        // if bot called method and the player was not found, let the bot know
-        if(!playerFound && player == this.bot){
+        // the bot called the method, so pass the information further
+        bot.updateMemoryMap(view);
+        // if the player was not found, let the bot know
+        if(!playerFound){
             this.bot.lostPlayer();
         }
     }
@@ -161,35 +200,34 @@ class GameLogic {
             case "s": row += 1; break;
         }
         // Checking that the position is valid
-        char characterFromMap = navigationMap.get(row)[column];
+        char characterFromMap = navigationMap.get(row, column);
         // bot caught the player
         if((characterFromMap == 'P' && player == this.bot) || (characterFromMap == 'B' && player == this.player)){
             this.player.setCurrentTile('B');
             this.bot.setCurrentTile('P');
+            playerCaught = true;
             gameEnded = true;
             return;
         }
-        if(characterFromMap != '#'){
-            // assign the map 'P' or 'B' character the tile character on which the player was sitting before
-            navigationMap.get(player.getRow())[player.getColumn()] = player.getCurrentTile();
-            player.setCurrentTile(navigationMap.get(row)[column]); // get the new tile character
+        if(characterFromMap != Grid.WALL){
+            player.setCurrentTile(characterFromMap); // get the new tile character
             player.setRow(row);
             player.setColumn(column);
             //update the map with either 'P' or 'B' characters
             if(player == this.player){
-                navigationMap.get(row)[column] = 'P';
+                navigationMap.setPlayer(row, column);
             }
             else {
-                navigationMap.get(row)[column] = 'B';
+                navigationMap.setBot(row, column);
             }
             // print message to let the player know if it succeeded or not
             if(player == this.player){
-                System.out.println("SUCCESS");
+                output.accept("SUCCESS");
             }
         }
         else {
             if(player == this.player){
-                System.out.println("FAIL");
+                output.accept("FAIL");
             }
         }
     }
@@ -198,14 +236,22 @@ class GameLogic {
      * Displays the gold required to win.
      */
     private void HELLO(){
-        System.out.println("Gold to win: " + goldToWin);
+        output.accept("Gold to win: " + goldToWin);
     }
 
     /**
      * Display's the gold currently owned by the player
      */
     private void GOLD(){
-        System.out.println("Gold owned: " + player.getCurrentGold());
+        output.accept(goldOwned());
+    }
+
+    /**
+     * Returns the message showing the gold currently owned by the player
+     * @return String representing the message
+     */
+    private String goldOwned(){
+        return "Gold owned: " + player.getCurrentGold();
     }
 
     /**
@@ -218,14 +264,13 @@ class GameLogic {
              * it is important to update the tile character on which
              * the player is sitting to '.' so we don't get an infinite gold bug
              */
-            player.setCurrentTile('.');
-            System.out.print("SUCCESS. ");
+            player.setCurrentTile(Grid.FLOOR);
+            navigationMap.takeGold(player.getRow(), player.getColumn());
+            output.accept("SUCCESS. " + goldOwned());
         }
         else{
-            System.out.print("FAIL. ");
+            output.accept("FAIL. " + goldOwned());
         }
-        // display the gold owned
-        GOLD();
     }
 
     /**
@@ -236,45 +281,148 @@ class GameLogic {
     }
 
     /**
-     * Execute the flow of the game:
-     * Initialize and spawn the player and the bot.
-     * Based on the turn, process each player's commands until the game has ended.
+     * Initialize and spawn the player and the bot. The human player plays first.
      */
-    public void play(){
-        // creating a list of the players and using the turn variable as index
-        ArrayList<Player> players = new ArrayList<>();
+    public void start(){
         player = new Player();
-        bot = new BotPlayer();
-        players.add(player);
-        players.add(bot);
+        if(botStrategy == BotPlayer.Strategy.PLANNING){
+            bot = new PlanningBotPlayer(random, map.getRows(), map.getColumns());
+        }
+        else{
+            bot = new BotPlayer(random);
+        }
         generateRandomCoordinates(player);
-        navigationMap.get(player.getRow())[player.getColumn()] = 'P'; // update the map tile
+        navigationMap.setPlayer(player.getRow(), player.getColumn()); // update the map tile
         generateRandomCoordinates(bot);
-        navigationMap.get(bot.getRow())[bot.getColumn()] = 'B'; // update the map tile
-        String command = "";
-        while (!gameEnded){
-            // get all input commands to lower case
-            if(players.get(turn) == player){
-                try {
-                    // commands are received by accessing the user's input stream from the keyboard
-                    command = chatPlayer.getUserIn().readLine().toLowerCase();
-                } catch (IOException e){
-                    e.printStackTrace();
-                }
-            }
-            else{
-                command = bot.makeDecision().toLowerCase();
-            }
-            processCommand(command, players.get(turn));
-            turn++;
-            turn %= 2;
+        navigationMap.setBot(bot.getRow(), bot.getColumn()); // update the map tile
+        state = State.PLAYER_TURN;
+    }
+
+    /**
+     * Process the human player's command. Only valid in the PLAYER_TURN state; afterwards
+     * it is the bot's turn, unless the game has ended.
+     * @param command the human player's command, in any case
+     */
+    public void handleCommand(String command){
+        if(state != State.PLAYER_TURN){
+            return;
+        }
+        // get all input commands to lower case
+        processCommand(command.toLowerCase(), player);
+        turns++;
+        endStep(State.BOT_TURN);
+    }
+
+    /**
+     * Let the bot play. Only valid in the BOT_TURN state; afterwards it is the human
+     * player's turn, unless the game has ended.
+     */
+    public void playBotTurn(){
+        if(state != State.BOT_TURN){
+            return;
         }
-        // check if the player won or lost
-        if(player.getCurrentTile() == 'E' && player.getCurrentGold() >= goldToWin && bot.getCurrentTile() != 'P'){
-            System.out.println("WIN");
+        processCommand(bot.makeDecision().toLowerCase(), bot);
+        endStep(State.PLAYER_TURN);
+    }
+
+    /**
+     * Move to the next state once a step has been played. When the game ends,
+     * "WIN" or "LOSE" is sent to the output.
+     * @param next the state which follows if the game goes on
+     */
+    private void endStep(State next){
+        if(gameEnded){
+            state = State.ENDED;
+            // check if the player won or lost
+            output.accept(hasWon() ? "WIN" : "LOSE");
         }
-        else {
-            System.out.println("LOSE");
+        else{
+            state = next;
+        }
+    }
+
+    /**
+     * Play one round: process the human player's command, then the bot's.
+     * @param command the human player's command, in any case
+     */
+    public void playTurn(String command){
+        handleCommand(command);
+        playBotTurn();
+    }
+
+    /**
+     * Returns the state of the game.
+     * @return the current State
+     */
+    public State getState(){
+        return state;
+    }
+
+    /**
+     * Returns whether the game has ended.
+     * @return true if the player quit or was caught by the bot
+     */
+    public boolean isGameEnded(){
+        return state == State.ENDED;
+    }
+
+    /**
+     * Returns the number of commands the human player has played.
+     * @return number of turns
+     */
+    public int getTurns(){
+        return turns;
+    }
+
+    /**
+     * Returns whether the bot has caught the human player.
+     * @return true if the player was caught
+     */
+    public boolean wasPlayerCaught(){
+        return playerCaught;
+    }
+
+    /**
+     * Returns the gold the human player has picked up.
+     * @return gold owned by the player
+     */
+    public int getPlayerGold(){
+        return player.getCurrentGold();
+    }
+
+    /**
+     * Returns the map the game is played on.
+     * @return Map object
+     */
+    public Map getMap(){
+        return map;
+    }
+
+    /**
+     * Returns whether the human player has won: they are on an exit with enough gold and were not caught.
+     * @return true if the player has won
+     */
+    public boolean hasWon(){
+        return player.getCurrentTile() == 'E' && player.getCurrentGold() >= goldToWin && bot.getCurrentTile() != 'P';
+    }
+
+    /**
+     * Execute the flow of the game in the console:
+     * Initialize and spawn the player and the bot.
+     * Process the commands the user types, each followed by the bot's, until the game has ended.
+     */
+    public void play(){
+        start();
+        while (!isGameEnded()){
+            String command = null;
+            try {
+                // commands are received by accessing the user's input stream from the keyboard
+                command = chatPlayer.getUserIn().readLine();
+            } catch (IOException e){
+                e.printStackTrace();
+            }
+            // the user's input has ended, so the game cannot go on
+            playTurn(command == null ? "quit" : command);
         }
     }
 }
@@ -0,0 +1,87 @@
+/**
+ * Class which represents the outcome of a game played by an agent (see GameSimulation).
+ */
+public class GameResult {
+
+    /**
+     * Who won the game.
+     */
+    public enum Winner {
+        PLAYER, // the player quit on an exit with enough gold
+        BOT, // the bot caught the player, or the player quit without winning
+        NONE // the game was stopped after the maximum number of turns
+    }
+
+    // declaring fields
+    private final long seed; // seed the game was played with
+    private final Winner winner;
+    private final int turns; // commands played by the player
+    private final int gold; // gold picked up by the player
+    private final boolean playerCaught;
+
+    /**
+     * Constructor which stores the outcome of a game.
+     * @param seed seed the game was played with
+     * @param winner who won the game
+     * @param turns number of commands played by the player
+     * @param gold gold picked up by the player
+     * @param playerCaught value is true if the bot caught the player
+     */
+    public GameResult(long seed, Winner winner, int turns, int gold, boolean playerCaught){
+        this.seed = seed;
+        this.winner = winner;
+        this.turns = turns;
+        this.gold = gold;
+        this.playerCaught = playerCaught;
+    }
+
+    /**
+     * Return the seed the game was played with, to replay it.
+     * @return seed of the game
+     */
+    public long getSeed(){
+        return seed;
+    }
+
+    /**
+     * Return who won the game.
+     * @return Winner of the game
+     */
+    public Winner getWinner(){
+        return winner;
+    }
+
+    /**
+     * Return the number of commands played by the player.
+     * @return number of turns
+     */
+    public int getTurns(){
+        return turns;
+    }
+
+    /**
+     * Return the gold picked up by the player.
+     * @return gold collected
+     */
+    public int getGold(){
+        return gold;
+    }
+
+    /**
+     * Check if the bot caught the player.
+     * @return true if the player was caught
+     */
+    public boolean wasPlayerCaught(){
+        return playerCaught;
+    }
+
+    /**
+     * Return the outcome as text.
+     * @return String describing the result
+     */
+    @Override
+    public String toString(){
+        return "seed " + seed + ": " + winner + " after " + turns + " turns, " + gold + " gold" +
+                (playerCaught ? ", caught" : "");
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class which runs all the games hosted by the server. Every tick, each game plays at most one step
+ * of each player: the human player's next queued command and the bot's turn. The games are split
+ * into partitions by their id, one partition per worker thread, and each worker plays all the games
+ * of its partition in one batch per tick, so the CPU the games use is bounded by the number of
+ * workers, however many games are running.
+ */
+public class GameScheduler {
+
+    /**
+     * Class which represents the games of one worker. Only the worker changes the list of games;
+     * new games are handed over through a queue.
+     */
+    private static class Partition implements Runnable {
+
+        private final ConcurrentLinkedQueue<GameSession> newGames = new ConcurrentLinkedQueue<>();
+        private final ArrayList<GameSession> games = new ArrayList<>();
+        private final AtomicInteger size = new AtomicInteger(); // games in the partition, including new ones
+
+        /**
+         * Play one tick of every game of the partition, then forget the games which have ended.
+         * Runs on the partition's worker.
+         */
+        @Override
+        public void run(){
+            GameSession newGame;
+            while((newGame = newGames.poll()) != null){
+                games.add(newGame);
+            }
+            for(int index = 0; index < games.size(); index++){
+                GameSession game = games.get(index);
+                try{
+                    game.tick();
+                } catch (RuntimeException e){
+                    // one broken game must not stop the others, and its player goes back to the chat
+                    e.printStackTrace();
+                    game.abort("The game has stopped because of an error.");
+                }
+                if(game.isEnded()){
+                    // the last game takes the place of the ended one
+                    games.set(index, games.get(games.size() - 1));
+                    games.remove(games.size() - 1);
+                    size.decrementAndGet();
+                    index--;
+                }
+            }
+            ticks.incrementAndGet();
+        }
+    }
+
+    // declaring fields
+    private static final AtomicLong ticks = new AtomicLong(); // partition ticks played so far
+    private final Partition[] partitions;
+    private final ScheduledExecutorService workers;
+    private final AtomicLong nextGameId = new AtomicLong(1);
+
+    /**
+     * Constructor which starts the workers.
+     * @param workerCount number of worker threads, and of partitions
+     * @param tickMillis time between two ticks, in milliseconds
+     */
+    public GameScheduler(int workerCount, long tickMillis){
+        partitions = new Partition[Math.max(workerCount, 1)];
+        workers = Executors.newScheduledThreadPool(partitions.length, runnable -> {
+            Thread worker = new Thread(runnable, "game-worker");
+            worker.setDaemon(true);
+            return worker;
+        });
+        for(int index = 0; index < partitions.length; index++){
+            partitions[index] = new Partition();
+            // a partition's ticks never overlap, so its games are only played by one thread at a time
+            workers.scheduleAtFixedRate(partitions[index], tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Return a new game id, which decides the partition of the game.
+     * @return id of the game
+     */
+    public long nextGameId(){
+        return nextGameId.getAndIncrement();
+    }
+
+    /**
+     * Add a game, which is played from the next tick of its partition on until it has ended.
+     * @param game GameSession to play
+     */
+    public void add(GameSession game){
+        Partition partition = partitions[(int) (game.getGameId() % partitions.length)];
+        partition.size.incrementAndGet();
+        partition.newGames.offer(game);
+    }
+
+    /**
+     * Return the number of games being played.
+     * @return number of games
+     */
+    public int getActiveGames(){
+        int total = 0;
+        for(Partition partition:partitions){
+            total += partition.size.get();
+        }
+        return total;
+    }
+
+    /**
+     * Return the number of ticks played by all the partitions so far.
+     * @return number of ticks
+     */
+    public static long getTicks(){
+        return ticks.get();
+    }
+
+    /**
+     * Stop the workers. The games are not played any more.
+     */
+    public void shutdown(){
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,189 @@
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class which represents a game of Dungeons of Doom hosted by the server for a client. The client's
+ * input is queued as commands of the game and the game's output is sent back as messages of the server.
+ * Sessions do not have a thread of their own: the GameScheduler plays one step of the game each tick,
+ * together with the other games of its partition.
+ */
+public class GameSession {
+
+    // declaring fields
+    public static final String PLAY_COMMAND = "/play DOD"; // input which starts a game
+    private static final String DEFAULT_MAP = "easyMap.txt";
+    private static final int MAX_PENDING_COMMANDS = 32; // more commands are refused until the game catches up
+    private final long gameId; // decides which worker plays the game
+    private final ClientConnection client; // the user who plays the game
+    private final ChatServer server;
+    private final BotPlayer.Strategy botStrategy; // how the bot plays
+    private final ConcurrentLinkedQueue<String> commands = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCommands = new AtomicInteger();
+    private final List<String> mapFiles = MapRegistry.getDefault().getMapFileNames(); // as shown to the user
+    private CompletableFuture<Map> mapLoad; // map being loaded once the user has chosen it, null otherwise
+    private GameLogic game; // null until the chosen map has been loaded
+    private volatile boolean ended = false;
+
+    /**
+     * Constructor which creates a session for a client, which starts with choosing a map.
+     * @param gameId id of the game, from GameScheduler.nextGameId()
+     * @param client ClientConnection representing the user who plays the game
+     * @param server ChatServer hosting the game
+     * @param botStrategy how the bot plays
+     */
+    public GameSession(long gameId, ClientConnection client, ChatServer server, BotPlayer.Strategy botStrategy){
+        this.gameId = gameId;
+        this.client = client;
+        this.server = server;
+        this.botStrategy = botStrategy;
+    }
+
+    /**
+     * Welcome the user to the game and show the maps to choose from.
+     */
+    public void start(){
+        StringBuilder welcome = new StringBuilder("Welcome to Dungeons Of Doom\nPlease choose a map from the following:");
+        for(int index = 0; index < mapFiles.size(); index++){
+            String fileName = mapFiles.get(index);
+            welcome.append('\n').append(index + 1).append(" --- ").append(fileName, 0, fileName.length() - 4);
+        }
+        welcome.append("\nPlease enter the number corresponding to the map you want to play.");
+        client.sendMessage(welcome.toString());
+    }
+
+    /**
+     * Queue the user's input for the game, which plays it at one of the next ticks. Never blocks.
+     * @param command String representing the user's input
+     */
+    public void submit(String command){
+        if(pendingCommands.incrementAndGet() > MAX_PENDING_COMMANDS){
+            pendingCommands.decrementAndGet();
+            client.sendMessage("Too many commands...wait for the game to catch up.");
+            return;
+        }
+        commands.offer(command);
+    }
+
+    /**
+     * Play one step of the game: the choice of the map first, then the user's next command, if
+     * any, and the bot's turn. Called by the GameScheduler, never on two threads at once. The map
+     * is loaded in the background, so the game starts at the first tick after it has been loaded.
+     */
+    public void tick(){
+        if(ended){
+            return;
+        }
+        if(game == null){
+            if(mapLoad == null){
+                String choice = nextCommand();
+                if(choice == null){
+                    return;
+                }
+                mapLoad = loadMap(choice.trim());
+            }
+            if(!mapLoad.isDone()){
+                return;
+            }
+            Map map = mapLoad.join();
+            if(map == null){
+                abort("No map can be played at the moment.");
+                return;
+            }
+            client.sendMessage(map.getName() + "\nCommands: LOOK, MOVE N/E/S/W, PICKUP, HELLO, GOLD and QUIT.");
+            game = new GameLogic(map, client::sendMessage, new Random(), botStrategy);
+            game.start();
+            return;
+        }
+        if(game.getState() == GameLogic.State.PLAYER_TURN){
+            String command = nextCommand();
+            if(command != null){
+                game.handleCommand(command);
+            }
+        }
+        if(game.getState() == GameLogic.State.BOT_TURN){
+            game.playBotTurn();
+        }
+        if(game.isGameEnded()){
+            ended = true;
+            server.endGame(client, this);
+        }
+    }
+
+    /**
+     * Take the user's next queued command.
+     * @return String representing the command, or null if there is none
+     */
+    private String nextCommand(){
+        String command = commands.poll();
+        if(command != null){
+            pendingCommands.decrementAndGet();
+        }
+        return command;
+    }
+
+    /**
+     * Load the map chosen by the user from the registry of the maps, or the default map if the choice
+     * is not valid. The map is shared with the other games played on it.
+     * @param choice String representing the number of the map
+     * @return CompletableFuture completed with the Map object chosen, or with null if neither it nor
+     * the default map can be read
+     */
+    private CompletableFuture<Map> loadMap(String choice){
+        String fileName = DEFAULT_MAP;
+        try{
+            int mapNumber = Integer.parseInt(choice) - 1;
+            if(mapNumber >= 0 && mapNumber < mapFiles.size()){
+                fileName = mapFiles.get(mapNumber);
+            }
+            else{
+                client.sendMessage("Input not valid. The default map is easyMap.");
+            }
+        } catch (NumberFormatException e){
+            client.sendMessage("Input not valid. The default map is easyMap.");
+        }
+        return MapRegistry.getDefault().load(fileName).thenCompose(map -> {
+            if(map != null){
+                return CompletableFuture.completedFuture(map);
+            }
+            // the map has been removed or broken since the list was shown
+            client.sendMessage("The map cannot be played any more. The default map is easyMap.");
+            return MapRegistry.getDefault().load(DEFAULT_MAP);
+        });
+    }
+
+    /**
+     * Return the id of the game.
+     * @return id of the game
+     */
+    public long getGameId(){
+        return gameId;
+    }
+
+    /**
+     * Check if the game is over, because it has ended or has been stopped.
+     * @return true if the game is not played any more
+     */
+    public boolean isEnded(){
+        return ended;
+    }
+
+    /**
+     * End the game because it cannot go on, tell the user why and send them back to the chat.
+     * @param reason String representing the message shown to the user
+     */
+    public void abort(String reason){
+        ended = true;
+        client.sendMessage(reason);
+        server.endGame(client, this);
+    }
+
+    /**
+     * Stop the game, when the user disconnects. Queued commands are not processed.
+     */
+    public void stop(){
+        ended = true;
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Class which plays whole games of Dungeons of Doom without a user: an agent (see GameAgent) plays
+ * instead of the human player, and the result is returned instead of being printed. A game played
+ * with the same map, seed and agent is always the same, so results can be reproduced.
+ */
+public final class GameSimulation {
+
+    // declaring fields
+    public static final int DEFAULT_MAX_TURNS = 1000; // games which last longer are stopped
+
+    /**
+     * Private constructor, since the class only has static methods.
+     */
+    private GameSimulation(){
+    }
+
+    /**
+     * Play a game.
+     * @param map Map object the game is played on; it is not changed, so it can be shared between games
+     * @param agents Function which creates the agent playing the game, given the game's Random
+     * @param seed seed of the game, which decides where the players spawn and how they move randomly
+     * @param maxTurns number of commands after which the game is stopped
+     * @return GameResult of the game
+     */
+    public static GameResult play(Map map, Function<Random, GameAgent> agents, long seed, int maxTurns){
+        return play(map, agents, seed, maxTurns, BotPlayer.Strategy.LOCAL);
+    }
+
+    /**
+     * Play a game against a specified kind of bot.
+     * @param map Map object the game is played on; it is not changed, so it can be shared between games
+     * @param agents Function which creates the agent playing the game, given the game's Random
+     * @param seed seed of the game, which decides where the players spawn and how they move randomly
+     * @param maxTurns number of commands after which the game is stopped
+     * @param botStrategy how the bot plays
+     * @return GameResult of the game
+     */
+    public static GameResult play(Map map, Function<Random, GameAgent> agents, long seed, int maxTurns,
+                                  BotPlayer.Strategy botStrategy){
+        Random random = new Random(seed);
+        GameAgent agent = agents.apply(random);
+        GameLogic game = new GameLogic(map, agent::onOutput, random, botStrategy);
+        game.start();
+        while(!game.isGameEnded() && game.getTurns() < maxTurns){
+            game.playTurn(agent.nextCommand());
+        }
+        GameResult.Winner winner;
+        if(!game.isGameEnded()){
+            winner = GameResult.Winner.NONE;
+        }
+        else{
+            winner = game.hasWon() ? GameResult.Winner.PLAYER : GameResult.Winner.BOT;
+        }
+        return new GameResult(seed, winner, game.getTurns(), game.getPlayerGold(), game.wasPlayerCaught());
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.Random;
+
+/**
+ * Class which represents an agent playing like a careful human: it asks how much gold it needs,
+ * then alternates LOOK with a move. It walks to the nearest gold it can see and picks it up, and once
+ * it has enough gold, to the nearest exit, where it quits. When it sees neither, or the path goes
+ * through the bot, it moves randomly.
+ */
+public class GreedyAgent implements GameAgent {
+
+    // declaring fields
+    private static final int SIZE = 5; // the grid shown by LOOK
+    private static final int CENTRE = 2; // where the agent is on the grid
+    private static final int[] ROW_STEPS = {-1, 1, 0, 0}; // north, south, east, west
+    private static final int[] COLUMN_STEPS = {0, 0, 1, -1};
+    private static final String[] MOVES = {"move n", "move s", "move e", "move w"};
+    private final Random random;
+    private final char[][] view = new char[SIZE][SIZE]; // last grid shown by LOOK
+    private boolean hasView = false;
+    private int goldToWin = -1; // -1 until HELLO has answered
+    private int goldOwned = 0;
+    private boolean needLook = true; // value is true if the agent has moved since its last LOOK
+    private char movingOnto = ' '; // tile the last move was aimed at
+    private boolean lastMoveSucceeded = false;
+
+    /**
+     * Constructor which uses a specified source of randomness for the random moves.
+     * @param random Random object, so a seed replays the same game
+     */
+    public GreedyAgent(Random random){
+        this.random = random;
+    }
+
+    /**
+     * Learn from a message of the game: the gold needed or owned, the grid shown by LOOK
+     * and whether the last move succeeded.
+     * @param message String representing the message
+     */
+    @Override
+    public void onOutput(String message){
+        if(message.startsWith("Gold to win: ")){
+            goldToWin = Integer.parseInt(message.substring("Gold to win: ".length()));
+        }
+        else if(message.contains("Gold owned: ")){
+            goldOwned = Integer.parseInt(message.substring(message.indexOf("Gold owned: ") + "Gold owned: ".length()));
+        }
+        else if(message.equals("SUCCESS") || message.equals("FAIL")){
+            lastMoveSucceeded = message.equals("SUCCESS");
+        }
+        else if(message.length() == SIZE * SIZE + SIZE - 1){
+            // the grid of LOOK: 5 rows of 5 tiles, separated by new lines
+            for(int row = 0; row < SIZE; row++){
+                message.getChars(row * (SIZE + 1), row * (SIZE + 1) + SIZE, view[row], 0);
+            }
+            hasView = true;
+        }
+    }
+
+    /**
+     * Decide the next command.
+     * @return String representing the command
+     */
+    @Override
+    public String nextCommand(){
+        if(goldToWin < 0){
+            return "hello";
+        }
+        // the last move went onto a tile the agent was heading for
+        if(movingOnto != ' '){
+            char tile = movingOnto;
+            movingOnto = ' ';
+            if(lastMoveSucceeded && tile == 'G'){
+                return "pickup";
+            }
+            if(lastMoveSucceeded && tile == 'E' && goldOwned >= goldToWin){
+                return "quit";
+            }
+        }
+        if(needLook || !hasView){
+            needLook = false;
+            return "look";
+        }
+        needLook = true;
+        int move = firstMoveTowards(goldOwned >= goldToWin ? 'E' : 'G');
+        if(move < 0){
+            return randomMove();
+        }
+        char tile = view[CENTRE + ROW_STEPS[move]][CENTRE + COLUMN_STEPS[move]];
+        if(tile == 'G' || tile == 'E'){
+            movingOnto = tile;
+        }
+        return MOVES[move];
+    }
+
+    /**
+     * Search the last grid breadth first for the nearest tile of a kind, avoiding walls and the bot.
+     * @param target character of the tile to look for
+     * @return index in MOVES of the first move towards it, or -1 if none is reachable on the grid
+     */
+    private int firstMoveTowards(char target){
+        int[] firstMove = new int[SIZE * SIZE];
+        int[] queue = new int[SIZE * SIZE];
+        boolean[] visited = new boolean[SIZE * SIZE];
+        int head = 0;
+        int tail = 0;
+        visited[CENTRE * SIZE + CENTRE] = true;
+        queue[tail++] = CENTRE * SIZE + CENTRE;
+        while(head < tail){
+            int cell = queue[head++];
+            int row = cell / SIZE;
+            int column = cell % SIZE;
+            for(int direction = 0; direction < MOVES.length; direction++){
+                int nextRow = row + ROW_STEPS[direction];
+                int nextColumn = column + COLUMN_STEPS[direction];
+                if(nextRow < 0 || nextColumn < 0 || nextRow >= SIZE || nextColumn >= SIZE){
+                    continue;
+                }
+                int next = nextRow * SIZE + nextColumn;
+                char tile = view[nextRow][nextColumn];
+                if(visited[next] || tile == '#' || tile == 'B'){
+                    continue;
+                }
+                visited[next] = true;
+                firstMove[next] = cell == CENTRE * SIZE + CENTRE ? direction : firstMove[cell];
+                if(tile == target){
+                    return firstMove[next];
+                }
+                queue[tail++] = next;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Choose a random move which does not hit a wall or the bot, according to the last grid.
+     * @return String representing the move
+     */
+    private String randomMove(){
+        int start = random.nextInt(MOVES.length);
+        for(int index = 0; index < MOVES.length; index++){
+            int direction = (start + index) % MOVES.length;
+            char tile = view[CENTRE + ROW_STEPS[direction]][CENTRE + COLUMN_STEPS[direction]];
+            if(tile != '#' && tile != 'B'){
+                return MOVES[direction];
+            }
+        }
+        return MOVES[start];
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.List;
+
+/**
+ * Class which represents the tiles of a DoD map, as it was loaded. The tiles are stored in one
+ * flat array, row after row, with one byte per tile, so reading a tile is a single array load.
+ * A grid never changes, so every game played on a map shares the same one; the changes of a
+ * game are kept apart by a GridOverlay.
+ */
+public final class Grid implements WalkableGrid {
+
+    // declaring fields
+    public static final char WALL = '#';
+    public static final char FLOOR = '.';
+    public static final char GOLD = 'G';
+    public static final char EXIT = 'E';
+    private final byte[] tiles; // the tile of (row, column) is at row * columns + column
+    private final int rows, columns;
+
+    /**
+     * Constructor which stores the tiles of a map.
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param tiles array of the tiles, row after row, which must not be changed afterwards
+     */
+    public Grid(int rows, int columns, byte[] tiles){
+        if(rows < 0 || columns < 0 || tiles.length != rows * columns){
+            throw new IllegalArgumentException("Expected " + rows + "x" + columns + " tiles, got " + tiles.length);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.tiles = tiles;
+    }
+
+    /**
+     * Create a grid from the lines of a map file. Lines shorter than the first one are padded with walls.
+     * @param lines List of the lines of the map, without the name and the gold to win
+     * @return Grid object holding the tiles
+     */
+    public static Grid fromLines(List<String> lines){
+        int rows = lines.size();
+        int columns = rows == 0 ? 0 : lines.get(0).length();
+        byte[] tiles = new byte[rows * columns];
+        for(int row = 0; row < rows; row++){
+            String line = lines.get(row);
+            for(int column = 0; column < columns; column++){
+                tiles[row * columns + column] = (byte) (column < line.length() ? line.charAt(column) : WALL);
+            }
+        }
+        return new Grid(rows, columns, tiles);
+    }
+
+    /**
+     * Return the index of a tile in the flat array.
+     * @param row row of the tile
+     * @param column column of the tile
+     * @return index of the tile
+     */
+    public int index(int row, int column){
+        return row * columns + column;
+    }
+
+    /**
+     * Check if a position is on the map.
+     * @param row row of the position
+     * @param column column of the position
+     * @return true if the position is inside the map
+     */
+    public boolean isInside(int row, int column){
+        return row >= 0 && column >= 0 && row < rows && column < columns;
+    }
+
+    /**
+     * Return a tile.
+     * @param row row of the tile, inside the map
+     * @param column column of the tile, inside the map
+     * @return character of the tile
+     */
+    public char get(int row, int column){
+        return (char) tiles[row * columns + column];
+    }
+
+    /**
+     * Return a tile by its index.
+     * @param index index of the tile (see index())
+     * @return character of the tile
+     */
+    public char get(int index){
+        return (char) tiles[index];
+    }
+
+    /**
+     * Check if a tile can be walked on.
+     * @param index index of the tile (see index())
+     * @return true if the tile is not a wall
+     */
+    @Override
+    public boolean isWalkable(int index){
+        return tiles[index] != WALL;
+    }
+
+    /**
+     * Return the number of rows.
+     * @return number of rows
+     */
+    @Override
+    public int getRows(){
+        return rows;
+    }
+
+    /**
+     * Return the number of columns.
+     * @return number of columns
+     */
+    @Override
+    public int getColumns(){
+        return columns;
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Class which represents the tiles of one game: the shared Grid of its map, with the changes
+ * made by the game on top. The players are not written into the tiles; their positions are kept
+ * apart and shown as 'P' and 'B'. The only tiles a game changes are the ones whose gold was
+ * picked up, which are recorded in a bitset allocated on the first pickup, so a game costs a
+ * few bytes instead of a copy of its map.
+ */
+public final class GridOverlay {
+
+    // declaring fields
+    public static final char PLAYER = 'P';
+    public static final char BOT = 'B';
+    private static final long[] NO_TAKEN = new long[0];
+    private final Grid grid; // shared by all the games on the map
+    private long[] taken = NO_TAKEN; // one bit per tile whose gold was picked up, copied on the first pickup
+    private int playerIndex = -1; // index of the human player's tile, -1 before it is spawned
+    private int botIndex = -1; // index of the bot's tile, -1 before it is spawned
+
+    /**
+     * Constructor which creates the tiles of a new game, as they are on the map.
+     * @param grid Grid object of the map
+     */
+    public GridOverlay(Grid grid){
+        this.grid = grid;
+    }
+
+    /**
+     * Return a tile as the players see it: 'P' and 'B' where they stand, '.' where the gold was taken.
+     * @param row row of the tile, inside the map
+     * @param column column of the tile, inside the map
+     * @return character of the tile
+     */
+    public char get(int row, int column){
+        int index = grid.index(row, column);
+        if(index == playerIndex){
+            return PLAYER;
+        }
+        if(index == botIndex){
+            return BOT;
+        }
+        return getTile(index);
+    }
+
+    /**
+     * Return the tile under the players, which is the one of the map unless its gold was taken.
+     * @param row row of the tile, inside the map
+     * @param column column of the tile, inside the map
+     * @return character of the tile
+     */
+    public char getTile(int row, int column){
+        return getTile(grid.index(row, column));
+    }
+
+    /**
+     * Return the tile under the players, by its index.
+     * @param index index of the tile
+     * @return character of the tile
+     */
+    private char getTile(int index){
+        char tile = grid.get(index);
+        if(tile == Grid.GOLD && (index >>> 6) < taken.length && (taken[index >>> 6] & (1L << index)) != 0){
+            return Grid.FLOOR;
+        }
+        return tile;
+    }
+
+    /**
+     * Remove the gold of a tile.
+     * @param row row of the tile
+     * @param column column of the tile
+     */
+    public void takeGold(int row, int column){
+        int index = grid.index(row, column);
+        if(taken == NO_TAKEN){
+            taken = new long[(grid.getRows() * grid.getColumns() + 63) >>> 6];
+        }
+        taken[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Move the human player to a tile.
+     * @param row row of the tile
+     * @param column column of the tile
+     */
+    public void setPlayer(int row, int column){
+        playerIndex = grid.index(row, column);
+    }
+
+    /**
+     * Move the bot to a tile.
+     * @param row row of the tile
+     * @param column column of the tile
+     */
+    public void setBot(int row, int column){
+        botIndex = grid.index(row, column);
+    }
+
+    /**
+     * Check if a position is on the map.
+     * @param row row of the position
+     * @param column column of the position
+     * @return true if the position is inside the map
+     */
+    public boolean isInside(int row, int column){
+        return grid.isInside(row, column);
+    }
+
+    /**
+     * Return the shared grid of the map.
+     * @return Grid object
+     */
+    public Grid getGrid(){
+        return grid;
+    }
+}
@@ -0,0 +1,365 @@
+import java.util.Arrays;
+
+/**
+ * Class which plans shortest paths between two tiles of a grid (see WalkableGrid) with A*, or with
+ * jump point search, which gives paths just as short but skips over the tiles of open areas instead of
+ * queuing them one by one. Players only move north, south, east or west, so the distance between two
+ * tiles is at least their Manhattan distance, which guides both searches.
+ * Like PathFinder, it only works on primitive arrays, which are reused by every search of the same
+ * thread and stamped with the number of the search instead of being cleared.
+ * A GridPlanner must only be used by one thread; use forCurrentThread() to get the thread's own.
+ */
+public final class GridPlanner {
+
+    // declaring fields
+    private static final ThreadLocal<GridPlanner> SCRATCH = ThreadLocal.withInitial(GridPlanner::new);
+    private int[] costs = new int[0]; // length of the best path found to each tile, valid if its stamp is current
+    private int[] parents = new int[0]; // tile each tile is reached from, on that path
+    private int[] stamps = new int[0]; // number of the search which reached each tile
+    private long[] heapKeys = new long[16]; // open tiles, ordered by estimated length, then longest path first
+    private int[] heapTiles = new int[16];
+    private int heapSize;
+    private int[] path = new int[16]; // tiles of the last path, without the start
+    private int pathLength;
+    private int search = 0; // number of the current search
+    private int rows, columns; // of the grid of the current search
+    private WalkableGrid grid;
+    private int target;
+    private long expandedTiles; // tiles taken from the heap, in every search so far
+
+    /**
+     * Return the GridPlanner of the current thread, whose arrays are reused by all its searches.
+     * @return GridPlanner object which must not be shared with other threads
+     */
+    public static GridPlanner forCurrentThread(){
+        return SCRATCH.get();
+    }
+
+    /**
+     * Plan a shortest path with A*.
+     * @param grid WalkableGrid to search
+     * @param start index of the tile to start from
+     * @param target index of the tile to reach
+     * @return true if a path was found, which can then be read with getPathLength() and getPathTile()
+     */
+    public boolean findPath(WalkableGrid grid, int start, int target){
+        prepare(grid, start, target);
+        while(heapSize > 0){
+            int tile = pollTile();
+            if(tile == -1){
+                continue;
+            }
+            if(tile == target){
+                return buildPath(start);
+            }
+            int column = tile % columns;
+            int cost = costs[tile] + 1;
+            if(tile >= columns){
+                open(tile - columns, tile, cost);
+            }
+            if(column > 0){
+                open(tile - 1, tile, cost);
+            }
+            if(tile + columns < rows * columns){
+                open(tile + columns, tile, cost);
+            }
+            if(column < columns - 1){
+                open(tile + 1, tile, cost);
+            }
+        }
+        pathLength = 0;
+        return false;
+    }
+
+    /**
+     * Plan a shortest path with jump point search: from each tile, the search goes straight on
+     * as long as nothing but open tiles lie on the sides, and only queues the tiles where a wall
+     * opens a new way (the jump points).
+     * @param grid WalkableGrid to search
+     * @param start index of the tile to start from
+     * @param target index of the tile to reach
+     * @return true if a path was found, which can then be read with getPathLength() and getPathTile()
+     */
+    public boolean findJumpPath(WalkableGrid grid, int start, int target){
+        prepare(grid, start, target);
+        while(heapSize > 0){
+            int tile = pollTile();
+            if(tile == -1){
+                continue;
+            }
+            if(tile == target){
+                return buildPath(start);
+            }
+            int row = tile / columns;
+            int column = tile % columns;
+            if(tile == start){
+                jumpFrom(tile, row, column, -1, 0);
+                jumpFrom(tile, row, column, 0, -1);
+                jumpFrom(tile, row, column, 1, 0);
+                jumpFrom(tile, row, column, 0, 1);
+                continue;
+            }
+            // only the ways a shortest path can take from the tile it was reached from
+            int parent = parents[tile];
+            int rowStep = Integer.signum(row - parent / columns);
+            int columnStep = Integer.signum(column - parent % columns);
+            if(columnStep != 0){
+                jumpFrom(tile, row, column, -1, 0);
+                jumpFrom(tile, row, column, 1, 0);
+                jumpFrom(tile, row, column, 0, columnStep);
+            }
+            else{
+                jumpFrom(tile, row, column, 0, -1);
+                jumpFrom(tile, row, column, 0, 1);
+                jumpFrom(tile, row, column, rowStep, 0);
+            }
+        }
+        pathLength = 0;
+        return false;
+    }
+
+    /**
+     * Return the number of steps of the last path found.
+     * @return number of tiles of the path, without the start
+     */
+    public int getPathLength(){
+        return pathLength;
+    }
+
+    /**
+     * Return a tile of the last path found.
+     * @param step number of the step, from 0 (the tile next to the start) to getPathLength() - 1 (the target)
+     * @return index of the tile
+     */
+    public int getPathTile(int step){
+        return path[step];
+    }
+
+    /**
+     * Return the number of tiles the searches of this planner have taken from the heap, to compare them.
+     * @return number of tiles expanded
+     */
+    public long getExpandedTiles(){
+        return expandedTiles;
+    }
+
+    /**
+     * Jump from a tile in a direction, and queue the jump point found, if any.
+     * @param tile index of the tile to jump from
+     * @param row row of the tile
+     * @param column column of the tile
+     * @param rowStep -1, 0 or 1
+     * @param columnStep -1, 0 or 1
+     */
+    private void jumpFrom(int tile, int row, int column, int rowStep, int columnStep){
+        int jumpPoint = rowStep == 0 ? jumpAcross(row, column + columnStep, columnStep) :
+                jumpAlong(row + rowStep, column, rowStep);
+        if(jumpPoint != -1){
+            int distance = Math.abs(jumpPoint / columns - row) + Math.abs(jumpPoint % columns - column);
+            open(jumpPoint, tile, costs[tile] + distance);
+        }
+    }
+
+    /**
+     * Go east or west from a tile until a jump point: the target, or a tile with a wall behind it on a side
+     * which is open next to it.
+     * @param row row of the first tile
+     * @param column column of the first tile
+     * @param columnStep -1 to go west, 1 to go east
+     * @return index of the jump point, or -1 if a wall or the edge is reached first
+     */
+    private int jumpAcross(int row, int column, int columnStep){
+        while(isWalkable(row, column)){
+            int tile = row * columns + column;
+            if(tile == target || (isWalkable(row - 1, column) && !isWalkable(row - 1, column - columnStep)) ||
+                    (isWalkable(row + 1, column) && !isWalkable(row + 1, column - columnStep))){
+                return tile;
+            }
+            column += columnStep;
+        }
+        return -1;
+    }
+
+    /**
+     * Go north or south from a tile until a jump point: the target, a tile with a wall behind it on a side
+     * which is open next to it, or a tile from which going east or west reaches a jump point.
+     * @param row row of the first tile
+     * @param column column of the first tile
+     * @param rowStep -1 to go north, 1 to go south
+     * @return index of the jump point, or -1 if a wall or the edge is reached first
+     */
+    private int jumpAlong(int row, int column, int rowStep){
+        while(isWalkable(row, column)){
+            int tile = row * columns + column;
+            if(tile == target || (isWalkable(row, column - 1) && !isWalkable(row - rowStep, column - 1)) ||
+                    (isWalkable(row, column + 1) && !isWalkable(row - rowStep, column + 1)) ||
+                    jumpAcross(row, column + 1, 1) != -1 || jumpAcross(row, column - 1, -1) != -1){
+                return tile;
+            }
+            row += rowStep;
+        }
+        return -1;
+    }
+
+    /**
+     * Check if a position is on the grid and can be walked on.
+     * @param row row of the position
+     * @param column column of the position
+     * @return true if the tile exists and is not a wall
+     */
+    private boolean isWalkable(int row, int column){
+        return row >= 0 && column >= 0 && row < rows && column < columns && grid.isWalkable(row * columns + column);
+    }
+
+    /**
+     * Queue a tile, if it can be walked on and the path to it is shorter than the ones found before.
+     * @param tile index of the tile
+     * @param parent index of the tile it is reached from
+     * @param cost length of the path to it
+     */
+    private void open(int tile, int parent, int cost){
+        if(stamps[tile] == search && costs[tile] <= cost){
+            return;
+        }
+        if(!grid.isWalkable(tile)){
+            return;
+        }
+        stamps[tile] = search;
+        costs[tile] = cost;
+        parents[tile] = parent;
+        push(tile, cost);
+    }
+
+    /**
+     * Take the most promising tile from the heap.
+     * @return index of the tile, or -1 if the entry was left over from a longer path to it
+     */
+    private int pollTile(){
+        long key = heapKeys[0];
+        int tile = heapTiles[0];
+        heapSize--;
+        if(heapSize > 0){
+            heapKeys[0] = heapKeys[heapSize];
+            heapTiles[0] = heapTiles[heapSize];
+            siftDown();
+        }
+        // a tile is queued again when a shorter path to it is found; skip its older entries
+        if(Integer.MAX_VALUE - (int) key != costs[tile]){
+            return -1;
+        }
+        expandedTiles++;
+        return tile;
+    }
+
+    /**
+     * Add a tile to the heap. Tiles are ordered by the length of the path through them, as estimated
+     * with the Manhattan distance to the target; ties go to the longest path so far, which is closest
+     * to the target.
+     * @param tile index of the tile
+     * @param cost length of the path to it
+     */
+    private void push(int tile, int cost){
+        int estimate = cost + Math.abs(tile / columns - target / columns) + Math.abs(tile % columns - target % columns);
+        if(heapSize == heapKeys.length){
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            heapTiles = Arrays.copyOf(heapTiles, heapSize * 2);
+        }
+        long key = ((long) estimate << 32) | (Integer.MAX_VALUE - cost);
+        int position = heapSize++;
+        while(position > 0){
+            int parent = (position - 1) >>> 1;
+            if(heapKeys[parent] <= key){
+                break;
+            }
+            heapKeys[position] = heapKeys[parent];
+            heapTiles[position] = heapTiles[parent];
+            position = parent;
+        }
+        heapKeys[position] = key;
+        heapTiles[position] = tile;
+    }
+
+    /**
+     * Move the first entry of the heap down to its place.
+     */
+    private void siftDown(){
+        long key = heapKeys[0];
+        int tile = heapTiles[0];
+        int position = 0;
+        while(true){
+            int child = 2 * position + 1;
+            if(child >= heapSize){
+                break;
+            }
+            if(child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]){
+                child++;
+            }
+            if(key <= heapKeys[child]){
+                break;
+            }
+            heapKeys[position] = heapKeys[child];
+            heapTiles[position] = heapTiles[child];
+            position = child;
+        }
+        heapKeys[position] = key;
+        heapTiles[position] = tile;
+    }
+
+    /**
+     * Build the path from the start to the target, going back through the parents. Consecutive
+     * jump points are on the same row or column, so the tiles between them are filled in.
+     * @param start index of the start
+     * @return true
+     */
+    private boolean buildPath(int start){
+        pathLength = costs[target];
+        if(path.length < pathLength){
+            path = new int[Math.max(pathLength, path.length * 2)];
+        }
+        int step = pathLength;
+        int tile = target;
+        while(tile != start){
+            int parent = parents[tile];
+            int move = Math.abs(tile - parent) < columns ? Integer.signum(tile - parent) :
+                    Integer.signum(tile - parent) * columns;
+            // from the tile back to its parent, one step at a time
+            for(int current = tile; current != parent; current -= move){
+                path[--step] = current;
+            }
+            tile = parent;
+        }
+        return true;
+    }
+
+    /**
+     * Get the arrays ready for a search and queue the start.
+     * @param grid WalkableGrid to search
+     * @param start index of the start
+     * @param target index of the target
+     */
+    private void prepare(WalkableGrid grid, int start, int target){
+        this.grid = grid;
+        this.target = target;
+        rows = grid.getRows();
+        columns = grid.getColumns();
+        int size = rows * columns;
+        if(size > stamps.length){
+            costs = new int[size];
+            parents = new int[size];
+            stamps = new int[size];
+            search = 0;
+        }
+        search++;
+        if(search == Integer.MAX_VALUE){
+            // the search numbers have run out: clear the stamps once and start again
+            Arrays.fill(stamps, 0);
+            search = 1;
+        }
+        heapSize = 0;
+        pathLength = 0;
+        stamps[start] = search;
+        costs[start] = 0;
+        parents[start] = start;
+        push(start, 0);
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.Random;
+
+/**
+ * Class which compares hierarchical pathfinding with the flat searches on generated dungeons of
+ * growing size: for each size it builds the map's ClusterGraph once (see Map.getClusterGraph()),
+ * then plans the same random queries with a breadth-first search, A*, jump point search and HPA*,
+ * and prints the time of a query, the tiles or nodes a query expands, and how much longer the
+ * HPA* paths are than the shortest ones.
+ *
+ * Usage: java HierarchicalBenchmark [-queries 200] [-seed 1]
+ */
+public class HierarchicalBenchmark {
+
+    // declaring fields
+    private static final int[] MAP_SIZES = {128, 256, 512, 1024, 2048}; // rows and columns of the dungeons
+    private static final double WALLS = 0.3; // wall density of the dungeons (see MapGenerator)
+    private static final int ROUNDS = 3; // each benchmark is run this many times; only the last is reported
+    private static long sink; // results are added here, so the searches cannot be optimised away
+
+    /**
+     * Main method which runs the benchmarks and prints the results.
+     * @param args the arguments
+     */
+    public static void main(String[] args){
+        int queries = 200;
+        long seed = 1;
+        for(int index = 0; index + 1 < args.length; index += 2){
+            if(args[index].equals("-queries")){
+                queries = Integer.parseInt(args[index + 1]);
+            }
+            else if(args[index].equals("-seed")){
+                seed = Long.parseLong(args[index + 1]);
+            }
+        }
+        Random random = new Random(seed);
+        PathFinder pathFinder = PathFinder.forCurrentThread();
+        GridPlanner gridPlanner = GridPlanner.forCurrentThread();
+        HierarchicalPlanner hierarchicalPlanner = HierarchicalPlanner.forCurrentThread();
+        for(int size : MAP_SIZES){
+            Map map = new MapGenerator(size, size, WALLS, 0, 1, 0).generate(size + "x" + size, random.nextLong());
+            Grid grid = map.getGrid();
+            int[] starts = new int[queries];
+            int[] targets = new int[queries];
+            int[] lengths = new int[queries];
+            for(int index = 0; index < queries; index++){
+                starts[index] = randomFloor(random, grid);
+                targets[index] = randomFloor(random, grid);
+                lengths[index] = pathFinder.distance(grid, starts[index], targets[index]);
+            }
+            long buildStart = System.nanoTime();
+            ClusterGraph graph = map.getClusterGraph();
+            long buildNanos = System.nanoTime() - buildStart;
+            if(map.getClusterGraph() != graph){
+                throw new IllegalStateException("The cluster graph of the map is built again");
+            }
+            System.out.printf("%dx%d dungeon: graph of %d nodes and %d edges built in %.1f ms%n",
+                    size, size, graph.getNodes(), graph.getEdges(), buildNanos / 1e6);
+            // the first rounds warm up the JIT compiler
+            for(int round = 0; round < ROUNDS; round++){
+                long start = System.nanoTime();
+                for(int index = 0; index < queries; index++){
+                    sink += pathFinder.distance(grid, starts[index], targets[index]);
+                }
+                report(round, "BFS", start, queries, -1, 0);
+                long expanded = gridPlanner.getExpandedTiles();
+                start = System.nanoTime();
+                for(int index = 0; index < queries; index++){
+                    if(gridPlanner.findPath(grid, starts[index], targets[index])){
+                        sink += gridPlanner.getPathLength();
+                    }
+                }
+                report(round, "A*", start, queries, gridPlanner.getExpandedTiles() - expanded, 0);
+                expanded = gridPlanner.getExpandedTiles();
+                start = System.nanoTime();
+                for(int index = 0; index < queries; index++){
+                    if(gridPlanner.findJumpPath(grid, starts[index], targets[index])){
+                        sink += gridPlanner.getPathLength();
+                    }
+                }
+                report(round, "JPS", start, queries, gridPlanner.getExpandedTiles() - expanded, 0);
+                expanded = hierarchicalPlanner.getExpandedNodes();
+                long extraSteps = 0;
+                long optimalSteps = 0;
+                start = System.nanoTime();
+                for(int index = 0; index < queries; index++){
+                    if(hierarchicalPlanner.findPath(graph, starts[index], targets[index])){
+                        extraSteps += hierarchicalPlanner.getPathLength() - lengths[index];
+                        optimalSteps += lengths[index];
+                    }
+                }
+                report(round, "HPA*", start, queries, hierarchicalPlanner.getExpandedNodes() - expanded,
+                        optimalSteps == 0 ? 0 : 100.0 * extraSteps / optimalSteps);
+            }
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    /**
+     * Print the time a query took, in the last round only.
+     * @param round number of the round, from 0
+     * @param name String representing the name of the search
+     * @param start time at which the benchmark started, from System.nanoTime()
+     * @param queries number of queries
+     * @param expanded number of tiles or nodes expanded by all the queries, or -1 if not counted
+     * @param extraPercent how much longer the paths were than the shortest ones, in percent
+     */
+    private static void report(int round, String name, long start, int queries, long expanded, double extraPercent){
+        if(round < ROUNDS - 1){
+            return;
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / queries;
+        String expansions = expanded < 0 ? "" : String.format("%10d expanded", expanded / queries);
+        System.out.printf("  %-6s %12.1f us/query %s  +%.2f%% length%n", name, micros, expansions, extraPercent);
+    }
+
+    /**
+     * Pick a random open tile.
+     * @param random Random object
+     * @param grid Grid to pick from
+     * @return index of the tile
+     */
+    private static int randomFloor(Random random, Grid grid){
+        int tiles = grid.getRows() * grid.getColumns();
+        while(true){
+            int tile = random.nextInt(tiles);
+            if(grid.isWalkable(tile)){
+                return tile;
+            }
+        }
+    }
+}
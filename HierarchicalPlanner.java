@@ -0,0 +1,248 @@
+import java.util.Arrays;
+
+/**
+ * Class which plans paths on large maps with hierarchical pathfinding (HPA*): it plans over the
+ * abstract graph of the map's clusters (see ClusterGraph), which has far fewer nodes than the map
+ * has tiles, then refines each step of that plan into tiles with a search inside one cluster.
+ * The paths are not always the shortest, but are usually within a few percent of it.
+ * Like GridPlanner, its arrays are reused by every search of the same thread.
+ * A HierarchicalPlanner must only be used by one thread; use forCurrentThread() to get the thread's own.
+ */
+public final class HierarchicalPlanner {
+
+    // declaring fields
+    private static final ThreadLocal<HierarchicalPlanner> SCRATCH = ThreadLocal.withInitial(HierarchicalPlanner::new);
+    private int[] costs = new int[0]; // length of the best plan found to each node, valid if its stamp is current
+    private int[] parents = new int[0]; // node each node is reached from
+    private int[] stamps = new int[0]; // number of the search which reached each node
+    private int search = 0;
+    private long[] heapKeys = new long[16]; // open nodes, ordered by estimated length, then longest plan first
+    private int[] heapNodes = new int[16];
+    private int heapSize;
+    private int[] targetCosts = new int[16]; // steps from each node of the target's cluster to the target
+    private int[] plan = new int[16]; // nodes of the last plan, from the last to the first
+    private int[] path = new int[16]; // tiles of the last path, without the start
+    private int pathLength;
+    private ClusterGraph graph;
+    private int targetTile;
+    private long expandedNodes; // nodes taken from the heap, in every search so far
+
+    /**
+     * Return the HierarchicalPlanner of the current thread, whose arrays are reused by all its searches.
+     * @return HierarchicalPlanner object which must not be shared with other threads
+     */
+    public static HierarchicalPlanner forCurrentThread(){
+        return SCRATCH.get();
+    }
+
+    /**
+     * Plan a path between two tiles.
+     * @param graph ClusterGraph of the map
+     * @param start index of the tile to start from
+     * @param target index of the tile to reach
+     * @return true if a path was found, which can then be read with getPathLength() and getPathTile()
+     */
+    public boolean findPath(ClusterGraph graph, int start, int target){
+        this.graph = graph;
+        this.targetTile = target;
+        pathLength = 0;
+        int nodes = graph.getNodes();
+        int startNode = nodes; // the start and the target are added to the graph for this search
+        int targetNode = nodes + 1;
+        prepare(nodes + 2);
+        PathFinder pathFinder = PathFinder.forCurrentThread();
+        // the steps from the nodes of the target's cluster to the target
+        int targetCluster = graph.getCluster(target);
+        int targetFirst = graph.getFirstNode(targetCluster);
+        int targetEnd = graph.getFirstNode(targetCluster + 1);
+        if(targetCosts.length < targetEnd - targetFirst){
+            targetCosts = new int[Math.max(targetEnd - targetFirst, targetCosts.length * 2)];
+        }
+        graph.fillCluster(pathFinder, target);
+        for(int node = targetFirst; node < targetEnd; node++){
+            targetCosts[node - targetFirst] = pathFinder.getDistance(graph.getNodeTile(node));
+        }
+        // the steps from the start to the nodes of its cluster, and to the target if it is in the same cluster
+        int startCluster = graph.getCluster(start);
+        graph.fillCluster(pathFinder, start);
+        stamps[startNode] = search;
+        costs[startNode] = 0;
+        for(int node = graph.getFirstNode(startCluster); node < graph.getFirstNode(startCluster + 1); node++){
+            int distance = pathFinder.getDistance(graph.getNodeTile(node));
+            if(distance != PathFinder.UNREACHABLE){
+                open(node, startNode, distance);
+            }
+        }
+        if(startCluster == targetCluster && pathFinder.getDistance(target) != PathFinder.UNREACHABLE){
+            open(targetNode, startNode, pathFinder.getDistance(target));
+        }
+        while(heapSize > 0){
+            int node = pollNode();
+            if(node == -1){
+                continue;
+            }
+            if(node == targetNode){
+                refine(start, startNode, targetNode);
+                return true;
+            }
+            for(int edge = graph.getFirstEdge(node); edge < graph.getFirstEdge(node + 1); edge++){
+                open(graph.getEdgeTarget(edge), node, costs[node] + graph.getEdgeCost(edge));
+            }
+            if(node >= targetFirst && node < targetEnd && targetCosts[node - targetFirst] != PathFinder.UNREACHABLE){
+                open(targetNode, node, costs[node] + targetCosts[node - targetFirst]);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the number of steps of the last path found.
+     * @return number of tiles of the path, without the start
+     */
+    public int getPathLength(){
+        return pathLength;
+    }
+
+    /**
+     * Return a tile of the last path found.
+     * @param step number of the step, from 0 (the tile next to the start) to getPathLength() - 1 (the target)
+     * @return index of the tile
+     */
+    public int getPathTile(int step){
+        return path[step];
+    }
+
+    /**
+     * Return the number of nodes the searches of this planner have taken from the heap.
+     * @return number of nodes expanded
+     */
+    public long getExpandedNodes(){
+        return expandedNodes;
+    }
+
+    /**
+     * Turn the plan into tiles: nodes of the same cluster are joined by a search inside the cluster,
+     * and nodes of neighbouring clusters face each other across their border.
+     * @param start index of the start tile
+     * @param startNode number given to the start in the search
+     * @param targetNode number given to the target in the search
+     */
+    private void refine(int start, int startNode, int targetNode){
+        int nodes = 0;
+        for(int node = targetNode; node != startNode; node = parents[node]){
+            if(nodes == plan.length){
+                plan = Arrays.copyOf(plan, nodes * 2);
+            }
+            plan[nodes++] = node;
+        }
+        if(path.length < costs[targetNode]){
+            path = new int[Math.max(costs[targetNode], path.length * 2)];
+        }
+        PathFinder pathFinder = PathFinder.forCurrentThread();
+        int from = start;
+        for(int index = nodes - 1; index >= 0; index--){
+            int tile = plan[index] == targetNode ? targetTile : graph.getNodeTile(plan[index]);
+            if(graph.getCluster(from) == graph.getCluster(tile)){
+                graph.fillCluster(pathFinder, from);
+                pathLength += pathFinder.tracePath(tile, path, pathLength);
+            }
+            else{
+                path[pathLength++] = tile;
+            }
+            from = tile;
+        }
+    }
+
+    /**
+     * Queue a node, if the plan to it is shorter than the ones found before.
+     * @param node number of the node
+     * @param parent number of the node it is reached from
+     * @param cost length of the plan to it
+     */
+    private void open(int node, int parent, int cost){
+        if(stamps[node] == search && costs[node] <= cost){
+            return;
+        }
+        stamps[node] = search;
+        costs[node] = cost;
+        parents[node] = parent;
+        int tile = node < graph.getNodes() ? graph.getNodeTile(node) : targetTile;
+        int columns = graph.getGrid().getColumns();
+        int estimate = cost + Math.abs(tile / columns - targetTile / columns) + Math.abs(tile % columns - targetTile % columns);
+        if(heapSize == heapKeys.length){
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+            heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+        }
+        long key = ((long) estimate << 32) | (Integer.MAX_VALUE - cost);
+        int position = heapSize++;
+        while(position > 0){
+            int up = (position - 1) >>> 1;
+            if(heapKeys[up] <= key){
+                break;
+            }
+            heapKeys[position] = heapKeys[up];
+            heapNodes[position] = heapNodes[up];
+            position = up;
+        }
+        heapKeys[position] = key;
+        heapNodes[position] = node;
+    }
+
+    /**
+     * Take the most promising node from the heap.
+     * @return number of the node, or -1 if the entry was left over from a longer plan to it
+     */
+    private int pollNode(){
+        long key = heapKeys[0];
+        int node = heapNodes[0];
+        heapSize--;
+        if(heapSize > 0){
+            long lastKey = heapKeys[heapSize];
+            int lastNode = heapNodes[heapSize];
+            int position = 0;
+            while(true){
+                int child = 2 * position + 1;
+                if(child >= heapSize){
+                    break;
+                }
+                if(child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]){
+                    child++;
+                }
+                if(lastKey <= heapKeys[child]){
+                    break;
+                }
+                heapKeys[position] = heapKeys[child];
+                heapNodes[position] = heapNodes[child];
+                position = child;
+            }
+            heapKeys[position] = lastKey;
+            heapNodes[position] = lastNode;
+        }
+        // a node is queued again when a shorter plan to it is found; skip its older entries
+        if(Integer.MAX_VALUE - (int) key != costs[node]){
+            return -1;
+        }
+        expandedNodes++;
+        return node;
+    }
+
+    /**
+     * Get the arrays ready for a search.
+     * @param size number of nodes, including the start and the target
+     */
+    private void prepare(int size){
+        if(size > stamps.length){
+            costs = new int[size];
+            parents = new int[size];
+            stamps = new int[size];
+            search = 0;
+        }
+        search++;
+        if(search == Integer.MAX_VALUE){
+            // the search numbers have run out: clear the stamps once and start again
+            Arrays.fill(stamps, 0);
+            search = 1;
+        }
+        heapSize = 0;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Class which represents what a bot knows about the map of its game: every tile it has seen is
+ * either open or a wall, and the others are unknown. The bot plans over it as if the unknown
+ * tiles were open, and learns whether they are when it sees them. The tiles of the bot's current
+ * path are marked, so that seeing a wall on the path can be noticed without looking at the path.
+ */
+public final class KnowledgeGrid implements WalkableGrid {
+
+    // declaring fields
+    private static final byte UNKNOWN = 0;
+    private static final byte OPEN = 1;
+    private static final byte WALL = 2;
+    private static final byte ON_PATH = 4; // added to the state of the tiles of the current path
+    private final byte[] tiles; // state of each tile, row after row
+    private final int rows, columns;
+    private int knownTiles = 0;
+
+    /**
+     * Constructor which creates the knowledge of a map nothing has been seen of yet.
+     * @param rows number of rows of the map
+     * @param columns number of columns of the map
+     */
+    public KnowledgeGrid(int rows, int columns){
+        this.rows = rows;
+        this.columns = columns;
+        this.tiles = new byte[rows * columns];
+    }
+
+    /**
+     * Learn what a tile is.
+     * @param index index of the tile
+     * @param wall value is true if the tile is a wall
+     * @return true if the tile is a wall on the current path, so the path has to be planned again
+     */
+    public boolean learn(int index, boolean wall){
+        byte state = tiles[index];
+        if((state & ~ON_PATH) == UNKNOWN){
+            knownTiles++;
+        }
+        tiles[index] = (byte) ((state & ON_PATH) | (wall ? WALL : OPEN));
+        return wall && (state & ON_PATH) != 0;
+    }
+
+    /**
+     * Check if a tile is known to be a wall.
+     * @param index index of the tile
+     * @return true if the tile has been seen and is a wall
+     */
+    public boolean isWall(int index){
+        return (tiles[index] & ~ON_PATH) == WALL;
+    }
+
+    /**
+     * Check if a tile has been seen.
+     * @param index index of the tile
+     * @return true if the tile is known to be open or a wall
+     */
+    public boolean isKnown(int index){
+        return (tiles[index] & ~ON_PATH) != UNKNOWN;
+    }
+
+    /**
+     * Check if a tile can be planned over: it is open, or it has not been seen yet.
+     * @param index index of the tile
+     * @return true if the tile is not known to be a wall
+     */
+    @Override
+    public boolean isWalkable(int index){
+        return (tiles[index] & ~ON_PATH) != WALL;
+    }
+
+    /**
+     * Mark or unmark the tiles of a path.
+     * @param path array of the indexes of the path's tiles
+     * @param from position of the first tile in the array
+     * @param to position after the last tile in the array
+     * @param onPath value is true to mark the tiles, false to unmark them
+     */
+    public void markPath(int[] path, int from, int to, boolean onPath){
+        for(int step = from; step < to; step++){
+            tiles[path[step]] = (byte) (onPath ? tiles[path[step]] | ON_PATH : tiles[path[step]] & ~ON_PATH);
+        }
+    }
+
+    /**
+     * Return the number of tiles which have been seen.
+     * @return number of known tiles
+     */
+    public int getKnownTiles(){
+        return knownTiles;
+    }
+
+    /**
+     * Return the number of rows.
+     * @return number of rows
+     */
+    @Override
+    public int getRows(){
+        return rows;
+    }
+
+    /**
+     * Return the number of columns.
+     * @return number of columns
+     */
+    @Override
+    public int getColumns(){
+        return columns;
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Class which represents one message read back from the chat log.
+ */
+public class LogRecord {
+
+    // declaring fields
+    private final long offset; // position of the record in the whole log
+    private final int size; // size of the record in the log, header included
+    private final long timestamp; // when the message was sent, in milliseconds since the epoch
+    private final int senderId; // interned id the sender had when the message was logged
+    private final String room;
+    private final String senderName;
+    private final String text;
+
+    /**
+     * Constructor which stores the content of a record.
+     * @param offset position of the record in the whole log
+     * @param size size of the record, header included
+     * @param timestamp time the message was sent, in milliseconds since the epoch
+     * @param senderId interned id of the sender when the message was logged
+     * @param room String representing the name of the room
+     * @param senderName String representing the user-name of the sender
+     * @param text String representing the text of the message
+     */
+    public LogRecord(long offset, int size, long timestamp, int senderId, String room, String senderName, String text){
+        this.offset = offset;
+        this.size = size;
+        this.timestamp = timestamp;
+        this.senderId = senderId;
+        this.room = room;
+        this.senderName = senderName;
+        this.text = text;
+    }
+
+    /**
+     * Return the position of the record in the whole log.
+     * @return offset of the record
+     */
+    public long getOffset(){
+        return offset;
+    }
+
+    /**
+     * Return the offset of the record which follows this one.
+     * @return offset of the next record
+     */
+    public long getNextOffset(){
+        return offset + size;
+    }
+
+    /**
+     * Return the time the message was sent.
+     * @return milliseconds since the epoch
+     */
+    public long getTimestamp(){
+        return timestamp;
+    }
+
+    /**
+     * Return the interned id the sender had when the message was logged. Ids are not kept
+     * when the server restarts, so use the sender's name to identify it.
+     * @return id of the sender
+     */
+    public int getSenderId(){
+        return senderId;
+    }
+
+    /**
+     * Return the room the message was sent to.
+     * @return String representing the name of the room
+     */
+    public String getRoom(){
+        return room;
+    }
+
+    /**
+     * Return the user-name of the sender.
+     * @return String representing the user-name
+     */
+    public String getSenderName(){
+        return senderName;
+    }
+
+    /**
+     * Return the text of the message.
+     * @return String representing the text
+     */
+    public String getText(){
+        return text;
+    }
+}
@@ -0,0 +1,219 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class which represents one file of the chat log, mapped into memory. Records are appended
+ * one after the other, each with the header:
+ *
+ * [int length][long timestamp][int sender id][short room length][short sender length]
+ *
+ * followed by the room, the sender's name and the text, in UTF-8. The length counts everything
+ * after itself. It is written last, so a record only becomes visible once it is complete, and
+ * the unused end of the file is zero, which marks the end of the records.
+ */
+public class LogSegment {
+
+    // declaring fields
+    public static final int HEADER_SIZE = 20;
+    private static final String SUFFIX = ".log";
+    private final Path path;
+    private final long baseOffset; // offset, in the whole log, of the first byte of the segment
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int position; // where the next record is appended
+
+    /**
+     * Constructor which maps a segment file and finds the end of its records.
+     * @param path Path of the file
+     * @param baseOffset offset of the segment in the whole log
+     * @param fileSize size the file is mapped with, unless it is already bigger
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    private LogSegment(Path path, long baseOffset, int fileSize) throws IOException {
+        this.path = path;
+        this.baseOffset = baseOffset;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long mappedSize = Math.max(fileSize, channel.size());
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize);
+        int size;
+        position = 0;
+        while((size = recordSize(position)) > 0){
+            position += size;
+        }
+    }
+
+    /**
+     * Open a segment, creating its file if it does not exist.
+     * @param directory Path of the directory holding the log
+     * @param baseOffset offset of the segment in the whole log
+     * @param size size of a new segment file
+     * @return LogSegment object, positioned after its last record
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static LogSegment open(Path directory, long baseOffset, int size) throws IOException {
+        return new LogSegment(directory.resolve(fileName(baseOffset)), baseOffset, size);
+    }
+
+    /**
+     * Return the name of the file of a segment, which is its base offset, so the files sort in log order.
+     * @param baseOffset offset of the segment in the whole log
+     * @return String representing the file name
+     */
+    public static String fileName(long baseOffset){
+        return String.format("%020d%s", baseOffset, SUFFIX);
+    }
+
+    /**
+     * Return the base offset of a segment from the name of its file.
+     * @param fileName String representing the file name
+     * @return base offset, or -1 if the file is not a segment
+     */
+    public static long parseBaseOffset(String fileName){
+        if(!fileName.endsWith(SUFFIX)){
+            return -1;
+        }
+        try{
+            return Long.parseLong(fileName.substring(0, fileName.length() - SUFFIX.length()));
+        } catch (NumberFormatException e){
+            return -1;
+        }
+    }
+
+    /**
+     * Return the size a record takes in the log.
+     * @param room bytes of the room's name
+     * @param sender bytes of the sender's name
+     * @param text bytes of the text
+     * @return number of bytes, header included
+     */
+    public static int recordSize(byte[] room, byte[] sender, byte[] text){
+        return HEADER_SIZE + room.length + sender.length + text.length;
+    }
+
+    /**
+     * Append a record, if the segment has room for it.
+     * Only one thread may append at a time.
+     * @param timestamp time the message was sent, in milliseconds since the epoch
+     * @param senderId interned id of the sender
+     * @param room bytes of the room's name, at most Short.MAX_VALUE
+     * @param sender bytes of the sender's name, at most Short.MAX_VALUE
+     * @param text bytes of the text
+     * @return offset of the record in the whole log, or -1 if the segment is full
+     */
+    public long append(long timestamp, int senderId, byte[] room, byte[] sender, byte[] text){
+        int size = recordSize(room, sender, text);
+        // keep 4 zero bytes after the record, which mark the end of the records
+        if(position + size + 4 > buffer.capacity()){
+            return -1;
+        }
+        int start = position;
+        buffer.putLong(start + 4, timestamp);
+        buffer.putInt(start + 12, senderId);
+        buffer.putShort(start + 16, (short) room.length);
+        buffer.putShort(start + 18, (short) sender.length);
+        buffer.put(start + HEADER_SIZE, room);
+        buffer.put(start + HEADER_SIZE + room.length, sender);
+        buffer.put(start + HEADER_SIZE + room.length + sender.length, text);
+        // the length makes the record visible, so it is written last
+        buffer.putInt(start, size - 4);
+        position += size;
+        return baseOffset + start;
+    }
+
+    /**
+     * Read the record at a position of the segment.
+     * @param recordPosition position of the record in this segment
+     * @return LogRecord object, or null if there is no record at that position
+     */
+    public LogRecord read(int recordPosition){
+        int size = recordSize(recordPosition);
+        if(size <= 0){
+            return null;
+        }
+        ByteBuffer view = buffer.duplicate();
+        long timestamp = view.getLong(recordPosition + 4);
+        int senderId = view.getInt(recordPosition + 12);
+        int roomLength = view.getShort(recordPosition + 16);
+        int senderLength = view.getShort(recordPosition + 18);
+        int textStart = recordPosition + HEADER_SIZE + roomLength + senderLength;
+        return new LogRecord(baseOffset + recordPosition, size, timestamp, senderId,
+                decode(view, recordPosition + HEADER_SIZE, roomLength),
+                decode(view, recordPosition + HEADER_SIZE + roomLength, senderLength),
+                decode(view, textStart, recordPosition + size - textStart));
+    }
+
+    /**
+     * Return the size of the record at a position, or 0 if there is none.
+     * @param recordPosition position in this segment
+     * @return size of the record, header included, or 0
+     */
+    private int recordSize(int recordPosition){
+        if(recordPosition + HEADER_SIZE > buffer.capacity()){
+            return 0;
+        }
+        int length = buffer.getInt(recordPosition);
+        // a length which does not fit a header or the file is a torn record: the records end there
+        if(length < HEADER_SIZE - 4 || recordPosition + 4 + length > buffer.capacity()){
+            return 0;
+        }
+        return 4 + length;
+    }
+
+    /**
+     * Decode UTF-8 bytes of the segment.
+     * @param view ByteBuffer viewing the segment
+     * @param start position of the bytes
+     * @param length number of bytes
+     * @return String representing the decoded bytes
+     */
+    private static String decode(ByteBuffer view, int start, int length){
+        byte[] bytes = new byte[length];
+        view.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the appended records to the disk.
+     */
+    public void force(){
+        buffer.force();
+    }
+
+    /**
+     * Write the appended records to the disk and close the file. The mapping stays readable.
+     * @throws IOException if the file cannot be closed
+     */
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Return the offset of the segment in the whole log.
+     * @return base offset
+     */
+    public long getBaseOffset(){
+        return baseOffset;
+    }
+
+    /**
+     * Return the offset, in the whole log, at which the next record will be appended.
+     * @return offset after the last record
+     */
+    public long getEndOffset(){
+        return baseOffset + position;
+    }
+
+    /**
+     * Return the file of the segment.
+     * @return Path of the file
+     */
+    public Path getPath(){
+        return path;
+    }
+}
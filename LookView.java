@@ -0,0 +1,74 @@
+/**
+ * Class which represents the 5*5 grid a player sees with the LOOK command, with the player in the
+ * centre. Each player has one view which is filled again by every LOOK, so looking allocates nothing;
+ * the view is read-only for the players, and only changes when its owner looks again.
+ */
+public final class LookView implements WalkableGrid {
+
+    // declaring fields
+    public static final int SIZE = 5; // the grid is SIZE*SIZE tiles
+    public static final int CENTRE = 2; // row and column of the player
+    private final char[] tiles = new char[SIZE * SIZE]; // row after row
+
+    /**
+     * Return a tile of the view.
+     * @param row row on the grid, from 0 to 4
+     * @param column column on the grid, from 0 to 4
+     * @return character of the tile, '#' outside the map
+     */
+    public char get(int row, int column){
+        return tiles[row * SIZE + column];
+    }
+
+    /**
+     * Set a tile of the view, while it is filled by LOOK.
+     * @param row row on the grid, from 0 to 4
+     * @param column column on the grid, from 0 to 4
+     * @param tile character of the tile
+     */
+    void set(int row, int column, char tile){
+        tiles[row * SIZE + column] = tile;
+    }
+
+    /**
+     * Check if a tile of the view can be walked on.
+     * @param index index of the tile, row * 5 + column
+     * @return true if the tile is not a wall
+     */
+    @Override
+    public boolean isWalkable(int index){
+        return tiles[index] != Grid.WALL;
+    }
+
+    /**
+     * Return the number of rows of the view.
+     * @return 5
+     */
+    @Override
+    public int getRows(){
+        return SIZE;
+    }
+
+    /**
+     * Return the number of columns of the view.
+     * @return 5
+     */
+    @Override
+    public int getColumns(){
+        return SIZE;
+    }
+
+    /**
+     * Append the view as it is shown to the human player: 5 lines separated by new lines,
+     * without a new line after the last one.
+     * @param text StringBuilder to append to
+     */
+    public void appendTo(StringBuilder text){
+        for(int row = 0; row < SIZE; row++){
+            if(row > 0){
+                text.append('\n');
+            }
+            text.append(tiles, row * SIZE, SIZE);
+        }
+    }
+}
@@ -1,74 +1,173 @@
 import java.io.File; // library for manipulating files
 import java.io.FileNotFoundException; // file manipulation exception handling
+import java.io.FileOutputStream; // writing map files
+import java.io.IOException; // file manipulation exception handling
+import java.io.OutputStream; // writing map files
+import java.nio.charset.StandardCharsets; // encoding the name and the gold to win
 import java.net.URL; // obtaining the path of a certain file
 import java.util.ArrayList; // used to implement array lists
-import java.util.Scanner; // used to read files
 
 /**
  * Class which represents the map of DoD
  */
 public class Map {
 
+    private String name; // name of the map, from the first line of the file
     private int goldToWin;
-    private ArrayList<String> map;
+    private Grid grid; // the tiles, shared by every game played on this map
     private int rows, columns;
+    private volatile DistanceField exitDistances; // steps to the nearest exit, computed once needed
+    private volatile AllPairsDistances allPairsDistances; // steps between any two tiles, computed once needed
+    private volatile boolean tooLargeForAllPairs = false; // value is true once the open tiles have been found too many
+    private volatile ClusterGraph clusterGraph; // abstract graph for hierarchical pathfinding, built once needed
 
     /**
      * Constructor which initializes the rows and columns
      * variables with 0. It also loads the map using a filepath.
-     * @param filePath path of .txt file which contains the DoD map
+     * @param filePath path of .txt file which contains the DoD map, relative to the game's classes
      */
     public Map(String filePath) {
+        // getting the path of the file and creating a File variable which represents the .txt file
+        this(resolve(filePath));
+    }
+
+    /**
+     * Constructor which initializes the rows and columns
+     * variables with 0. It also loads the map from a file.
+     * @param mapTxtFile File object representing the .txt file which contains the DoD map
+     */
+    public Map(File mapTxtFile) {
         rows = 0;
         columns = 0;
-        load(filePath);
+        load(mapTxtFile);
     }
 
     /**
-     * Loads the map from a specified path and
-     * adds the map to the class variable map. It also
-     * displays the name of the map.
+     * Constructor which creates a map from tiles which are already in memory, such as the ones
+     * of MapGenerator.
+     * @param name name of the map
+     * @param goldToWin amount of gold which is necessary for winning
+     * @param grid Grid object holding the tiles, which must not be changed afterwards
+     */
+    public Map(String name, int goldToWin, Grid grid) {
+        this(name, goldToWin, grid, null);
+    }
+
+    /**
+     * Constructor which creates a map from tiles which are already in memory, together with
+     * the distances to its exits, such as the ones of a compiled map (see CompiledMap).
+     * @param name name of the map
+     * @param goldToWin amount of gold which is necessary for winning
+     * @param grid Grid object holding the tiles, which must not be changed afterwards
+     * @param exitDistances DistanceField of the exits of the grid, or null to compute it once needed
+     */
+    public Map(String name, int goldToWin, Grid grid, DistanceField exitDistances) {
+        this.name = name;
+        this.exitDistances = exitDistances;
+        this.goldToWin = goldToWin;
+        this.grid = grid;
+        rows = grid.getRows();
+        columns = grid.getColumns();
+    }
+
+    /**
+     * Returns the file of a map, from its path relative to the game's classes.
      * @param filePath path of .txt file which contains the DoD map
+     * @return File object representing the .txt file
      */
-    private void load(String filePath){
-        // getting the path of the file and creating a File variable which represents the .txt file
+    private static File resolve(String filePath){
         URL path = DungeonsOfDoom.class.getResource(filePath);
-        File mapTxtFile = new File(path.getFile());
-        map = new ArrayList<>();
+        return new File(path.getFile());
+    }
+
+    /**
+     * Loads the map from a specified file and
+     * stores its tiles in the grid (see MapReader).
+     * @param mapTxtFile File object representing the .txt file which contains the DoD map
+     * @throws IllegalArgumentException if the file is not a valid map
+     */
+    private void load(File mapTxtFile){
         // using try catch for reading the file
         try{
-            Scanner sn = new Scanner(mapTxtFile);
-            // display the name of the map (first line of the file, without the "name" tag)
-            System.out.println(sn.nextLine().replace("name ", ""));
-            // getting the amount of gold required to win (second line of the file, without the "win" tag)
-            goldToWin = Integer.parseInt(sn.nextLine().replace("win ", ""));
-            // reading the map
-            while (sn.hasNextLine()){
-                map.add(sn.nextLine());
-                rows++;
-            }
-            columns = map.get(0).length();
-            sn.close();
+            MapReader reader = new MapReader(mapTxtFile);
+            name = reader.getName();
+            goldToWin = reader.getGoldToWin();
+            grid = reader.getGrid();
         }
         catch (FileNotFoundException e){
             System.out.println("File not found sorry");
+            grid = new Grid(0, 0, new byte[0]);
+        }
+        catch (IOException e){
+            System.out.println("The map could not be read: " + e.getMessage());
+            grid = new Grid(0, 0, new byte[0]);
+        }
+        rows = grid.getRows();
+        columns = grid.getColumns();
+    }
+
+    /**
+     * Writes the map to a file, in the format it is loaded from.
+     * @param mapTxtFile File object representing the .txt file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File mapTxtFile) throws IOException {
+        try(OutputStream out = new FileOutputStream(mapTxtFile)){
+            save(out);
+        }
+    }
+
+    /**
+     * Writes the map to a stream, in the format it is loaded from: the name, the gold to win,
+     * then one line for each row of tiles.
+     * @param out OutputStream to write to, which is flushed but not closed
+     * @throws IOException if the stream cannot be written
+     */
+    public void save(OutputStream out) throws IOException {
+        out.write(("name " + name + "\nwin " + goldToWin + "\n").getBytes(StandardCharsets.UTF_8));
+        byte[] line = new byte[columns + 1];
+        line[columns] = '\n';
+        for(int row = 0; row < rows; row++){
+            for(int column = 0; column < columns; column++){
+                line[column] = (byte) grid.get(row, column);
+            }
+            out.write(line);
         }
+        out.flush();
     }
 
     /**
-     * Returns the map as an array list of character arrays.
-     * @return the array list of character arrays, which has been
-                obtained by converting the original array list of
-                Strings.
+     * Returns a copy of the map as an array list of character arrays.
+     * @return the array list of character arrays, one for each row
      */
     public ArrayList<char[]> getMap() {
         ArrayList<char[]>convertedMap = new ArrayList<>();
-        for(String string : map){
-            convertedMap.add(string.toCharArray());
+        for(int row = 0; row < rows; row++){
+            char[] line = new char[columns];
+            for(int column = 0; column < columns; column++){
+                line[column] = grid.get(row, column);
+            }
+            convertedMap.add(line);
         }
         return convertedMap;
     }
 
+    /**
+     * Returns the tiles of the map. The grid never changes, so every game can share it.
+     * @return Grid object holding the tiles
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Returns the name of the map.
+     * @return name of the map
+     */
+    public String getName() {
+        return name;
+    }
+
     /**
      * Returns the amount of gold the player must have
      * in order to win.
@@ -93,4 +192,101 @@ public class Map {
     public int getColumns() {
         return columns;
     }
+
+    /**
+     * Returns the number of steps from every tile to the nearest exit. It is computed the first time
+     * it is needed, then shared by every game played on this map.
+     * @return DistanceField object of the exits
+     */
+    public DistanceField getExitDistances() {
+        DistanceField distances = exitDistances;
+        if(distances == null){
+            synchronized (this){
+                if(exitDistances == null){
+                    exitDistances = new DistanceField(grid, findTiles(Grid.EXIT));
+                }
+                distances = exitDistances;
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Returns the number of steps between any two tiles, for maps which are small enough
+     * (see AllPairsDistances). It is computed the first time it is needed, then shared by every
+     * game played on this map. A map with too many open tiles is only counted once.
+     * @return AllPairsDistances object, or null if the map has too many open tiles
+     */
+    public AllPairsDistances getAllPairsDistances() {
+        AllPairsDistances distances = allPairsDistances;
+        if(distances == null && !tooLargeForAllPairs){
+            synchronized (this){
+                if(allPairsDistances == null && !tooLargeForAllPairs){
+                    if(countOpenTiles() <= AllPairsDistances.MAX_TILES){
+                        allPairsDistances = new AllPairsDistances(grid);
+                    }
+                    else{
+                        tooLargeForAllPairs = true;
+                    }
+                }
+                distances = allPairsDistances;
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Returns the abstract graph of the map's clusters, for hierarchical pathfinding on large maps
+     * (see HierarchicalPlanner). It is built the first time it is needed, then shared by every game
+     * played on this map.
+     * @return ClusterGraph object
+     */
+    public ClusterGraph getClusterGraph() {
+        ClusterGraph graph = clusterGraph;
+        if(graph == null){
+            synchronized (this){
+                if(clusterGraph == null){
+                    clusterGraph = new ClusterGraph(grid, ClusterGraph.DEFAULT_CLUSTER_SIZE);
+                }
+                graph = clusterGraph;
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Returns the indexes of the tiles of a kind, as they are on the map.
+     * @param tile character of the tiles, such as 'E'
+     * @return array of the indexes of the tiles
+     */
+    public int[] findTiles(char tile) {
+        int count = 0;
+        for(int index = 0; index < rows * columns; index++){
+            if(grid.get(index) == tile){
+                count++;
+            }
+        }
+        int[] found = new int[count];
+        count = 0;
+        for(int index = 0; index < rows * columns; index++){
+            if(grid.get(index) == tile){
+                found[count++] = index;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the number of tiles which are not walls.
+     * @return number of open tiles
+     */
+    private int countOpenTiles() {
+        int count = 0;
+        for(int index = 0; index < rows * columns; index++){
+            if(grid.isWalkable(index)){
+                count++;
+            }
+        }
+        return count;
+    }
 }
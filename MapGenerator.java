@@ -0,0 +1,252 @@
+import java.io.File; // library for manipulating files
+import java.io.IOException; // file manipulation exception handling
+import java.util.Arrays;
+import java.util.Random; // placing the walls, the gold and the exits
+
+/**
+ * Class which generates DoD maps of any size from a seed, for load and scale testing. The maps
+ * follow the rules of DoD_Map_README.md: they are enclosed by walls, and every open tile can
+ * reach every other one, so all the gold and all the exits can be reached from wherever the
+ * player spawns. The open tiles which the walls cut off from the largest region are walled up,
+ * so wall densities above about 0.4 leave only a small part of the map open.
+ * The same settings and seed always generate the same map.
+ *
+ * Usage: java MapGenerator [-rows 100] [-columns 100] [-walls 0.2] [-gold 20] [-exits 2] [-win 10]
+ *                          [-seed 1] [-name name] [-out file]
+ */
+public class MapGenerator {
+
+    // declaring fields
+    private static final int MAX_SEGMENT = 8; // longest wall segment placed inside the map
+    private static final byte REACHED = 'r'; // marks the open tiles while the regions are measured
+    private final int rows, columns;
+    private final double wallDensity; // share of the tiles inside the border which are walls
+    private final int gold; // gold placed on the map
+    private final int exits; // exits placed on the map
+    private final int goldToWin;
+
+    /**
+     * Constructor which stores the settings of the maps to generate.
+     * @param rows number of rows, including the border
+     * @param columns number of columns, including the border
+     * @param wallDensity share of the tiles inside the border which are walls, from 0 to less than 1
+     * @param gold number of gold tiles
+     * @param exits number of exit tiles
+     * @param goldToWin amount of gold the player needs to win, at most the number of gold tiles
+     */
+    public MapGenerator(int rows, int columns, double wallDensity, int gold, int exits, int goldToWin){
+        if(rows < 3 || columns < 3 || (long) rows * columns > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("A map must have from 3x3 to " + Integer.MAX_VALUE + " tiles, not " +
+                    rows + "x" + columns);
+        }
+        if(wallDensity < 0 || wallDensity >= 1){
+            throw new IllegalArgumentException("The wall density must be from 0 to less than 1, not " + wallDensity);
+        }
+        if(gold < 0 || exits < 1 || goldToWin < 0 || goldToWin > gold){
+            throw new IllegalArgumentException("A map needs at least one exit and enough gold to win, not " +
+                    gold + " gold, " + exits + " exits and " + goldToWin + " to win");
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.wallDensity = wallDensity;
+        this.gold = gold;
+        this.exits = exits;
+        this.goldToWin = goldToWin;
+    }
+
+    /**
+     * Main method which generates a map and writes it in the format of the map files.
+     * @param args the arguments
+     * @throws IOException if the map file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        int rows = 100;
+        int columns = 100;
+        double walls = 0.2;
+        int gold = 20;
+        int exits = 2;
+        int win = -1; // half of the gold, unless it is given
+        long seed = 1;
+        String name = null;
+        String out = null;
+        try{
+            for(int index = 0; index < args.length; index += 2){
+                String value = args[index + 1];
+                switch (args[index]){
+                    case "-rows": rows = Integer.parseInt(value); break;
+                    case "-columns": columns = Integer.parseInt(value); break;
+                    case "-walls": walls = Double.parseDouble(value); break;
+                    case "-gold": gold = Integer.parseInt(value); break;
+                    case "-exits": exits = Integer.parseInt(value); break;
+                    case "-win": win = Integer.parseInt(value); break;
+                    case "-seed": seed = Long.parseLong(value); break;
+                    case "-name": name = value; break;
+                    case "-out": out = value; break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[index]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e){
+            System.out.println("Usage: java MapGenerator [-rows 100] [-columns 100] [-walls 0.2] [-gold 20] " +
+                    "[-exits 2] [-win 10] [-seed 1] [-name name] [-out file]");
+            return;
+        }
+        if(win < 0){
+            win = Math.max(gold / 2, Math.min(gold, 1));
+        }
+        if(name == null){
+            name = "Generated " + rows + "x" + columns + " (seed " + seed + ")";
+        }
+        Map map = new MapGenerator(rows, columns, walls, gold, exits, win).generate(name, seed);
+        if(out == null){
+            map.save(System.out);
+        }
+        else{
+            map.save(new File(out));
+        }
+    }
+
+    /**
+     * Generate a map.
+     * @param name String representing the name of the map
+     * @param seed seed of the map; the same seed always generates the same map
+     * @return Map object holding the generated grid
+     */
+    public Map generate(String name, long seed){
+        return new Map(name, goldToWin, generateGrid(seed));
+    }
+
+    /**
+     * Generate the tiles of a map.
+     * @param seed seed of the map; the same seed always generates the same tiles
+     * @return Grid object holding the generated tiles
+     */
+    public Grid generateGrid(long seed){
+        Random random = new Random(seed);
+        byte[] tiles = new byte[rows * columns];
+        Arrays.fill(tiles, (byte) Grid.WALL);
+        for(int row = 1; row < rows - 1; row++){
+            Arrays.fill(tiles, row * columns + 1, (row + 1) * columns - 1, (byte) Grid.FLOOR);
+        }
+        placeWalls(tiles, random);
+        int open = keepLargestRegion(tiles);
+        if(open < gold + exits + 2){
+            throw new IllegalArgumentException("Only " + open + " connected open tiles, too few for " + gold +
+                    " gold, " + exits + " exits and the two players; lower the wall density");
+        }
+        place(tiles, random, Grid.GOLD, gold);
+        place(tiles, random, Grid.EXIT, exits);
+        return new Grid(rows, columns, tiles);
+    }
+
+    /**
+     * Place horizontal and vertical wall segments inside the border, until the wall density is reached.
+     * @param tiles array of the tiles of the map
+     * @param random Random object
+     */
+    private void placeWalls(byte[] tiles, Random random){
+        long inside = (long) (rows - 2) * (columns - 2);
+        long walls = Math.round(wallDensity * inside);
+        while(walls > 0){
+            int row = 1 + random.nextInt(rows - 2);
+            int column = 1 + random.nextInt(columns - 2);
+            boolean horizontal = random.nextBoolean();
+            int length = 1 + random.nextInt(MAX_SEGMENT);
+            for(int step = 0; step < length && walls > 0; step++){
+                if(row >= rows - 1 || column >= columns - 1){
+                    break;
+                }
+                int index = row * columns + column;
+                if(tiles[index] == Grid.FLOOR){
+                    tiles[index] = Grid.WALL;
+                    walls--;
+                }
+                if(horizontal){
+                    column++;
+                }
+                else{
+                    row++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Turn every open tile which cannot reach the largest open region into a wall, so that every
+     * open tile left can reach every other one.
+     * @param tiles array of the tiles of the map
+     * @return number of open tiles left
+     */
+    private int keepLargestRegion(byte[] tiles){
+        int largestStart = -1;
+        int largestSize = 0;
+        for(int index = 0; index < tiles.length; index++){
+            if(tiles[index] == Grid.FLOOR){
+                int size = flood(tiles, index, (byte) Grid.FLOOR, REACHED);
+                if(size > largestSize){
+                    largestSize = size;
+                    largestStart = index;
+                }
+            }
+        }
+        if(largestStart >= 0){
+            flood(tiles, largestStart, REACHED, (byte) Grid.FLOOR);
+        }
+        for(int index = 0; index < tiles.length; index++){
+            if(tiles[index] == REACHED){
+                tiles[index] = Grid.WALL;
+            }
+        }
+        return largestSize;
+    }
+
+    /**
+     * Replace a tile, and every tile of the same kind it can reach, with another kind of tile.
+     * The border is made of walls, so the neighbours of an open tile are always inside the map.
+     * @param tiles array of the tiles of the map
+     * @param start index of the first tile
+     * @param from kind of the tiles to replace
+     * @param to kind of tile they are replaced with
+     * @return number of tiles replaced
+     */
+    private int flood(byte[] tiles, int start, byte from, byte to){
+        int[] stack = new int[64]; // tiles still to visit, grown when needed
+        int[] offsets = {-columns, -1, columns, 1}; // from a tile to its neighbours
+        int size = 0;
+        int top = 0;
+        tiles[start] = to;
+        stack[top++] = start;
+        while(top > 0){
+            int index = stack[--top];
+            size++;
+            for(int offset : offsets){
+                int next = index + offset;
+                if(tiles[next] == from){
+                    tiles[next] = to;
+                    if(top == stack.length){
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = next;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Place tiles of a kind on random open tiles.
+     * @param tiles array of the tiles of the map
+     * @param random Random object
+     * @param tile kind of tile to place
+     * @param count number of tiles to place
+     */
+    private void place(byte[] tiles, Random random, char tile, int count){
+        while(count > 0){
+            int index = random.nextInt(tiles.length);
+            if(tiles[index] == Grid.FLOOR){
+                tiles[index] = (byte) tile;
+                count--;
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory; // measuring the peak of the heap
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Scanner;
+
+/**
+ * Class which measures how long a large map file takes to load, and how much memory it takes:
+ * from its compiled map (see CompiledMap), through MapReader, and the way maps were read before
+ * MapReader, line by line with a Scanner into Strings and then into a Grid. The map is generated by MapGenerator into a temporary file.
+ *
+ * Usage: java MapLoadBenchmark [-size 10000] [-seed 1]
+ */
+public class MapLoadBenchmark {
+
+    // declaring fields
+    private static final int ROUNDS = 3; // each benchmark is run this many times; only the last is reported
+    private static long sink; // results are added here, so the loads cannot be optimised away
+
+    /**
+     * Main method which runs the benchmarks and prints the time and memory of a load.
+     * @param args the arguments
+     * @throws IOException if the temporary map file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int size = 10000;
+        long seed = 1;
+        for(int index = 0; index + 1 < args.length; index += 2){
+            if(args[index].equals("-size")){
+                size = Integer.parseInt(args[index + 1]);
+            }
+            else if(args[index].equals("-seed")){
+                seed = Long.parseLong(args[index + 1]);
+            }
+        }
+        File file = File.createTempFile("map", MapRegistry.EXTENSION);
+        file.deleteOnExit();
+        new MapGenerator(size, size, 0.2, size / 10, 10, size / 20).generate("Benchmark", seed).save(file);
+        CompiledMap.compile(file);
+        CompiledMap.fileFor(file).deleteOnExit();
+        System.out.printf("%dx%d map, %.1f MB, compiled %.1f MB%n", size, size, file.length() / 1e6,
+                CompiledMap.fileFor(file).length() / 1e6);
+        // the first rounds warm up the JIT compiler
+        for(int round = 0; round < ROUNDS; round++){
+            long before = resetPeak();
+            long start = System.nanoTime();
+            Map map = CompiledMap.load(file);
+            report(round, "Compiled", start, before);
+            sink += map.getRows();
+            map = null;
+            before = resetPeak();
+            start = System.nanoTime();
+            map = new Map(file);
+            report(round, "MapReader", start, before);
+            sink += map.getRows();
+            map = null;
+            before = resetPeak();
+            start = System.nanoTime();
+            Grid grid = readWithScanner(file);
+            report(round, "Scanner", start, before);
+            sink += grid.getRows();
+            grid = null;
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    /**
+     * Read a map file the way it was read before MapReader: line by line into Strings, then into a Grid.
+     * @param file File object representing the map file
+     * @return Grid object holding the tiles
+     * @throws IOException if the file cannot be read
+     */
+    private static Grid readWithScanner(File file) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        try(Scanner scanner = new Scanner(file)){
+            scanner.nextLine();
+            scanner.nextLine();
+            while(scanner.hasNextLine()){
+                lines.add(scanner.nextLine());
+            }
+        }
+        return Grid.fromLines(lines);
+    }
+
+    /**
+     * Collect the garbage, then start measuring the peak of the heap again.
+     * @return number of bytes of heap in use
+     */
+    private static long resetPeak(){
+        System.gc();
+        long used = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+            if(pool.getType() == MemoryType.HEAP){
+                pool.resetPeakUsage();
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Return the highest heap use since the last reset, summed over the pools of the heap.
+     * @return number of bytes
+     */
+    private static long peakMemory(){
+        long peak = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()){
+            if(pool.getType() == MemoryType.HEAP){
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Print the time a load took and the most heap it used, in the last round only.
+     * @param round number of the round, from 0
+     * @param name String representing the name of the loader
+     * @param start time at which the load started, from System.nanoTime()
+     * @param before number of bytes of heap in use before the load
+     */
+    private static void report(int round, String name, long start, long before){
+        double millis = (System.nanoTime() - start) / 1e6;
+        if(round < ROUNDS - 1){
+            return;
+        }
+        System.out.printf("%-12s %10.1f ms %10.1f MB of heap at most%n", name, millis, (peakMemory() - before) / 1e6);
+    }
+}
@@ -0,0 +1,241 @@
+import java.io.File; // library for manipulating files
+import java.io.FileInputStream; // opening the map files
+import java.io.IOException; // file manipulation exception handling
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel; // reading or memory-mapping the map files
+import java.nio.charset.StandardCharsets; // decoding the name and the gold to win
+
+/**
+ * Class which reads a map file in one pass, straight into a Grid: the bytes of each row are copied
+ * into the grid's array, without making a String of each line, so a map takes little more memory
+ * than its grid while it is read. Small files are read through a FileChannel; large ones are
+ * memory-mapped instead, so they are not copied into the heap first. The rows are checked as they
+ * are read: they must all be as wide as the first one, hold only the tiles of DoD, and be enclosed
+ * by walls or exits (see DoD_Map_README.md). Both "\n" and "\r\n" line endings are accepted.
+ */
+public final class MapReader {
+
+    // declaring fields
+    public static final int MAP_THRESHOLD = 1 << 20; // files of at least this many bytes are memory-mapped
+    private static final boolean[] TILES = new boolean[256]; // the bytes which are tiles of DoD
+    private static final boolean[] BORDER_TILES = new boolean[256]; // the tiles the border can be made of
+    private final String name;
+    private final int goldToWin;
+    private final Grid grid;
+
+    static{
+        for(char tile : new char[]{Grid.WALL, Grid.FLOOR, Grid.GOLD, Grid.EXIT}){
+            TILES[tile] = true;
+        }
+        BORDER_TILES[Grid.WALL] = true;
+        BORDER_TILES[Grid.EXIT] = true;
+    }
+
+    /**
+     * Constructor which reads a map file.
+     * @param mapTxtFile File object representing the .txt file which contains the DoD map
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a valid map
+     */
+    public MapReader(File mapTxtFile) throws IOException {
+        this(readFile(mapTxtFile));
+    }
+
+    /**
+     * Constructor which reads a map from the contents of a map file.
+     * @param contents ByteBuffer holding the whole file, from index 0 to its limit
+     * @throws IllegalArgumentException if the contents are not a valid map
+     */
+    public MapReader(ByteBuffer contents){
+        int end = contents.limit();
+        int nameEnd = lineEnd(contents, 0, end);
+        name = stripTag(line(contents, 0, nameEnd), "name ");
+        int winStart = Math.min(nameEnd + 1, end);
+        int winEnd = lineEnd(contents, winStart, end);
+        try{
+            goldToWin = Integer.parseInt(stripTag(line(contents, winStart, winEnd), "win ").trim());
+        } catch (NumberFormatException e){
+            throw new IllegalArgumentException("line 2: expected \"win <gold>\"", e);
+        }
+        grid = readGrid(contents, Math.min(winEnd + 1, end), end);
+    }
+
+    /**
+     * Return the name of the map.
+     * @return String representing the name, from the first line of the file
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * Return the amount of gold the player needs to win.
+     * @return amount of gold, from the second line of the file
+     */
+    public int getGoldToWin(){
+        return goldToWin;
+    }
+
+    /**
+     * Return the tiles of the map.
+     * @return Grid object holding the tiles
+     */
+    public Grid getGrid(){
+        return grid;
+    }
+
+    /**
+     * Return the contents of a file: read into the heap if it is small, memory-mapped otherwise.
+     * A mapped file stays readable after its channel is closed.
+     * @param file File object representing the file
+     * @return ByteBuffer holding the whole file
+     * @throws IOException if the file cannot be read
+     */
+    public static ByteBuffer readFile(File file) throws IOException {
+        try(FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()){
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE){
+                throw new IllegalArgumentException(file.getName() + " is too large: " + size + " bytes");
+            }
+            if(size >= MAP_THRESHOLD){
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while(buffer.hasRemaining() && channel.read(buffer) >= 0){
+                // keep reading until the whole file is in the buffer
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * Read the rows of the map. Every row must be as wide as the first, so the grid's array can be
+     * allocated once, and each row is copied into it with a single bulk read.
+     * @param contents ByteBuffer holding the file
+     * @param start index of the first byte of the first row
+     * @param end index after the last byte of the file
+     * @return Grid object holding the tiles
+     */
+    private static Grid readGrid(ByteBuffer contents, int start, int end){
+        // blank lines at the end of the file are not rows
+        while(end > start && isLineBreak(contents.get(end - 1))){
+            end--;
+        }
+        if(end == start){
+            return new Grid(0, 0, new byte[0]);
+        }
+        int firstEnd = lineEnd(contents, start, end);
+        int separator = firstEnd == end ? 0 : 1; // bytes between two rows
+        int columns = firstEnd - start;
+        if(columns > 0 && contents.get(firstEnd - 1) == '\r'){
+            columns--;
+            separator++;
+        }
+        if(columns == 0){
+            throw new IllegalArgumentException("line 3: the first row of the map is empty");
+        }
+        int stride = columns + separator;
+        int rows = (int) (((long) end - start + separator + stride - 1) / stride);
+        if((long) rows * columns > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("The map is too large: " + rows + "x" + columns + " tiles");
+        }
+        byte[] tiles = new byte[rows * columns];
+        for(int row = 0; row < rows; row++){
+            int offset = start + row * stride;
+            int rowEnd = offset + columns;
+            boolean last = row == rows - 1;
+            if(rowEnd > end || (last ? rowEnd != end : !isSeparator(contents, rowEnd, separator))){
+                throw new IllegalArgumentException("line " + (row + 3) + ": the row is " +
+                        (lineEnd(contents, offset, end) - offset) + " tiles wide instead of " + columns);
+            }
+            contents.get(offset, tiles, row * columns, columns);
+            checkRow(tiles, row * columns, columns, row == 0 || last, row + 3);
+        }
+        return new Grid(rows, columns, tiles);
+    }
+
+    /**
+     * Check that a row holds only tiles of DoD, and is enclosed by walls or exits.
+     * @param tiles array of the tiles read so far
+     * @param first index of the first tile of the row
+     * @param columns number of tiles of the row
+     * @param edge true for the first and last rows, which must be walls or exits only
+     * @param line number of the line of the row in the file, for the error message
+     */
+    private static void checkRow(byte[] tiles, int first, int columns, boolean edge, int line){
+        boolean[] allowed = edge ? BORDER_TILES : TILES;
+        for(int index = first; index < first + columns; index++){
+            if(!allowed[tiles[index] & 0xFF]){
+                throw new IllegalArgumentException("line " + line + ", column " + (index - first + 1) + ": " +
+                        (TILES[tiles[index] & 0xFF] ? "the map is not enclosed by walls" :
+                                "'" + (char) (tiles[index] & 0xFF) + "' is not a tile"));
+            }
+        }
+        if(!BORDER_TILES[tiles[first] & 0xFF] || !BORDER_TILES[tiles[first + columns - 1] & 0xFF]){
+            throw new IllegalArgumentException("line " + line + ": the map is not enclosed by walls");
+        }
+    }
+
+    /**
+     * Return the index of the end of a line: of its '\n', or the end of the file.
+     * @param contents ByteBuffer holding the file
+     * @param start index of the first byte of the line
+     * @param end index after the last byte of the file
+     * @return index of the '\n' which ends the line, or end
+     */
+    private static int lineEnd(ByteBuffer contents, int start, int end){
+        int index = start;
+        while(index < end && contents.get(index) != '\n'){
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Decode a line of text, without its line break.
+     * @param contents ByteBuffer holding the file
+     * @param start index of the first byte of the line
+     * @param end index of the '\n' which ends the line
+     * @return String representing the line
+     */
+    private static String line(ByteBuffer contents, int start, int end){
+        if(end > start && contents.get(end - 1) == '\r'){
+            end--;
+        }
+        byte[] bytes = new byte[end - start];
+        contents.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Remove the tag at the start of a line of the header, such as "name ".
+     * @param line String representing the line
+     * @param tag String representing the tag
+     * @return the line without the tag, or the whole line if it has no tag
+     */
+    private static String stripTag(String line, String tag){
+        return line.startsWith(tag) ? line.substring(tag.length()) : line;
+    }
+
+    /**
+     * Check if the bytes at an index are the line break between two rows.
+     * @param contents ByteBuffer holding the file
+     * @param index index of the first byte
+     * @param separator number of bytes of the line break: 1 for "\n", 2 for "\r\n"
+     * @return true if the bytes are the line break
+     */
+    private static boolean isSeparator(ByteBuffer contents, int index, int separator){
+        return separator == 1 ? contents.get(index) == '\n' :
+                contents.get(index) == '\r' && contents.get(index + 1) == '\n';
+    }
+
+    /**
+     * Check if a byte ends a line.
+     * @param value byte to check
+     * @return true for '\n' and '\r'
+     */
+    private static boolean isLineBreak(byte value){
+        return value == '\n' || value == '\r';
+    }
+}
@@ -0,0 +1,248 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Class which keeps the maps of Dungeons of Doom in memory for the whole process. The directory of
+ * the maps is listed once; each map is read the first time a game is played on it, and every later
+ * game shares the same Map object, which never changes (see GridOverlay). The directory is watched
+ * in the background, so maps which are added, changed or removed are picked up without a restart.
+ * Each map is compiled the first time it is read (see CompiledMap), so later starts of the server
+ * load it without parsing it again. Games hosted by the server load their maps with load(), on
+ * loader threads, so reading a large map does not hold up the games played in the meantime.
+ */
+public class MapRegistry {
+
+    /**
+     * Class which holds the registry used by the game, created the first time it is needed.
+     */
+    private static class DefaultHolder {
+        // directory which contains all the maps: the one of the game's classes
+        private static final MapRegistry INSTANCE = new MapRegistry(new File(DungeonsOfDoom.class.
+                getProtectionDomain().getCodeSource().getLocation().getPath()));
+    }
+
+    // declaring fields
+    public static final String EXTENSION = ".txt";
+    private static final int LOADER_THREADS = 2; // maps read at the same time by load()
+    private final File directory;
+    private volatile List<String> fileNames; // names of the map files, sorted
+    private final ConcurrentHashMap<String, Map> maps = new ConcurrentHashMap<>(); // maps read so far, by file name
+    private final ExecutorService loader = Executors.newFixedThreadPool(LOADER_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "map-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private WatchService watcher; // null if the directory cannot be watched
+    private Thread watcherThread;
+
+    /**
+     * Constructor which lists the maps of a directory and starts watching it.
+     * @param directory File object representing the directory of the maps
+     */
+    public MapRegistry(File directory){
+        this.directory = directory;
+        this.fileNames = listFileNames();
+        startWatching();
+    }
+
+    /**
+     * Return the registry of the maps next to the game's classes, shared by the whole process.
+     * @return MapRegistry object
+     */
+    public static MapRegistry getDefault(){
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Return the names of the map files, in the order they are shown to the players.
+     * @return read-only List of the file names, with the extension
+     */
+    public List<String> getMapFileNames(){
+        return fileNames;
+    }
+
+    /**
+     * Return the directory of the maps.
+     * @return File object representing the directory
+     */
+    public File getDirectory(){
+        return directory;
+    }
+
+    /**
+     * Return a map, reading it the first time it is asked for.
+     * @param fileName String representing the name of the map file, with the extension
+     * @return Map object, shared by every game, or null if there is no such map or it cannot be read
+     */
+    public Map get(String fileName){
+        Map map = maps.get(fileName);
+        if(map != null || !fileNames.contains(fileName)){
+            return map;
+        }
+        return maps.computeIfAbsent(fileName, this::read);
+    }
+
+    /**
+     * Return a map without blocking: a map which has been read already is returned straight away,
+     * any other map is read on a loader thread.
+     * @param fileName String representing the name of the map file, with the extension
+     * @return CompletableFuture completed with the Map object, or with null if there is no such map
+     * or it cannot be read
+     */
+    public CompletableFuture<Map> load(String fileName){
+        Map map = maps.get(fileName);
+        if(map != null || !fileNames.contains(fileName)){
+            return CompletableFuture.completedFuture(map);
+        }
+        return CompletableFuture.supplyAsync(() -> get(fileName), loader);
+    }
+
+    /**
+     * Return the number of maps which have been read.
+     * @return number of maps in memory
+     */
+    public int getLoadedMaps(){
+        return maps.size();
+    }
+
+    /**
+     * Stop watching the directory and loading maps.
+     */
+    public void close(){
+        loader.shutdownNow();
+        if(watcher != null){
+            try{
+                watcher.close();
+            } catch (IOException e){
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Read a map, from its compiled map if it is up to date (see CompiledMap).
+     * @param fileName String representing the name of the map file
+     * @return Map object, or null if the file is not a valid map
+     */
+    private Map read(String fileName){
+        try{
+            Map map = CompiledMap.loadOrCompile(new File(directory, fileName));
+            return map.getRows() > 0 && map.getColumns() > 0 ? map : null;
+        } catch (RuntimeException e){
+            System.out.println("The map " + fileName + " could not be read: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * List the map files of the directory.
+     * @return read-only List of the file names, sorted
+     */
+    private List<String> listFileNames(){
+        ArrayList<String> names = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if(files != null){
+            for(File file: files){
+                // be sure to get just the .txt files
+                if(file.isFile() && file.getName().endsWith(EXTENSION)){
+                    names.add(file.getName());
+                }
+            }
+        }
+        Collections.sort(names);
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Start the thread which watches the directory for changes, if it can be watched.
+     */
+    private void startWatching(){
+        if(!directory.isDirectory()){
+            return;
+        }
+        try{
+            watcher = FileSystems.getDefault().newWatchService();
+            directory.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e){
+            System.out.println("The map directory cannot be watched, changed maps need a restart: " + e);
+            close();
+            watcher = null;
+            return;
+        }
+        watcherThread = new Thread(this::watch, "map-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    /**
+     * Wait for changes of the directory until the registry is closed. A new or removed file changes
+     * the list of maps; a changed map which has been read already is read again straight away, and
+     * replaces the old one for the games started afterwards.
+     */
+    private void watch(){
+        try{
+            while(true){
+                WatchKey key = watcher.take();
+                boolean listChanged = false;
+                for(WatchEvent<?> event : key.pollEvents()){
+                    if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+                        // events were lost: list the maps again and read them when they are next used
+                        listChanged = true;
+                        maps.clear();
+                        continue;
+                    }
+                    String fileName = ((Path) event.context()).getFileName().toString();
+                    if(!fileName.endsWith(EXTENSION)){
+                        continue;
+                    }
+                    if(event.kind() == StandardWatchEventKinds.ENTRY_DELETE){
+                        maps.remove(fileName);
+                        listChanged = true;
+                    }
+                    else{
+                        listChanged |= event.kind() == StandardWatchEventKinds.ENTRY_CREATE;
+                        maps.computeIfPresent(fileName, this::reload);
+                    }
+                }
+                if(listChanged){
+                    fileNames = listFileNames();
+                }
+                if(!key.reset()){
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e){
+            // the registry has been closed
+        }
+    }
+
+    /**
+     * Read a changed map again.
+     * @param fileName String representing the name of the map file
+     * @param map Map object read before
+     * @return the new Map object, or the old one if the file cannot be read (for example while it is written)
+     */
+    private Map reload(String fileName, Map map){
+        Map reloaded = read(fileName);
+        if(reloaded == null){
+            return map;
+        }
+        System.out.println("Reloaded the map " + fileName);
+        return reloaded;
+    }
+}
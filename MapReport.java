@@ -0,0 +1,93 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class which prints how hard the maps of Dungeons of Doom are, from their distance fields (see
+ * DistanceField and AllPairsDistances): how far the exits are from the tiles and from the gold,
+ * and how far apart two tiles are, which is roughly how far the bot spawns from the player.
+ * It also prints the size of the map's graph of clusters used by HierarchicalPlanner.
+ *
+ * Usage: java MapReport [map files...]
+ */
+public class MapReport {
+
+    /**
+     * Main method which prints the report of each map given, or of every map of the registry.
+     * @param args the names of the map files
+     */
+    public static void main(String[] args){
+        List<String> fileNames = args.length > 0 ? Arrays.asList(args) : MapRegistry.getDefault().getMapFileNames();
+        for(String fileName : fileNames){
+            Map map = MapRegistry.getDefault().get(fileName);
+            if(map == null){
+                System.out.println(fileName + ": not a map");
+                continue;
+            }
+            report(fileName, map);
+        }
+    }
+
+    /**
+     * Print the report of a map.
+     * @param fileName String representing the name of the map file
+     * @param map Map object
+     */
+    private static void report(String fileName, Map map){
+        Grid grid = map.getGrid();
+        int size = grid.getRows() * grid.getColumns();
+        long start = System.nanoTime();
+        DistanceField exits = map.getExitDistances();
+        double exitMillis = (System.nanoTime() - start) / 1e6;
+        long total = 0;
+        int reachable = 0;
+        int open = 0;
+        for(int index = 0; index < size; index++){
+            if(!grid.isWalkable(index)){
+                continue;
+            }
+            open++;
+            if(exits.get(index) != DistanceField.UNREACHABLE){
+                total += exits.get(index);
+                reachable++;
+            }
+        }
+        int[] gold = map.findTiles(Grid.GOLD);
+        long goldTotal = 0;
+        for(int tile : gold){
+            goldTotal += Math.max(exits.get(tile), 0);
+        }
+        System.out.println(fileName + ": " + map.getName());
+        System.out.println("  " + grid.getRows() + "x" + grid.getColumns() + " tiles, " + open + " open, " +
+                exits.getTargets() + " exits, " + gold.length + " gold (" + map.getGold() + " to win)");
+        System.out.printf("  Steps to the nearest exit: %.1f on average, %d at most, %d tiles cannot reach one" +
+                " (%.2f ms)%n", (double) total / Math.max(reachable, 1), exits.getMaxDistance(), open - reachable, exitMillis);
+        System.out.printf("  Steps from the gold to the nearest exit: %.1f on average%n",
+                (double) goldTotal / Math.max(gold.length, 1));
+        start = System.nanoTime();
+        ClusterGraph graph = map.getClusterGraph();
+        System.out.printf("  Graph of clusters: %d nodes and %d edges (%.2f ms)%n", graph.getNodes(),
+                graph.getEdges(), (System.nanoTime() - start) / 1e6);
+        start = System.nanoTime();
+        AllPairsDistances pairs = map.getAllPairsDistances();
+        if(pairs == null){
+            System.out.println("  Too many open tiles for the distances between every two tiles");
+            return;
+        }
+        double pairMillis = (System.nanoTime() - start) / 1e6;
+        long pairTotal = 0;
+        long pairCount = 0;
+        int longest = 0;
+        for(int first = 0; first < pairs.getOpenTiles(); first++){
+            for(int second = first + 1; second < pairs.getOpenTiles(); second++){
+                int distance = pairs.get(pairs.getTile(first), pairs.getTile(second));
+                if(distance != AllPairsDistances.UNREACHABLE){
+                    pairTotal += distance;
+                    pairCount++;
+                    longest = Math.max(longest, distance);
+                }
+            }
+        }
+        System.out.printf("  Steps between two tiles: %.1f on average, %d at most (%.2f ms)%n",
+                (double) pairTotal / Math.max(pairCount, 1), longest, pairMillis);
+    }
+}
@@ -0,0 +1,163 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class which encodes the messages sent by the server to UTF-8, terminated by a new line.
+ * A message is encoded once into a read-only direct buffer, which is then shared by all the
+ * recipients through ByteBuffer.duplicate(). To avoid allocating direct memory for every message,
+ * the messages are carved out of larger direct slabs.
+ */
+public final class MessageEncoder {
+
+    // declaring fields
+    private static final int SLAB_SIZE = 256 * 1024;
+    private static final int MAX_SLAB_MESSAGE_SIZE = SLAB_SIZE / 4; // bigger messages get a buffer of their own
+    private static final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private static ByteBuffer slab; // slab the next messages are encoded into
+    // counters which show how much encoding and allocation the server does
+    private static final AtomicLong encodedMessages = new AtomicLong();
+    private static final AtomicLong encodedBytes = new AtomicLong();
+    private static final AtomicLong allocatedBuffers = new AtomicLong();
+
+    /**
+     * Private constructor, since the class only has static methods.
+     */
+    private MessageEncoder(){
+    }
+
+    /**
+     * Encode a message for the text protocol, so it can be queued for any number of clients.
+     * @param message String representing the message, without the line terminator
+     * @return read-only ByteBuffer containing the encoded message and the line terminator.
+     *          Each recipient must get its own duplicate() of it.
+     */
+    public static ByteBuffer encode(String message){
+        // worst case size of the message, so encoding never runs out of room
+        int maxSize = (int) Math.ceil(message.length() * encoder.maxBytesPerChar()) + 1;
+        synchronized (MessageEncoder.class){
+            ByteBuffer target = reserve(maxSize);
+            int start = target.position();
+            encodeText(message, target);
+            target.put((byte) '\n');
+            return finish(target, start);
+        }
+    }
+
+    /**
+     * Encode a frame of the binary protocol (see WireProtocol), so it can be queued for any number of clients.
+     * @param type type of the frame
+     * @param senderId id of the sender, 0 if there is none
+     * @param payload String representing the payload
+     * @return read-only ByteBuffer containing the encoded frame.
+     *          Each recipient must get its own duplicate() of it.
+     */
+    public static ByteBuffer encodeFrame(byte type, int senderId, String payload){
+        int maxSize = (int) Math.ceil(payload.length() * encoder.maxBytesPerChar()) + 4 + WireProtocol.HEADER_SIZE;
+        synchronized (MessageEncoder.class){
+            ByteBuffer target = reserve(maxSize);
+            int start = target.position();
+            // the length prefix is only known once the payload has been encoded
+            target.putInt(0);
+            target.put(type);
+            target.putInt(senderId);
+            encodeText(payload, target);
+            target.putInt(start, target.position() - start - 4);
+            return finish(target, start);
+        }
+    }
+
+    /**
+     * Return a buffer with room for a message of a given worst case size: the current slab,
+     * a new slab, or, for big messages, a buffer of its own. The lock must be held.
+     * @param maxSize worst case size of the encoded message
+     * @return ByteBuffer to encode the message into, at its current position
+     */
+    private static ByteBuffer reserve(int maxSize){
+        if(maxSize > MAX_SLAB_MESSAGE_SIZE){
+            allocatedBuffers.incrementAndGet();
+            return ByteBuffer.allocateDirect(maxSize);
+        }
+        if(slab == null || slab.remaining() < maxSize){
+            slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+            allocatedBuffers.incrementAndGet();
+        }
+        return slab;
+    }
+
+    /**
+     * Encode text to UTF-8 into a buffer which has enough room for it. The lock must be held.
+     * @param text String to encode
+     * @param target ByteBuffer to encode into, at its current position
+     */
+    private static void encodeText(String text, ByteBuffer target){
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(text), target, true);
+        encoder.flush(target);
+    }
+
+    /**
+     * Join messages which have already been encoded into a single buffer, so they can be
+     * queued and written as one.
+     * @param messages List of ByteBuffer objects containing the encoded messages
+     * @return ByteBuffer containing all the messages, which belongs to the caller
+     */
+    public static ByteBuffer concatenate(List<ByteBuffer> messages){
+        int size = 0;
+        for(ByteBuffer message:messages){
+            size += message.remaining();
+        }
+        ByteBuffer joined = ByteBuffer.allocate(size);
+        for(ByteBuffer message:messages){
+            joined.put(message);
+        }
+        joined.flip();
+        return joined;
+    }
+
+    /**
+     * Return the encoded message as a read-only buffer and count it. The lock must be held.
+     * @param target ByteBuffer the message has been encoded into
+     * @param start position in the target at which the message starts
+     * @return read-only ByteBuffer containing just the encoded message
+     */
+    private static ByteBuffer finish(ByteBuffer target, int start){
+        // the encoded message is the part of the target between start and its current position
+        ByteBuffer encoded = target.duplicate();
+        encoded.limit(target.position());
+        encoded.position(start);
+        encodedMessages.incrementAndGet();
+        encodedBytes.addAndGet(target.position() - start);
+        return encoded.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Return the number of messages encoded so far.
+     * @return number of encoded messages
+     */
+    public static long getEncodedMessages(){
+        return encodedMessages.get();
+    }
+
+    /**
+     * Return the number of bytes the messages encoded so far take.
+     * @return number of encoded bytes
+     */
+    public static long getEncodedBytes(){
+        return encodedBytes.get();
+    }
+
+    /**
+     * Return the number of direct buffers allocated to hold the encoded messages.
+     * @return number of allocated buffers
+     */
+    public static long getAllocatedBuffers(){
+        return allocatedBuffers.get();
+    }
+}
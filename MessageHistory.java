@@ -0,0 +1,89 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Class which keeps the most recent messages of a room in a ring buffer of fixed capacity,
+ * allocated once, so the history takes the same memory however busy the room is.
+ * Appending takes no lock: each message claims the next sequence number and overwrites the
+ * oldest slot. Every slot is stamped with the sequence number of the message it holds, so a
+ * reader can tell a message which is being overwritten from the one it expects, and skips it.
+ */
+public class MessageHistory {
+
+    // declaring fields
+    private static final ChatMessage[] NO_MESSAGES = new ChatMessage[0];
+    private final int capacity;
+    private final AtomicReferenceArray<ChatMessage> messages;
+    private final AtomicLongArray sequences; // sequence number of the message in each slot, -1 while it is written
+    private final AtomicLong nextSequence = new AtomicLong(); // sequence number of the next message
+
+    /**
+     * Constructor which allocates the ring buffer.
+     * @param capacity number of messages kept; 0 keeps no history
+     */
+    public MessageHistory(int capacity){
+        this.capacity = Math.max(capacity, 0);
+        messages = new AtomicReferenceArray<>(this.capacity);
+        sequences = new AtomicLongArray(this.capacity);
+        for(int index = 0; index < this.capacity; index++){
+            sequences.set(index, -1);
+        }
+    }
+
+    /**
+     * Add a message to the history, replacing the oldest one once the buffer is full.
+     * @param message ChatMessage to add
+     */
+    public void append(ChatMessage message){
+        if(capacity == 0){
+            return;
+        }
+        long sequence = nextSequence.getAndIncrement();
+        int slot = (int) (sequence % capacity);
+        sequences.set(slot, -1);
+        messages.set(slot, message);
+        sequences.set(slot, sequence);
+    }
+
+    /**
+     * Return the most recent messages, oldest first. Messages which are overwritten while
+     * they are read are left out.
+     * @param count maximum number of messages to return
+     * @return array of ChatMessage objects
+     */
+    public ChatMessage[] getLatest(int count){
+        long end = nextSequence.get();
+        long start = Math.max(0, end - Math.min(count, capacity));
+        if(start >= end){
+            return NO_MESSAGES;
+        }
+        ChatMessage[] latest = new ChatMessage[(int) (end - start)];
+        int found = 0;
+        for(long sequence = start; sequence < end; sequence++){
+            int slot = (int) (sequence % capacity);
+            // the message is only valid if the slot holds this sequence number before and after reading it
+            if(sequences.get(slot) != sequence){
+                continue;
+            }
+            ChatMessage message = messages.get(slot);
+            if(sequences.get(slot) == sequence){
+                latest[found++] = message;
+            }
+        }
+        if(found < latest.length){
+            ChatMessage[] complete = new ChatMessage[found];
+            System.arraycopy(latest, 0, complete, 0, found);
+            return complete;
+        }
+        return latest;
+    }
+
+    /**
+     * Return the number of messages which can be kept.
+     * @return capacity of the ring buffer
+     */
+    public int getCapacity(){
+        return capacity;
+    }
+}
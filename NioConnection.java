@@ -0,0 +1,469 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * Class which represents the connection between a client and the NIO server engine.
+ * Instead of blocking on the socket, it is driven by a NioEventLoop which calls it back
+ * when the channel is readable or writable. Incoming bytes are split into lines (or, with the
+ * binary protocol, into frames), which are handled exactly like ConnectionThread handles them.
+ */
+public class NioConnection implements ClientConnection {
+
+    // declaring fields
+    private static final String CONFIRMATION_MESSAGE = "Thank you for joining the server...enjoy!";
+    private static final int INITIAL_READ_BUFFER_SIZE = 1024;
+    // lines or frames which do not fit in a buffer of this size close the connection
+    private static final int MAX_READ_BUFFER_SIZE = 2 * WireProtocol.MAX_FRAME_LENGTH;
+    private static final int MAX_GATHERED_MESSAGES = 64; // messages written with one gathering write
+    private final SocketChannel channel; // client side
+    private final ChatServer server; // server side
+    private final NioEventLoop eventLoop; // loop which serves this connection
+    private SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+    // messages waiting to be written to the client, encoded and terminated by a new line
+    private final OutboundQueue outbound;
+    private final WriteCoalescer coalescer; // decides how the queued messages are batched into writes
+    // messages taken from the queue which are not fully written yet, written with one gathering write
+    private final ByteBuffer[] gatheredMessages = new ByteBuffer[MAX_GATHERED_MESSAGES];
+    private int gatheredCount = 0;
+    private boolean writeDeferred = false; // value is true if the loop will write the messages later
+    private volatile boolean slowConsumer = false; // value is true if the client could not keep up
+    private volatile boolean serverClosed = false;
+    private volatile boolean isUsernameSet = false;
+    private boolean disconnected = false;
+    private String userName;
+    private int senderId; // interned id of the user-name
+    private boolean binaryRequested = false; // value is true if the client asked for the binary protocol
+    private volatile boolean binaryProtocol = false; // value is true once the binary protocol is used
+    private final BitSet announcedSenders = new BitSet(); // senders whose name the client knows
+    private final ReplayBuffer replayBuffer = new ReplayBuffer(); // live chat messages held back while the history is replayed
+
+    /**
+     * Constructor which configures the client's channel as non-blocking.
+     * @param channel Client side connection
+     * @param server Server side connection
+     * @param eventLoop NioEventLoop which will serve the connection
+     * @throws IOException if the channel cannot be configured
+     */
+    public NioConnection(SocketChannel channel, ChatServer server, NioEventLoop eventLoop) throws IOException {
+        this.channel = channel;
+        this.server = server;
+        this.eventLoop = eventLoop;
+        this.outbound = server.getOptions().createOutboundQueue();
+        this.coalescer = server.getOptions().createWriteCoalescer();
+        channel.configureBlocking(false);
+    }
+
+    /**
+     * Return the client side connection.
+     * @return SocketChannel representing the client side of the connection
+     */
+    public SocketChannel getChannel(){
+        return channel;
+    }
+
+    /**
+     * Set the key obtained when the channel was registered with the loop's selector.
+     * @param key SelectionKey of the channel
+     */
+    public void setKey(SelectionKey key){
+        this.key = key;
+    }
+
+    /**
+     * Set that the server is closed.
+     */
+    @Override
+    public void setServerClosed(){
+        serverClosed = true;
+    }
+
+    /**
+     * Close the client side connection.
+     * @throws IOException if the channel cannot be closed
+     */
+    @Override
+    public void closeConnection() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Return the user-name of the client.
+     * @return String representing the user-name, or null if it has not been set yet
+     */
+    @Override
+    public String getUserName(){
+        return userName;
+    }
+
+    /**
+     * Return the interned id of the client's user-name.
+     * @return id of the user-name, 0 if it has not been set yet
+     */
+    @Override
+    public int getSenderId(){
+        return senderId;
+    }
+
+    /**
+     * Queue a message of the server for the client, using the client's protocol, and let the event loop write it.
+     * @param message String representing the message, without the line terminator
+     */
+    @Override
+    public void sendMessage(String message){
+        sendEncodedMessage(binaryProtocol ? MessageEncoder.encodeFrame(WireProtocol.SERVER, 0, message) :
+                MessageEncoder.encode(message));
+    }
+
+    /**
+     * Queue a chat message for the client, using the client's protocol. Messages received while
+     * the history of a room is replayed are held back until the replay has been sent.
+     * @param message ChatMessage to send
+     */
+    @Override
+    public void sendChatMessage(ChatMessage message){
+        if(!replayBuffer.offer(message)){
+            deliverChatMessage(message);
+        }
+    }
+
+    /**
+     * Start holding back the live chat messages, before the client joins a room whose history is replayed.
+     */
+    @Override
+    public void holdChatMessages(){
+        replayBuffer.hold();
+    }
+
+    /**
+     * Send the history of a room followed by the chat messages held back since the client joined it.
+     * @param history array of ChatMessage objects representing the history of the room, oldest first
+     */
+    @Override
+    public void releaseChatMessages(ChatMessage[] history){
+        replayBuffer.release(history, this::sendChatMessages);
+    }
+
+    /**
+     * Queue a chat message for the client, using the client's protocol. With the binary protocol,
+     * the sender's name is announced before the first message from it. Messages sent before the
+     * client has joined the chat are ignored.
+     * @param message ChatMessage to send
+     */
+    private void deliverChatMessage(ChatMessage message){
+        if(!isUsernameSet){
+            return;
+        }
+        if(!binaryProtocol){
+            sendEncodedMessage(message.getTextLine());
+            return;
+        }
+        // keep the announcement and the message together when several clients send at once
+        synchronized (announcedSenders){
+            int messageSenderId = message.getSenderId();
+            if(message.getSenderName() != null && !announcedSenders.get(messageSenderId)){
+                announcedSenders.set(messageSenderId);
+                // the client needs the name for every later message of the sender, so it is never dropped
+                queueMessage(MessageEncoder.encodeFrame(WireProtocol.SENDER, messageSenderId,
+                        message.getSenderName()), true);
+            }
+            sendEncodedMessage(message.getBinaryFrame());
+        }
+    }
+
+    /**
+     * Queue several chat messages for the client as a single encoded buffer, using the client's
+     * protocol. Unlike sendChatMessage(), it does not wait for the client to have joined the chat,
+     * since it is used to replay the history while the client joins.
+     * @param messages array of ChatMessage objects to send, oldest first
+     */
+    @Override
+    public void sendChatMessages(ChatMessage[] messages){
+        if(messages.length == 0){
+            return;
+        }
+        ArrayList<ByteBuffer> encoded = new ArrayList<>(messages.length);
+        if(!binaryProtocol){
+            for(ChatMessage message:messages){
+                encoded.add(message.getTextLine());
+            }
+            sendEncodedMessage(MessageEncoder.concatenate(encoded));
+            return;
+        }
+        synchronized (announcedSenders){
+            boolean announced = false; // value is true if the buffer announces a sender
+            for(ChatMessage message:messages){
+                int messageSenderId = message.getSenderId();
+                if(message.getSenderName() != null && !announcedSenders.get(messageSenderId)){
+                    announcedSenders.set(messageSenderId);
+                    encoded.add(MessageEncoder.encodeFrame(WireProtocol.SENDER, messageSenderId,
+                            message.getSenderName()));
+                    announced = true;
+                }
+                encoded.add(message.getBinaryFrame());
+            }
+            queueMessage(MessageEncoder.concatenate(encoded), announced);
+        }
+    }
+
+    /**
+     * Queue an encoded message for the client and let the event loop write it. Can be called from any thread.
+     * If the client is too slow and the slow consumer policy says so, the loop disconnects it instead.
+     * @param message ByteBuffer containing the encoded message
+     */
+    @Override
+    public void sendEncodedMessage(ByteBuffer message){
+        queueMessage(message, false);
+    }
+
+    /**
+     * Queue an encoded message for the client and let the event loop write it. Can be called from any thread.
+     * @param message ByteBuffer containing the encoded message
+     * @param pinned true if the slow consumer policy must not drop the message (see OutboundQueue)
+     */
+    private void queueMessage(ByteBuffer message, boolean pinned){
+        if(!outbound.offer(message, pinned)){
+            slowConsumer = true;
+        }
+        eventLoop.requestWrite(this);
+    }
+
+    /**
+     * Read the available bytes from the channel and handle every complete line or frame.
+     * Called by the event loop when the channel is readable.
+     */
+    public void handleRead(){
+        try{
+            int bytesRead = channel.read(readBuffer);
+            if(bytesRead == -1){
+                handleClosed();
+                return;
+            }
+        } catch (IOException e){
+            System.out.println("There is something wrong with " + userName +
+                    ". Probably the server is shutting down.");
+            handleClosed();
+            return;
+        }
+        readBuffer.flip();
+        try{
+            // the protocol can switch to binary frames in the middle of the buffer
+            boolean handled = true;
+            while(handled && !disconnected){
+                handled = binaryProtocol ? handleNextFrame() : handleNextLine();
+            }
+        } catch (IOException e){
+            System.out.println(userName + " sent a message which is not valid...");
+            handleClosed();
+        }
+        if(disconnected){
+            return;
+        }
+        readBuffer.compact();
+        // the buffer is full without a complete line or frame, so make room for the rest of it
+        if(!readBuffer.hasRemaining()){
+            if(readBuffer.capacity() >= MAX_READ_BUFFER_SIZE){
+                System.out.println(userName + " sent a message which is too long...");
+                handleClosed();
+                return;
+            }
+            ByteBuffer biggerBuffer = ByteBuffer.allocate(readBuffer.capacity() * 2);
+            readBuffer.flip();
+            biggerBuffer.put(readBuffer);
+            readBuffer = biggerBuffer;
+        }
+    }
+
+    /**
+     * Handle the next line in the read buffer, if it is complete.
+     * @return true if a line was handled, false if the buffer does not contain a complete line
+     */
+    private boolean handleNextLine(){
+        int lineStart = readBuffer.position();
+        for(int index = lineStart; index < readBuffer.limit(); index++){
+            if(readBuffer.get(index) == '\n'){
+                int lineEnd = index;
+                // accept both "\n" and "\r\n" as line terminators
+                if(lineEnd > lineStart && readBuffer.get(lineEnd - 1) == '\r'){
+                    lineEnd--;
+                }
+                String line = new String(readBuffer.array(), readBuffer.arrayOffset() + lineStart,
+                        lineEnd - lineStart, StandardCharsets.UTF_8);
+                readBuffer.position(index + 1);
+                handleLine(line);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Handle the next binary frame in the read buffer, if it is complete.
+     * @return true if a frame was handled, false if the buffer does not contain a complete frame
+     * @throws IOException if the frame is not valid
+     */
+    private boolean handleNextFrame() throws IOException {
+        WireProtocol.Frame frame = WireProtocol.decodeFrame(readBuffer);
+        if(frame == null){
+            return false;
+        }
+        // both MESSAGE and COMMAND frames carry just the user's input
+        if(frame.getPayload().equals("/disconnect")){
+            handleClosed();
+            return true;
+        }
+        server.handleClientMessage(this, frame.getPayload());
+        return true;
+    }
+
+    /**
+     * Handle one line received from the client, the same way ConnectionThread.run() does:
+     * the first lines negotiate the protocol and the user-name, the following ones are broadcast.
+     * @param line String representing the received line, without the line terminator
+     */
+    private void handleLine(String line){
+        // set the username of the client
+        if(!isUsernameSet){
+            // the client asks to use the binary protocol once it has joined
+            if(line.equals(WireProtocol.PROTOCOL_REQUEST) && !binaryRequested){
+                binaryRequested = true;
+                sendMessage(WireProtocol.PROTOCOL_REQUEST);
+                return;
+            }
+            // messages sent to the room once the client has joined wait for the replay of its history
+            replayBuffer.hold();
+            if(!server.claimUserName(line, this)){
+                releaseChatMessages(new ChatMessage[0]);
+                sendMessage("Please try again...this username is already taken");
+                return;
+            }
+            userName = line;
+            senderId = server.getSenderId(line);
+            sendMessage(CONFIRMATION_MESSAGE);
+            // the confirmation is the last message sent with the text protocol
+            binaryProtocol = binaryRequested;
+            isUsernameSet = true;
+            server.replayHistory(this);
+            return;
+        }
+        // check if the user disconnects
+        if(line.equals("/disconnect")){
+            handleClosed();
+            return;
+        }
+        server.handleClientLine(this, line);
+    }
+
+    /**
+     * Called by the event loop when new messages have been queued. If the client is busy, the
+     * write is deferred for a short window so that more messages can be batched with it;
+     * otherwise the messages are written straight away.
+     */
+    public void handleWriteRequest(){
+        if(writeDeferred || gatheredCount > 0){
+            // already waiting for the window to end or for the channel to become writable
+            return;
+        }
+        if(coalescer.shouldWaitForMore(outbound.getQueuedBytes())){
+            writeDeferred = true;
+            eventLoop.deferWrite(this, coalescer.getWindowNanos());
+            return;
+        }
+        handleWrite();
+    }
+
+    /**
+     * Called by the event loop when the window of a deferred write has ended.
+     */
+    public void handleDeferredWrite(){
+        writeDeferred = false;
+        handleWrite();
+    }
+
+    /**
+     * Write as many of the queued messages as the channel accepts, several at a time with
+     * gathering writes. If the socket's send buffer fills up, wait for the loop to report the
+     * channel as writable again. Called by the event loop only.
+     */
+    public void handleWrite(){
+        if(disconnected || key == null || !key.isValid()){
+            return;
+        }
+        if(slowConsumer){
+            System.out.println(userName + " is too slow to keep up with the chat...");
+            handleClosed();
+            return;
+        }
+        int batchedMessages = 0;
+        int writes = 0;
+        try{
+            while(true){
+                // gather the queued messages, up to the batch threshold
+                long batchBytes = 0;
+                for(int index = 0; index < gatheredCount; index++){
+                    batchBytes += gatheredMessages[index].remaining();
+                }
+                while(gatheredCount < MAX_GATHERED_MESSAGES && batchBytes < coalescer.getMaxBatchBytes()){
+                    ByteBuffer message = outbound.poll();
+                    if(message == null){
+                        break;
+                    }
+                    gatheredMessages[gatheredCount++] = message;
+                    batchBytes += message.remaining();
+                    batchedMessages++;
+                }
+                if(gatheredCount == 0){
+                    key.interestOps(SelectionKey.OP_READ);
+                    break;
+                }
+                channel.write(gatheredMessages, 0, gatheredCount);
+                writes++;
+                // keep only the messages which are not fully written
+                int written = 0;
+                while(written < gatheredCount && !gatheredMessages[written].hasRemaining()){
+                    written++;
+                }
+                System.arraycopy(gatheredMessages, written, gatheredMessages, 0, gatheredCount - written);
+                for(int index = gatheredCount - written; index < gatheredCount; index++){
+                    gatheredMessages[index] = null;
+                }
+                gatheredCount -= written;
+                if(gatheredCount > 0){
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    break;
+                }
+            }
+        } catch (IOException e){
+            handleClosed();
+        }
+        if(writes > 0){
+            coalescer.batchWritten(batchedMessages, writes);
+        }
+    }
+
+    /**
+     * Close the connection after the client disconnected or the channel failed,
+     * and let the server know about it.
+     */
+    public void handleClosed(){
+        if(disconnected){
+            return;
+        }
+        disconnected = true;
+        outbound.close();
+        gatheredCount = 0;
+        try{
+            channel.close();
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+        if(!serverClosed){
+            server.disconnect(userName, this);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Class which represents one event loop of the NIO server engine. Each loop owns a Selector
+ * and serves all the non-blocking connections registered with it on a single thread, so that
+ * a handful of loops can serve a very large number of mostly idle clients.
+ */
+public class NioEventLoop implements Runnable {
+
+    // declaring fields
+    private final Selector selector;
+    private final Thread thread;
+    // connections accepted by the server which are waiting to be registered with the selector
+    private final ConcurrentLinkedQueue<NioConnection> pendingConnections = new ConcurrentLinkedQueue<>();
+    // connections which have new messages waiting to be written to the client
+    private final ConcurrentLinkedQueue<NioConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+    // connections of busy clients whose writes wait until deferredWritesDeadline, to be batched
+    private final ArrayList<NioConnection> deferredWrites = new ArrayList<>();
+    private long deferredWritesDeadline;
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor which opens the selector and creates the thread which runs the loop.
+     * @param name String representing the name of the loop's thread
+     * @throws IOException if the selector cannot be opened
+     */
+    public NioEventLoop(String name) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this, name);
+    }
+
+    /**
+     * Start the thread which runs the loop.
+     */
+    public void start(){
+        thread.start();
+    }
+
+    /**
+     * Hand a newly accepted connection over to this loop. Can be called from any thread.
+     * @param connection NioConnection representing the new client
+     */
+    public void register(NioConnection connection){
+        pendingConnections.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Let the loop know that a connection has messages waiting to be written. Can be called from any thread.
+     * @param connection NioConnection which has pending messages
+     */
+    public void requestWrite(NioConnection connection){
+        pendingWrites.add(connection);
+        // the loop's own thread flushes the pending writes before selecting again
+        if(Thread.currentThread() != thread){
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Write the messages of a connection once a window has passed, instead of straight away.
+     * Called by the connections of this loop only.
+     * @param connection NioConnection whose messages should be written later
+     * @param windowNanos how long to wait, in nanoseconds
+     */
+    public void deferWrite(NioConnection connection, long windowNanos){
+        long deadline = System.nanoTime() + windowNanos;
+        if(deferredWrites.isEmpty() || deadline - deferredWritesDeadline < 0){
+            deferredWritesDeadline = deadline;
+        }
+        deferredWrites.add(connection);
+    }
+
+    /**
+     * Stop the loop and close its selector.
+     */
+    public void shutdown(){
+        closed = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Register with the selector all the connections handed over since the last iteration.
+     */
+    private void registerPendingConnections(){
+        NioConnection connection;
+        while((connection = pendingConnections.poll()) != null){
+            try{
+                connection.setKey(connection.getChannel().register(selector, SelectionKey.OP_READ, connection));
+            } catch (ClosedChannelException e){
+                connection.handleClosed();
+            }
+        }
+    }
+
+    /**
+     * Flush the messages of every connection which has requested a write since the last iteration.
+     */
+    private void processPendingWrites(){
+        NioConnection connection;
+        while((connection = pendingWrites.poll()) != null){
+            connection.handleWriteRequest();
+        }
+        // write the deferred messages once their window has ended
+        if(!deferredWrites.isEmpty() && System.nanoTime() - deferredWritesDeadline >= 0){
+            for(NioConnection deferredConnection: deferredWrites){
+                deferredConnection.handleDeferredWrite();
+            }
+            deferredWrites.clear();
+        }
+    }
+
+    /**
+     * Return how long the selector may wait for I/O before the deferred writes are due.
+     * @return timeout in milliseconds, 0 meaning no timeout
+     */
+    private long selectTimeout(){
+        if(deferredWrites.isEmpty()){
+            return 0;
+        }
+        long remainingNanos = deferredWritesDeadline - System.nanoTime();
+        // a timeout of 0 would wait forever, so wait at least one millisecond
+        return Math.max(1, (remainingNanos + 999_999) / 1_000_000);
+    }
+
+    /**
+     * Run method of the class. Waits for I/O readiness and dispatches it to the connections.
+     */
+    @Override
+    public void run(){
+        while(!closed){
+            try{
+                selector.select(selectTimeout());
+                registerPendingConnections();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    if(key.isValid() && key.isReadable()){
+                        connection.handleRead();
+                    }
+                    if(key.isValid() && key.isWritable()){
+                        connection.handleWrite();
+                    }
+                }
+                // flush what was queued by other threads and by the connections handled above
+                processPendingWrites();
+            } catch (IOException e){
+                e.printStackTrace();
+            }
+        }
+        try{
+            selector.close();
+        } catch (IOException e){
+            e.printStackTrace();
+        }
+    }
+}
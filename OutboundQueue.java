@@ -0,0 +1,262 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Class which represents the bounded queue of messages waiting to be written to one client.
+ * Broadcasting only adds to the queues, so it never blocks on a client's socket; each queue is
+ * drained by the connection's own writer. When a queue is full, its SlowConsumerPolicy decides
+ * what happens. Pinned messages, such as the announcements of the binary protocol which later
+ * messages depend on, are never dropped.
+ */
+public class OutboundQueue {
+
+    // declaring fields
+    private static final AtomicLong totalDroppedMessages = new AtomicLong(); // for all the clients
+    private static final AtomicLong totalDisconnectedClients = new AtomicLong(); // for all the clients
+    private final ArrayDeque<ByteBuffer> messages = new ArrayDeque<>();
+    // queued messages which must not be dropped, by identity (buffers with the same bytes are equal)
+    private final Set<ByteBuffer> pinnedMessages = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final int maxMessages;
+    private final long maxBytes;
+    private final SlowConsumerPolicy policy;
+    // a lock instead of synchronized, so waiting virtual threads do not pin their carrier thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private long queuedBytes = 0;
+    private long droppedMessages = 0;
+    private boolean closed = false;
+
+    /**
+     * Constructor which sets the limits of the queue and the policy applied when they are reached.
+     * @param maxMessages maximum number of queued messages
+     * @param maxBytes maximum number of queued bytes
+     * @param policy SlowConsumerPolicy applied when a new message does not fit in the queue
+     */
+    public OutboundQueue(int maxMessages, long maxBytes, SlowConsumerPolicy policy){
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+    }
+
+    /**
+     * Add a message to the queue, applying the policy if the queue is full. Never blocks.
+     * @param message ByteBuffer containing the encoded message
+     * @return false if the policy requires the client to be disconnected, true otherwise
+     */
+    public boolean offer(ByteBuffer message){
+        return offer(message, false);
+    }
+
+    /**
+     * Add a message to the queue, applying the policy if the queue is full. Never blocks.
+     * A pinned message is queued even if the queue is full, unless the client is disconnected,
+     * and is never dropped to make room for newer messages.
+     * @param message ByteBuffer containing the encoded message
+     * @param pinned true if the message must not be dropped
+     * @return false if the policy requires the client to be disconnected, true otherwise
+     */
+    public boolean offer(ByteBuffer message, boolean pinned){
+        lock.lock();
+        try{
+            if(closed){
+                return true;
+            }
+            int size = message.remaining();
+            if(isFull(size)){
+                switch (policy){
+                    case DROP_NEWEST:
+                        if(pinned){
+                            break;
+                        }
+                        dropMessage();
+                        return true;
+                    case DROP_OLDEST:
+                        Iterator<ByteBuffer> oldest = messages.iterator();
+                        while(isFull(size) && oldest.hasNext()){
+                            ByteBuffer queued = oldest.next();
+                            if(!pinnedMessages.contains(queued)){
+                                oldest.remove();
+                                queuedBytes -= queued.remaining();
+                                dropMessage();
+                            }
+                        }
+                        break;
+                    case DISCONNECT:
+                        totalDisconnectedClients.incrementAndGet();
+                        closeQueue();
+                        return false;
+                }
+            }
+            messages.add(message);
+            if(pinned){
+                pinnedMessages.add(message);
+            }
+            queuedBytes += size;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check if a new message does not fit in the queue. A message always fits in an empty queue.
+     * @param size number of bytes of the new message
+     * @return true if adding the message would exceed one of the limits
+     */
+    private boolean isFull(int size){
+        return !messages.isEmpty() && (messages.size() >= maxMessages || queuedBytes + size > maxBytes);
+    }
+
+    /**
+     * Count a dropped message.
+     */
+    private void dropMessage(){
+        droppedMessages++;
+        totalDroppedMessages.incrementAndGet();
+    }
+
+    /**
+     * Remove the oldest message from the queue without waiting.
+     * @return ByteBuffer containing the message, or null if the queue is empty
+     */
+    public ByteBuffer poll(){
+        lock.lock();
+        try{
+            ByteBuffer message = messages.poll();
+            if(message != null){
+                removed(message);
+            }
+            return message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the oldest message from the queue, waiting until there is one.
+     * @return ByteBuffer containing the message, or null if the queue has been closed
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public ByteBuffer take() throws InterruptedException {
+        lock.lock();
+        try{
+            while(messages.isEmpty() && !closed){
+                notEmpty.await();
+            }
+            if(closed){
+                return null;
+            }
+            ByteBuffer message = messages.poll();
+            removed(message);
+            return message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the oldest message from the queue, waiting at most a given time until there is one.
+     * @param timeoutNanos maximum time to wait, in nanoseconds
+     * @return ByteBuffer containing the message, or null if there is none or the queue has been closed
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public ByteBuffer poll(long timeoutNanos) throws InterruptedException {
+        lock.lock();
+        try{
+            while(messages.isEmpty() && !closed && timeoutNanos > 0){
+                timeoutNanos = notEmpty.awaitNanos(timeoutNanos);
+            }
+            ByteBuffer message = messages.poll();
+            if(message != null){
+                removed(message);
+            }
+            return message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Account for a message taken from the queue by the writer. The lock must be held.
+     * @param message ByteBuffer containing the message
+     */
+    private void removed(ByteBuffer message){
+        queuedBytes -= message.remaining();
+        if(!pinnedMessages.isEmpty()){
+            pinnedMessages.remove(message);
+        }
+    }
+
+    /**
+     * Return the number of bytes waiting in the queue.
+     * @return number of queued bytes
+     */
+    public long getQueuedBytes(){
+        lock.lock();
+        try{
+            return queuedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close the queue, discarding the queued messages and waking up the writer.
+     */
+    public void close(){
+        lock.lock();
+        try{
+            closeQueue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Close the queue. The lock must be held.
+     */
+    private void closeQueue(){
+        closed = true;
+        messages.clear();
+        pinnedMessages.clear();
+        queuedBytes = 0;
+        notEmpty.signalAll();
+    }
+
+    /**
+     * Return the number of messages dropped from this queue.
+     * @return number of dropped messages
+     */
+    public long getDroppedMessages(){
+        lock.lock();
+        try{
+            return droppedMessages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return the number of messages dropped from all the queues.
+     * @return number of dropped messages
+     */
+    public static long getTotalDroppedMessages(){
+        return totalDroppedMessages.get();
+    }
+
+    /**
+     * Return the number of clients disconnected because their queue was full.
+     * @return number of disconnected clients
+     */
+    public static long getTotalDisconnectedClients(){
+        return totalDisconnectedClients.get();
+    }
+}
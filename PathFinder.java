@@ -0,0 +1,271 @@
+import java.util.Arrays;
+
+/**
+ * Class which finds shortest paths on a grid (see WalkableGrid) with a breadth first search.
+ * It works on primitive arrays only: the tiles waiting to be visited are kept in an int array used
+ * as a queue, and the distances are stamped with the number of the search, so they never need to be
+ * cleared between searches. The arrays are reused by every search of the same thread, so once they
+ * have grown to the size of the largest grid, searching allocates nothing.
+ * A PathFinder must only be used by one thread; use forCurrentThread() to get the thread's own.
+ */
+public final class PathFinder {
+
+    // declaring fields
+    public static final int UNREACHABLE = -1; // distance of the tiles which cannot be reached
+    private static final ThreadLocal<PathFinder> SCRATCH = ThreadLocal.withInitial(PathFinder::new);
+    private int[] distances = new int[0]; // distance of each tile from the start, valid if its stamp is current
+    private int[] stamps = new int[0]; // number of the search which set the distance of each tile
+    private int[] queue = new int[0]; // tiles to visit; each tile is queued at most once per search
+    private int search = 0; // number of the current search
+    private int columns; // columns of the grid of the current search
+    private int rows;
+
+    /**
+     * Return the PathFinder of the current thread, whose arrays are reused by all its searches.
+     * @return PathFinder object which must not be shared with other threads
+     */
+    public static PathFinder forCurrentThread(){
+        return SCRATCH.get();
+    }
+
+    /**
+     * Compute the distance from a tile to every tile which can be reached from it.
+     * @param grid WalkableGrid to search
+     * @param start index of the tile to start from
+     * @return number of tiles reached, including the start
+     */
+    public int fill(WalkableGrid grid, int start){
+        return run(grid, start, -1);
+    }
+
+    /**
+     * Compute the distance from the nearest of several tiles to every tile which can be reached from them.
+     * @param grid WalkableGrid to search
+     * @param starts array of the indexes of the tiles to start from
+     * @return number of tiles reached, including the starts
+     */
+    public int fill(WalkableGrid grid, int[] starts){
+        prepare(grid);
+        int tail = 0;
+        for(int start : starts){
+            if(stamps[start] != search){
+                stamps[start] = search;
+                distances[start] = 0;
+                queue[tail++] = start;
+            }
+        }
+        return expand(grid, tail, -1);
+    }
+
+    /**
+     * Compute the distances from a tile, until another tile is reached.
+     * @param grid WalkableGrid to search
+     * @param start index of the tile to start from
+     * @param target index of the tile to reach
+     * @return distance from the start to the target, or UNREACHABLE
+     */
+    public int distance(WalkableGrid grid, int start, int target){
+        run(grid, start, target);
+        return getDistance(target);
+    }
+
+    /**
+     * Find the first step of a shortest path between two tiles. Of the shortest paths, the one
+     * which goes north first, then west, then south, then east, going back from the target, is taken.
+     * @param grid WalkableGrid to search
+     * @param start index of the tile to start from
+     * @param target index of the tile to reach
+     * @return index of the tile next to the start to go to, the start if it is the target,
+     *          or UNREACHABLE if the target cannot be reached
+     */
+    public int firstStep(WalkableGrid grid, int start, int target){
+        int distance = distance(grid, start, target);
+        if(distance == UNREACHABLE){
+            return UNREACHABLE;
+        }
+        // go back from the target, one tile closer to the start at a time
+        int tile = target;
+        while(distance > 1){
+            tile = closerNeighbour(tile, distance);
+            distance--;
+        }
+        return tile;
+    }
+
+    /**
+     * Compute the distance from a tile to every tile which can be reached from it without leaving
+     * a rectangle of the grid.
+     * @param grid WalkableGrid to search
+     * @param start index of the tile to start from, inside the rectangle
+     * @param top first row of the rectangle
+     * @param left first column of the rectangle
+     * @param bottom row after the last row of the rectangle
+     * @param right column after the last column of the rectangle
+     * @return number of tiles reached, including the start
+     */
+    public int fillWithin(WalkableGrid grid, int start, int top, int left, int bottom, int right){
+        prepare(grid);
+        stamps[start] = search;
+        distances[start] = 0;
+        queue[0] = start;
+        int head = 0;
+        int tail = 1;
+        while(head < tail){
+            int tile = queue[head++];
+            int next = distances[tile] + 1;
+            int row = tile / columns;
+            int column = tile - row * columns;
+            // north, west, south, east
+            if(row > top){
+                tail = visit(grid, tile - columns, next, tail);
+            }
+            if(column > left){
+                tail = visit(grid, tile - 1, next, tail);
+            }
+            if(row < bottom - 1){
+                tail = visit(grid, tile + columns, next, tail);
+            }
+            if(column < right - 1){
+                tail = visit(grid, tile + 1, next, tail);
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Write the tiles of a shortest path found by the last search, from the tile after its start
+     * to a reached tile. The path is the one firstStep() would follow.
+     * @param target index of a tile reached by the last search
+     * @param path array to write to, with room for getDistance(target) tiles
+     * @param offset position in the array of the first tile of the path
+     * @return number of tiles written
+     */
+    public int tracePath(int target, int[] path, int offset){
+        int distance = getDistance(target);
+        int tile = target;
+        for(int step = distance; step > 0; step--){
+            path[offset + step - 1] = tile;
+            tile = closerNeighbour(tile, step);
+        }
+        return Math.max(distance, 0);
+    }
+
+    /**
+     * Return the distance of a tile, computed by the last search.
+     * @param index index of the tile
+     * @return distance from the start of the last search, or UNREACHABLE if it was not reached
+     */
+    public int getDistance(int index){
+        return stamps[index] == search ? distances[index] : UNREACHABLE;
+    }
+
+    /**
+     * Search breadth first from a tile.
+     * @param grid WalkableGrid to search
+     * @param start index of the tile to start from
+     * @param target index of the tile at which the search stops, or -1 to reach every tile
+     * @return number of tiles reached
+     */
+    private int run(WalkableGrid grid, int start, int target){
+        prepare(grid);
+        stamps[start] = search;
+        distances[start] = 0;
+        queue[0] = start;
+        return expand(grid, 1, target);
+    }
+
+    /**
+     * Visit the queued tiles and their neighbours, breadth first.
+     * @param grid WalkableGrid to search
+     * @param tail number of tiles queued to start with
+     * @param target index of the tile at which the search stops, or -1 to reach every tile
+     * @return number of tiles reached
+     */
+    private int expand(WalkableGrid grid, int tail, int target){
+        int size = rows * columns;
+        int head = 0;
+        while(head < tail){
+            int tile = queue[head++];
+            if(tile == target){
+                break;
+            }
+            int next = distances[tile] + 1;
+            int column = tile % columns;
+            // north, west, south, east
+            if(tile >= columns){
+                tail = visit(grid, tile - columns, next, tail);
+            }
+            if(column > 0){
+                tail = visit(grid, tile - 1, next, tail);
+            }
+            if(tile + columns < size){
+                tail = visit(grid, tile + columns, next, tail);
+            }
+            if(column < columns - 1){
+                tail = visit(grid, tile + 1, next, tail);
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Queue a tile, if it can be walked on and has not been reached yet.
+     * @param grid WalkableGrid being searched
+     * @param tile index of the tile
+     * @param distance distance of the tile from the start
+     * @param tail position of the end of the queue
+     * @return the new position of the end of the queue
+     */
+    private int visit(WalkableGrid grid, int tile, int distance, int tail){
+        if(stamps[tile] != search && grid.isWalkable(tile)){
+            stamps[tile] = search;
+            distances[tile] = distance;
+            queue[tail++] = tile;
+        }
+        return tail;
+    }
+
+    /**
+     * Return a neighbour of a tile which is one step closer to the start,
+     * looking north, then west, then south, then east.
+     * @param tile index of the tile
+     * @param distance distance of the tile
+     * @return index of the neighbour
+     */
+    private int closerNeighbour(int tile, int distance){
+        int column = tile % columns;
+        if(tile >= columns && getDistance(tile - columns) == distance - 1){
+            return tile - columns;
+        }
+        if(column > 0 && getDistance(tile - 1) == distance - 1){
+            return tile - 1;
+        }
+        if(tile + columns < rows * columns && getDistance(tile + columns) == distance - 1){
+            return tile + columns;
+        }
+        return tile + 1;
+    }
+
+    /**
+     * Get the arrays ready for a search on a grid: grow them if the grid is larger than
+     * the previous ones, and start a new search number.
+     * @param grid WalkableGrid to search
+     */
+    private void prepare(WalkableGrid grid){
+        rows = grid.getRows();
+        columns = grid.getColumns();
+        int size = rows * columns;
+        if(size > stamps.length){
+            distances = new int[size];
+            stamps = new int[size];
+            queue = new int[size];
+            search = 0;
+        }
+        search++;
+        if(search == Integer.MAX_VALUE){
+            // the search numbers have run out: clear the stamps once and start again
+            Arrays.fill(stamps, 0);
+            search = 1;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Class which measures the pathfinding: the bot's searches on the 5*5 grid of LOOK, with the
+ * Node/Graph search Lee used before PathFinder (kept here as a baseline), through the Lee API and
+ * through the PathFinder directly, and full searches on random grids of growing size.
+ *
+ * Usage: java PathFinderBenchmark [-iterations 1000000] [-seed 1]
+ */
+public class PathFinderBenchmark {
+
+    /**
+     * Class which is the search Lee used before PathFinder, unchanged but for its name: a Node object
+     * for each free tile, linked to its neighbours by looking every neighbour up in a list, then a
+     * breadth first search over the nodes. Only used as the baseline of the benchmark.
+     */
+    private static class LegacyLee {
+
+        private ArrayList<Node> lastVisited; // array list of nodes, which have been visited
+        private int[][] leeMap = new int[5][5]; // map with the least steps from the centre for any point
+
+        /**
+         * Class which represents a single free point in the 5*5 grid.
+         */
+        private class Node{
+
+            private ArrayList<Node> neighbours; // each point has neighbours, which are also Nodes
+            private int distanceFromStart; // the distance from the centre to the point
+            private int row ,column; // its coordinates on the 5*5 grid
+
+            /**
+             * Constructs the Node class, with the largest distance from the centre.
+             * @param row row coordinate for the point
+             * @param column column coordinate for the point
+             */
+            private Node(int row, int column){
+                neighbours = new ArrayList<>();
+                distanceFromStart = 26;
+                this.row = row;
+                this.column = column;
+            }
+
+            /**
+             * Update the distance from the centre only if the new one is strictly smaller.
+             * @param distance computed distance from the centre
+             * @return true if the distance was updated
+             */
+            private boolean updateDistanceFromStart(int distance){
+                if(distance < this.distanceFromStart){
+                    this.distanceFromStart = distance;
+                    return true;
+                }
+                return false;
+            }
+        }
+
+        /**
+         * Class which represents all the free spaces on the grid as an array list of Node objects.
+         */
+        private class Graph{
+
+            private ArrayList<Node> nodes;
+            private int[] rowDirection = {-1, 0, 1, 0};
+            private int[] columnDirection = {0, 1, 0, -1};
+
+            /**
+             * Constructor which creates a Node object for each free tile of the grid.
+             * @param map the 5*5 grid obtained through the "look" method
+             */
+            private Graph(LookView map){
+                nodes = new ArrayList<>();
+                for(int row = 0; row < 5; row++){
+                    for(int column = 0; column < 5; column++){
+                        if(map.get(row, column) != '#'){
+                            nodes.add(new Node(row, column));
+                        }
+                    }
+                }
+            }
+
+            /**
+             * Return the Node object of a point, if it exists.
+             * @param nodeRow row coordinate
+             * @param nodeColumn column coordinate
+             * @return Node object or null
+             */
+            private Node findNode(int nodeRow, int nodeColumn){
+                for(Node node: nodes){
+                    if(node.row == nodeRow && node.column == nodeColumn){
+                        return node;
+                    }
+                }
+                return null;
+            }
+
+            /**
+             * Link each Node object to its neighbours.
+             */
+            private void linkNodes() {
+                for (int row = 0; row < 5; row++) {
+                    for (int column = 0; column < 5; column++) {
+                        Node currentNode = findNode(row, column);
+                        if (currentNode != null) {
+                            for (int directionIndex = 0; directionIndex < 4; directionIndex++) {
+                                Node neighbour = findNode(row + rowDirection[directionIndex],
+                                        column + columnDirection[directionIndex]);
+                                if (neighbour != null) {
+                                    currentNode.neighbours.add(neighbour);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            /**
+             * Apply Lee's algorithm on the linked Node objects, from a starting point.
+             * @param startingNode position from which the shortest path to each point is computed
+             */
+            private void lee(Node startingNode){
+                lastVisited.add(startingNode);
+                while(lastVisited.size() > 0){
+                    Node node = lastVisited.get(0);
+                    for(int neighbourIndex = 0; neighbourIndex < node.neighbours.size(); neighbourIndex++){
+                        Node neighbour = node.neighbours.get(neighbourIndex);
+                        if(neighbour.updateDistanceFromStart(node.distanceFromStart + 1)){
+                            lastVisited.add(neighbour);
+                            leeMap[neighbour.row][neighbour.column] = neighbour.distanceFromStart;
+                        }
+                    }
+                    lastVisited.remove(node);
+                }
+            }
+        }
+
+        /**
+         * Constructor which creates the Graph object and applies Lee's algorithm to it.
+         * @param map the 5*5 grid obtained from the bot "look" command
+         */
+        private LegacyLee(LookView map){
+            for(int row = 0; row < 5; row++){
+                for(int column = 0; column < 5; column++){
+                    leeMap[row][column] = 26;
+                }
+            }
+            lastVisited = new ArrayList<>();
+            Graph graph = new Graph(map);
+            graph.linkNodes();
+            Node startNode = graph.findNode(2, 2);
+            if(startNode != null){
+                startNode.updateDistanceFromStart(0);
+            }
+            leeMap[2][2] = 0;
+            graph.lee(graph.findNode(2, 2));
+        }
+    }
+
+    // declaring fields
+    private static final int VIEWS = 1024; // different 5*5 grids searched in turn
+    private static final double WALLS = 0.3; // share of the tiles which are walls
+    private static final int[] GRID_SIZES = {64, 256, 1024, 2048}; // rows and columns of the large grids
+    private static final int ROUNDS = 3; // each benchmark is run this many times; only the last is reported
+    private static long sink; // results are added here, so the searches cannot be optimised away
+
+    /**
+     * Main method which runs the benchmarks and prints the time of a search.
+     * @param args the arguments
+     */
+    public static void main(String[] args){
+        int iterations = 1000000;
+        long seed = 1;
+        for(int index = 0; index + 1 < args.length; index += 2){
+            if(args[index].equals("-iterations")){
+                iterations = Integer.parseInt(args[index + 1]);
+            }
+            else if(args[index].equals("-seed")){
+                seed = Long.parseLong(args[index + 1]);
+            }
+        }
+        Random random = new Random(seed);
+        LookView[] views = new LookView[VIEWS];
+        for(int index = 0; index < VIEWS; index++){
+            views[index] = randomView(random);
+        }
+        int centre = LookView.CENTRE * LookView.SIZE + LookView.CENTRE;
+        // both searches must find the same distances, or the comparison means nothing
+        int differences = 0;
+        for(LookView view : views){
+            if(!Arrays.deepEquals(new LegacyLee(view).leeMap, new Lee(view).getLeeMap())){
+                differences++;
+            }
+        }
+        System.out.println("Lee maps which differ from the old search: " + differences + " of " + VIEWS);
+        // the first rounds warm up the JIT compiler
+        for(int round = 0; round < ROUNDS; round++){
+            long start = System.nanoTime();
+            for(int index = 0; index < iterations; index++){
+                sink += new LegacyLee(views[index & (VIEWS - 1)]).leeMap[0][0];
+            }
+            report(round, "5x5 Lee map, old Node/Graph search", start, iterations);
+            start = System.nanoTime();
+            for(int index = 0; index < iterations; index++){
+                sink += new Lee(views[index & (VIEWS - 1)]).getLeeMap()[0][0];
+            }
+            report(round, "5x5 Lee map", start, iterations);
+            start = System.nanoTime();
+            PathFinder pathFinder = PathFinder.forCurrentThread();
+            for(int index = 0; index < iterations; index++){
+                sink += pathFinder.firstStep(views[index & (VIEWS - 1)], centre, index % 25);
+            }
+            report(round, "5x5 first step", start, iterations);
+        }
+        for(int size : GRID_SIZES){
+            Grid grid = randomGrid(random, size);
+            int searches = Math.max(3, (int) (iterations / 25L / ((long) size * size / 25 + 1)));
+            PathFinder pathFinder = PathFinder.forCurrentThread();
+            for(int round = 0; round < ROUNDS; round++){
+                long start = System.nanoTime();
+                long reached = 0;
+                for(int index = 0; index < searches; index++){
+                    reached += pathFinder.fill(grid, grid.index(size / 2, size / 2));
+                }
+                sink += reached;
+                report(round, size + "x" + size + " full search (" + reached / searches + " tiles)", start, searches);
+            }
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    /**
+     * Print the time a search took, in the last round only.
+     * @param round number of the round, from 0
+     * @param name String representing the name of the benchmark
+     * @param start time at which the benchmark started, from System.nanoTime()
+     * @param searches number of searches
+     */
+    private static void report(int round, String name, long start, long searches){
+        if(round < ROUNDS - 1){
+            return;
+        }
+        double nanos = (double) (System.nanoTime() - start) / searches;
+        System.out.printf("%-45s %12.1f ns/search%n", name, nanos);
+    }
+
+    /**
+     * Create a random 5*5 view, with an open centre.
+     * @param random Random object
+     * @return LookView object
+     */
+    private static LookView randomView(Random random){
+        LookView view = new LookView();
+        for(int row = 0; row < LookView.SIZE; row++){
+            for(int column = 0; column < LookView.SIZE; column++){
+                view.set(row, column, random.nextDouble() < WALLS ? Grid.WALL : Grid.FLOOR);
+            }
+        }
+        view.set(LookView.CENTRE, LookView.CENTRE, GridOverlay.BOT);
+        return view;
+    }
+
+    /**
+     * Create a random square grid, with an open centre.
+     * @param random Random object
+     * @param size number of rows and columns
+     * @return Grid object
+     */
+    private static Grid randomGrid(Random random, int size){
+        byte[] tiles = new byte[size * size];
+        for(int index = 0; index < tiles.length; index++){
+            tiles[index] = (byte) (random.nextDouble() < WALLS ? Grid.WALL : Grid.FLOOR);
+        }
+        tiles[(size / 2) * size + size / 2] = Grid.FLOOR;
+        return new Grid(size, size, tiles);
+    }
+}
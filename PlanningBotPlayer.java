@@ -0,0 +1,235 @@
+import java.util.Random; // used to explore and for the random movements
+
+/**
+ * Class which represents a bot which remembers every tile it has seen during its game (see
+ * KnowledgeGrid) and plans its moves over the whole map with jump point search (see GridPlanner),
+ * instead of only using the grid of its last look. It chases the player while it sees them, then
+ * goes to where it saw them last, and otherwise explores the parts of the map it has not seen.
+ * A path is kept from one move to the next, and only planned again when the target changes or
+ * a newly seen wall blocks it.
+ */
+public class PlanningBotPlayer extends BotPlayer {
+
+    // declaring fields
+    private static final int MAX_PLANS = 4; // targets tried for one move before moving randomly
+    private static final int TARGET_PICKS = 32; // random tiles tried when choosing where to explore
+    private final KnowledgeGrid knowledge;
+    private final int columns;
+    private boolean lookNext = true; // alternates between looking and moving, starting with a look
+    private int target = -1; // tile the bot is heading for, -1 if it has to choose one
+    private int lastSeenPlayer = -1; // tile where the player was last seen, -1 once the bot has been there
+    private int[] path = new int[16]; // tiles of the current path, without the tile it was planned from
+    private int pathLength = 0;
+    private int pathPosition = 0; // position in the path of the next tile to move to
+    private int pathStart = -1; // tile the path was planned from
+    private boolean replan = true; // value is true if the current path cannot be followed any more
+    private long plans = 0; // number of paths planned
+
+    /**
+     * Constructor which creates a bot for a map it has not seen yet.
+     * @param random Random object used to explore and for the random movements
+     * @param rows number of rows of the map
+     * @param columns number of columns of the map
+     */
+    public PlanningBotPlayer(Random random, int rows, int columns){
+        super(random);
+        this.knowledge = new KnowledgeGrid(rows, columns);
+        this.columns = columns;
+    }
+
+    /**
+     * Remembers where the player is, in addition to telling the bot that it sees them.
+     * @param row row of the player on the 5*5 grid of the look
+     * @param column column of the player on the 5*5 grid of the look
+     */
+    @Override
+    public void setPlayerFound(int row, int column){
+        super.setPlayerFound(row, column);
+        lastSeenPlayer = (getRow() - LookView.CENTRE + row) * columns + getColumn() - LookView.CENTRE + column;
+    }
+
+    /**
+     * Adds the tiles of the grid of the last look to what the bot knows about the map.
+     * @param visibleMap 5*5 grid which is shown to the bot when calling the look command
+     */
+    @Override
+    public void updateMemoryMap(LookView visibleMap){
+        super.updateMemoryMap(visibleMap);
+        for(int row = 0; row < LookView.SIZE; row++){
+            int mapRow = getRow() - LookView.CENTRE + row;
+            for(int column = 0; column < LookView.SIZE; column++){
+                int mapColumn = getColumn() - LookView.CENTRE + column;
+                // the tiles outside the map are shown as walls, but there is nothing to remember about them
+                if(mapRow < 0 || mapColumn < 0 || mapRow >= knowledge.getRows() || mapColumn >= columns){
+                    continue;
+                }
+                int tile = mapRow * columns + mapColumn;
+                if(knowledge.learn(tile, visibleMap.get(row, column) == Grid.WALL)){
+                    replan = true;
+                }
+            }
+        }
+        if(target != -1 && knowledge.isWall(target)){
+            target = -1;
+        }
+    }
+
+    /**
+     * Look after every move, and move towards the current target otherwise.
+     * @return the command
+     */
+    @Override
+    public String makeDecision(){
+        if(lookNext){
+            lookNext = false;
+            return "LOOK";
+        }
+        lookNext = true;
+        int position = getRow() * columns + getColumn();
+        for(int attempt = 0; attempt < MAX_PLANS; attempt++){
+            chooseTarget(position);
+            if(replan || pathStart == -1 || currentTile() != position || pathPosition >= pathLength){
+                if(!plan(position)){
+                    // the target cannot be reached: choose another one
+                    forgetTarget();
+                    continue;
+                }
+            }
+            return moveTo(position, path[pathPosition++]);
+        }
+        return randomMovement();
+    }
+
+    /**
+     * Returns the number of paths the bot has planned.
+     * @return number of plans
+     */
+    public long getPlans(){
+        return plans;
+    }
+
+    /**
+     * Returns what the bot knows about the map.
+     * @return KnowledgeGrid object
+     */
+    public KnowledgeGrid getKnowledge(){
+        return knowledge;
+    }
+
+    /**
+     * Choose where to go: to the player if the bot sees them, to where it saw them last,
+     * or somewhere it has not seen yet.
+     * @param position index of the bot's tile
+     */
+    private void chooseTarget(int position){
+        if(lastSeenPlayer == position){
+            // the player has gone: explore again
+            lastSeenPlayer = -1;
+        }
+        if(lastSeenPlayer != -1){
+            setTarget(lastSeenPlayer);
+            return;
+        }
+        if(target != -1 && target != position){
+            return;
+        }
+        Random random = getRandom();
+        int size = knowledge.getRows() * columns;
+        int choice = -1;
+        for(int pick = 0; pick < TARGET_PICKS && choice == -1; pick++){
+            int tile = random.nextInt(size);
+            if(!knowledge.isKnown(tile)){
+                choice = tile;
+            }
+        }
+        // most of the map has been seen: go back to a random open tile
+        for(int pick = 0; pick < TARGET_PICKS && choice == -1; pick++){
+            int tile = random.nextInt(size);
+            if(knowledge.isWalkable(tile) && tile != position){
+                choice = tile;
+            }
+        }
+        setTarget(choice);
+    }
+
+    /**
+     * Change the target, and plan again if it is a new one.
+     * @param tile index of the target, or -1
+     */
+    private void setTarget(int tile){
+        if(tile != target){
+            target = tile;
+            replan = true;
+        }
+    }
+
+    /**
+     * Forget the current target, after it turned out to be out of reach.
+     */
+    private void forgetTarget(){
+        if(target == lastSeenPlayer){
+            lastSeenPlayer = -1;
+        }
+        target = -1;
+        replan = true;
+    }
+
+    /**
+     * Return the tile the bot should be on to follow its path.
+     * @return index of the tile the next move of the path starts from
+     */
+    private int currentTile(){
+        return pathPosition == 0 ? pathStart : path[pathPosition - 1];
+    }
+
+    /**
+     * Plan a path from the bot's tile to the target, and mark its tiles.
+     * @param position index of the bot's tile
+     * @return true if there is a path to the target
+     */
+    private boolean plan(int position){
+        knowledge.markPath(path, pathPosition, pathLength, false);
+        pathLength = 0;
+        pathPosition = 0;
+        pathStart = -1;
+        if(target == -1 || target == position){
+            return false;
+        }
+        plans++;
+        GridPlanner planner = GridPlanner.forCurrentThread();
+        if(!planner.findJumpPath(knowledge, position, target)){
+            return false;
+        }
+        pathLength = planner.getPathLength();
+        if(path.length < pathLength){
+            path = new int[Math.max(pathLength, path.length * 2)];
+        }
+        for(int step = 0; step < pathLength; step++){
+            path[step] = planner.getPathTile(step);
+        }
+        knowledge.markPath(path, 0, pathLength, true);
+        pathStart = position;
+        replan = false;
+        return true;
+    }
+
+    /**
+     * Return the move from a tile to a neighbouring one, and unmark the tile the bot leaves behind.
+     * @param position index of the bot's tile
+     * @param next index of the neighbouring tile
+     * @return the command "move " + the direction
+     */
+    private String moveTo(int position, int next){
+        knowledge.markPath(path, pathPosition - 1, pathPosition, false);
+        if(next == position + 1){
+            return "move e";
+        }
+        if(next == position - 1){
+            return "move w";
+        }
+        if(next == position + columns){
+            return "move s";
+        }
+        return "move n";
+    }
+}
@@ -0,0 +1,100 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Class which represents an ascending list of chat log offsets, stored compactly: each offset is
+ * written as its difference from the previous one, as a variable-length integer (7 bits per byte,
+ * the high bit set on every byte but the last). Consecutive messages are a few dozen bytes apart,
+ * so most offsets take one or two bytes.
+ */
+public class PostingList {
+
+    // declaring fields
+    private byte[] data = new byte[8];
+    private int length = 0; // bytes of data in use
+    private int count = 0; // number of offsets
+    private long lastOffset = 0; // the next offset is encoded relative to this one
+
+    /**
+     * Add an offset, which must be bigger than every offset already in the list.
+     * @param offset offset of a record of the chat log
+     */
+    public void add(long offset){
+        long delta = offset - lastOffset;
+        // a varint of a long takes at most 10 bytes
+        if(length + 10 > data.length){
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + 10));
+        }
+        while((delta & ~0x7FL) != 0){
+            data[length++] = (byte) ((delta & 0x7F) | 0x80);
+            delta >>>= 7;
+        }
+        data[length++] = (byte) delta;
+        lastOffset = offset;
+        count++;
+    }
+
+    /**
+     * Decode the offsets.
+     * @return array of the offsets, ascending
+     */
+    public long[] toArray(){
+        long[] offsets = new long[count];
+        long offset = 0;
+        int position = 0;
+        for(int index = 0; index < count; index++){
+            long delta = 0;
+            int shift = 0;
+            byte read;
+            do{
+                read = data[position++];
+                delta |= (long) (read & 0x7F) << shift;
+                shift += 7;
+            } while(read < 0);
+            offset += delta;
+            offsets[index] = offset;
+        }
+        return offsets;
+    }
+
+    /**
+     * Return the number of offsets in the list.
+     * @return number of offsets
+     */
+    public int size(){
+        return count;
+    }
+
+    /**
+     * Write the list to a stream, in its compact form.
+     * @param out DataOutputStream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(count);
+        out.writeInt(length);
+        out.write(data, 0, length);
+    }
+
+    /**
+     * Read a list written by writeTo().
+     * @param in DataInputStream to read from
+     * @return PostingList object with the offsets of the list
+     * @throws IOException if the stream cannot be read or is not valid
+     */
+    public static PostingList readFrom(DataInputStream in) throws IOException {
+        PostingList list = new PostingList();
+        list.count = in.readInt();
+        list.length = in.readInt();
+        if(list.count < 0 || list.length < 0){
+            throw new IOException("Invalid posting list");
+        }
+        list.data = new byte[Math.max(list.length, 8)];
+        in.readFully(list.data, 0, list.length);
+        long[] offsets = list.toArray();
+        list.lastOffset = offsets.length == 0 ? 0 : offsets[offsets.length - 1];
+        return list;
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Class which holds back the live chat messages of a client while the history of a room is
+ * replayed to it. The client starts holding before it joins the room, so every message sent to
+ * the room after that is held, and the replay only needs the history from before: it is sent
+ * without the held messages, followed by the held messages, so nothing is lost, repeated or
+ * sent before older messages. A replayed message is not sent again when the thread which
+ * broadcasts it only reaches the client after the replay.
+ */
+public class ReplayBuffer {
+
+    // declaring fields
+    private ArrayList<ChatMessage> heldMessages; // live messages received during the replay, null when not replaying
+    private Set<ChatMessage> replayedMessages = Collections.emptySet(); // replayed messages which have not arrived live yet
+
+    /**
+     * Start holding the live messages, before the client joins a room and its history is replayed.
+     */
+    public synchronized void hold(){
+        if(heldMessages == null){
+            heldMessages = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Keep a live message back if a replay is in progress, or drop it if it has been replayed.
+     * @param message ChatMessage sent to the client
+     * @return true if the message is held or dropped, false if it must be sent now
+     */
+    public synchronized boolean offer(ChatMessage message){
+        if(heldMessages != null){
+            heldMessages.add(message);
+            return true;
+        }
+        return !replayedMessages.isEmpty() && replayedMessages.remove(message);
+    }
+
+    /**
+     * Stop holding the live messages and send the history followed by the held messages.
+     * They are sent while the buffer is locked, so no later live message can overtake them.
+     * @param history array of ChatMessage objects representing the history of the room, oldest first
+     * @param sender Consumer which sends an array of messages to the client at once
+     */
+    public synchronized void release(ChatMessage[] history, Consumer<ChatMessage[]> sender){
+        if(heldMessages == null){
+            return;
+        }
+        ArrayList<ChatMessage> held = heldMessages;
+        heldMessages = null;
+        // the history keeps the same objects which are sent to the members
+        Set<ChatMessage> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        live.addAll(held);
+        replayedMessages = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayList<ChatMessage> messages = new ArrayList<>(history.length + held.size());
+        // the history before the first held message was sent before the client joined
+        int index = 0;
+        while(index < history.length && !live.contains(history[index])){
+            replayedMessages.add(history[index]);
+            messages.add(history[index++]);
+        }
+        messages.addAll(held);
+        // the rest was still being broadcast, so it comes after the held messages
+        for(; index < history.length; index++){
+            if(!live.contains(history[index])){
+                replayedMessages.add(history[index]);
+                messages.add(history[index]);
+            }
+        }
+        sender.accept(messages.toArray(new ChatMessage[0]));
+    }
+}
@@ -0,0 +1,168 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class which keeps track of the rooms of the chat and of the rooms each client has joined.
+ * A client can be in several rooms at once; its messages go to its active room, which is the
+ * room it joined last. Rooms are created when the first client joins them and removed when the
+ * last one leaves, except for the default room which every client joins once it has a user-name.
+ */
+public class RoomRegistry {
+
+    // declaring fields
+    public static final String DEFAULT_ROOM = "general"; // room every client joins, never removed
+    public static final int MAX_ROOM_NAME_LENGTH = 32;
+    private final ConcurrentHashMap<String, ChatRoom> rooms = new ConcurrentHashMap<>();
+    private final int historySize; // number of recent messages kept for each room
+    // rooms each client has joined, and the room its messages are sent to
+    private final ConcurrentHashMap<ClientConnection, Set<ChatRoom>> joinedRooms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ClientConnection, ChatRoom> activeRooms = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor which creates the registry with the default room.
+     * @param historySize number of recent messages kept for each room
+     */
+    public RoomRegistry(int historySize){
+        this.historySize = historySize;
+        rooms.put(DEFAULT_ROOM, new ChatRoom(DEFAULT_ROOM, historySize));
+    }
+
+    /**
+     * Check if a String can be used as the name of a room.
+     * @param name String representing the requested name
+     * @return true if the name is not empty, not too long and has no spaces
+     */
+    public static boolean isValidName(String name){
+        if(name.isEmpty() || name.length() > MAX_ROOM_NAME_LENGTH){
+            return false;
+        }
+        for(int index = 0; index < name.length(); index++){
+            if(Character.isWhitespace(name.charAt(index))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add a client to a room, creating the room if it does not exist, and make it the client's active room.
+     * @param connection ClientConnection representing the client
+     * @param name String representing the name of the room
+     * @return ChatRoom which the client has joined
+     */
+    public ChatRoom join(ClientConnection connection, String name){
+        // creating the room and adding the member is atomic, so the room cannot be removed in between
+        ChatRoom room = rooms.compute(name, (key, existing) -> {
+            ChatRoom joined = existing == null ? new ChatRoom(key, historySize) : existing;
+            joined.addMember(connection);
+            return joined;
+        });
+        joinedRooms.computeIfAbsent(connection, key -> ConcurrentHashMap.newKeySet()).add(room);
+        activeRooms.put(connection, room);
+        return room;
+    }
+
+    /**
+     * Remove a client from a room. If it was the client's active room, another room the client
+     * is in becomes active.
+     * @param connection ClientConnection representing the client
+     * @param name String representing the name of the room
+     * @return true if the client was in the room
+     */
+    public boolean leave(ClientConnection connection, String name){
+        ChatRoom room = rooms.get(name);
+        if(room == null || !room.hasMember(connection)){
+            return false;
+        }
+        removeMember(room, connection);
+        Set<ChatRoom> joined = joinedRooms.get(connection);
+        if(joined != null){
+            joined.remove(room);
+            if(activeRooms.get(connection) == room){
+                ChatRoom next = joined.isEmpty() ? null : joined.iterator().next();
+                if(next == null){
+                    activeRooms.remove(connection);
+                }
+                else{
+                    activeRooms.put(connection, next);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove a client from every room it has joined, when it disconnects.
+     * @param connection ClientConnection representing the client
+     */
+    public void leaveAll(ClientConnection connection){
+        activeRooms.remove(connection);
+        Set<ChatRoom> joined = joinedRooms.remove(connection);
+        if(joined != null){
+            for(ChatRoom room:joined){
+                removeMember(room, connection);
+            }
+        }
+    }
+
+    /**
+     * Return a room, creating it without members if it does not exist. Used to rebuild the
+     * history of the rooms from the chat log.
+     * @param name String representing the name of the room
+     * @return ChatRoom with that name
+     */
+    public ChatRoom restoreRoom(String name){
+        return rooms.computeIfAbsent(name, key -> new ChatRoom(key, historySize));
+    }
+
+    /**
+     * Return the room a client's messages are sent to.
+     * @param connection ClientConnection representing the client
+     * @return ChatRoom which is active for the client, or null if it is not in any room
+     */
+    public ChatRoom getActiveRoom(ClientConnection connection){
+        return activeRooms.get(connection);
+    }
+
+    /**
+     * Return the names of the rooms a client has joined, sorted.
+     * @param connection ClientConnection representing the client
+     * @return List of String objects representing the names
+     */
+    public List<String> getJoinedRoomNames(ClientConnection connection){
+        List<String> names = new ArrayList<>();
+        Set<ChatRoom> joined = joinedRooms.get(connection);
+        if(joined != null){
+            for(ChatRoom room:joined){
+                names.add(room.getName());
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Return the rooms which currently exist, sorted by name.
+     * @return List of ChatRoom objects
+     */
+    public List<ChatRoom> getRooms(){
+        List<ChatRoom> list = new ArrayList<>(rooms.values());
+        list.sort((first, second) -> first.getName().compareTo(second.getName()));
+        return list;
+    }
+
+    /**
+     * Remove a client from a room, and the room itself if it is now empty.
+     * @param room ChatRoom which the client leaves
+     * @param connection ClientConnection representing the client
+     */
+    private void removeMember(ChatRoom room, ClientConnection connection){
+        room.removeMember(connection);
+        // joining happens inside compute as well, so nobody can join while the empty room is removed
+        rooms.computeIfPresent(room.getName(), (key, existing) ->
+                existing == room && existing.isEmpty() && !key.equals(DEFAULT_ROOM) ? null : existing);
+    }
+}
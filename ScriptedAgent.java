@@ -0,0 +1,36 @@
+import java.util.List;
+
+/**
+ * Class which represents an agent playing a fixed list of commands, then quitting.
+ */
+public class ScriptedAgent implements GameAgent {
+
+    // declaring fields
+    private final List<String> commands;
+    private int next = 0; // index of the next command
+
+    /**
+     * Constructor which stores the commands to play.
+     * @param commands List of the commands, in order
+     */
+    public ScriptedAgent(List<String> commands){
+        this.commands = commands;
+    }
+
+    /**
+     * Ignore the messages of the game, since the commands are fixed.
+     * @param message String representing the message
+     */
+    @Override
+    public void onOutput(String message){
+    }
+
+    /**
+     * Return the next command of the list, or "quit" once they have all been played.
+     * @return String representing the command
+     */
+    @Override
+    public String nextCommand(){
+        return next < commands.size() ? commands.get(next++) : "quit";
+    }
+}
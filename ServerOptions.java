@@ -0,0 +1,204 @@
+/**
+ * Class which holds the settings of the server, read from the command line arguments.
+ */
+public class ServerOptions {
+
+    // declaring fields
+    private int port = 14001; // default port
+    private String mode = ChatServer.THREAD_MODE; // default server engine
+    private int maxQueuedMessages = 1000; // per client
+    private long maxQueuedBytes = 1024 * 1024; // per client
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DROP_OLDEST;
+    private long flushWindowMicros = 1000; // how long a busy client's writer waits for more messages
+    private int maxBatchBytes = 64 * 1024; // a batch of messages is written once it reaches this size
+    private int historySize = 100; // messages kept per room
+    private int replayCount = 20; // messages of the room replayed to a client which joins it
+    private String logDirectory = null; // where the chat is persisted, null if it is not
+    private int segmentSize = 64 * 1024 * 1024; // size of a file of the chat log
+    private long fsyncIntervalMillis = 100; // how often the chat log is written to the disk
+    private int gameWorkers = Runtime.getRuntime().availableProcessors(); // threads playing the hosted games
+    private long gameTickMillis = 50; // how often each hosted game plays a step
+    private BotPlayer.Strategy botStrategy = BotPlayer.Strategy.LOCAL; // how the bot of the hosted games plays
+
+    /**
+     * Create the settings from the command line arguments. Unknown modes, policies and bots are
+     * reported and replaced by the defaults.
+     * @param args String[] representing the command line arguments
+     * @return ServerOptions object containing the settings
+     * @throws IllegalArgumentException if a numeric setting is not a number or is out of range
+     */
+    public static ServerOptions parse(String[] args){
+        ServerOptions options = new ServerOptions();
+        for(int index = 0; index + 1 < args.length; index++){
+            String value = args[index + 1];
+            switch (args[index]){
+                // check to see if user has requested the server to open on a different port than the default one
+                case "-csp": options.port = (int) parseNumber(args[index], value, 0, 65535); index++; break;
+                case "-mode": options.mode = value; index++; break;
+                case "-queueMessages": options.maxQueuedMessages = (int) parseNumber(args[index], value, 1, Integer.MAX_VALUE); index++; break;
+                case "-queueBytes": options.maxQueuedBytes = parseNumber(args[index], value, 1, Long.MAX_VALUE); index++; break;
+                case "-flushWindow": options.flushWindowMicros = parseNumber(args[index], value, 0, Long.MAX_VALUE / 1000); index++; break;
+                case "-batchBytes": options.maxBatchBytes = (int) parseNumber(args[index], value, 1, WriteCoalescer.MAX_BATCH_BYTES); index++; break;
+                case "-history": options.historySize = (int) parseNumber(args[index], value, 0, Integer.MAX_VALUE); index++; break;
+                case "-replay": options.replayCount = (int) parseNumber(args[index], value, 0, Integer.MAX_VALUE); index++; break;
+                case "-logDir": options.logDirectory = value; index++; break;
+                case "-segmentSize": options.segmentSize = (int) parseNumber(args[index], value, 1, Integer.MAX_VALUE); index++; break;
+                case "-fsyncInterval": options.fsyncIntervalMillis = parseNumber(args[index], value, 0, Long.MAX_VALUE); index++; break;
+                case "-gameWorkers": options.gameWorkers = (int) parseNumber(args[index], value, 1, Integer.MAX_VALUE); index++; break;
+                case "-gameTick": options.gameTickMillis = parseNumber(args[index], value, 1, Long.MAX_VALUE); index++; break;
+                case "-bot":
+                    try{
+                        options.botStrategy = BotPlayer.Strategy.valueOf(value.toUpperCase());
+                    } catch (IllegalArgumentException e){
+                        System.out.println("Unknown bot " + value + "...using the default bot, local");
+                    }
+                    index++;
+                    break;
+                case "-policy":
+                    SlowConsumerPolicy policy = SlowConsumerPolicy.fromName(value);
+                    if(policy == null){
+                        System.out.println("Unknown policy " + value + "...using the default policy, drop-oldest");
+                    }
+                    else{
+                        options.slowConsumerPolicy = policy;
+                    }
+                    index++;
+                    break;
+            }
+        }
+        if(!options.mode.equals(ChatServer.THREAD_MODE) && !options.mode.equals(ChatServer.VIRTUAL_MODE) &&
+                !options.mode.equals(ChatServer.NIO_MODE)){
+            System.out.println("Unknown mode " + options.mode + "...using the default mode, " + ChatServer.THREAD_MODE);
+            options.mode = ChatServer.THREAD_MODE;
+        }
+        return options;
+    }
+
+    /**
+     * Parse the value of a numeric setting, which must be a whole number in a range. Sizes, counts
+     * and intervals which must be positive are rejected at start-up rather than failing later.
+     * @param option String representing the name of the setting, such as "-batchBytes"
+     * @param value String representing its value
+     * @param min smallest valid value
+     * @param max largest valid value
+     * @return the value
+     * @throws IllegalArgumentException if the value is not a whole number from min to max
+     */
+    private static long parseNumber(String option, String value, long min, long max){
+        long number;
+        try{
+            number = Long.parseLong(value);
+        } catch (NumberFormatException e){
+            number = min - 1;
+        }
+        if(number < min || number > max){
+            throw new IllegalArgumentException(option + " must be a whole number from " + min + " to " + max +
+                    ", not " + value);
+        }
+        return number;
+    }
+
+    /**
+     * Return the port on which the server is opened.
+     * @return integer representing the port
+     */
+    public int getPort(){
+        return port;
+    }
+
+    /**
+     * Set the port on which the server is opened.
+     * @param port integer representing the port
+     */
+    public void setPort(int port){
+        this.port = port;
+    }
+
+    /**
+     * Return the server engine serving the connections.
+     * @return String representing the mode: ChatServer.THREAD_MODE, VIRTUAL_MODE or NIO_MODE
+     */
+    public String getMode(){
+        return mode;
+    }
+
+    /**
+     * Return the number of messages kept in the history of each room.
+     * @return capacity of a room's history
+     */
+    public int getHistorySize(){
+        return historySize;
+    }
+
+    /**
+     * Return the number of recent messages replayed to a client when it joins a room.
+     * @return number of messages, 0 if nothing is replayed
+     */
+    public int getReplayCount(){
+        return replayCount;
+    }
+
+    /**
+     * Return the directory in which the chat is persisted.
+     * @return String representing the directory, or null if the chat is not persisted
+     */
+    public String getLogDirectory(){
+        return logDirectory;
+    }
+
+    /**
+     * Return the size of a new file of the chat log.
+     * @return size in bytes
+     */
+    public int getSegmentSize(){
+        return segmentSize;
+    }
+
+    /**
+     * Return how often the chat log is written to the disk.
+     * @return interval in milliseconds, 0 to write every message before it is sent
+     */
+    public long getFsyncIntervalMillis(){
+        return fsyncIntervalMillis;
+    }
+
+    /**
+     * Return the number of threads which play the games hosted by the server.
+     * @return number of workers
+     */
+    public int getGameWorkers(){
+        return gameWorkers;
+    }
+
+    /**
+     * Return how often each game hosted by the server plays a step.
+     * @return time between two ticks, in milliseconds
+     */
+    public long getGameTickMillis(){
+        return gameTickMillis;
+    }
+
+    /**
+     * Return how the bot of the games hosted by the server plays.
+     * @return Strategy of the bot
+     */
+    public BotPlayer.Strategy getBotStrategy(){
+        return botStrategy;
+    }
+
+    /**
+     * Create an empty outbound queue for a new client, using the configured limits and policy.
+     * @return OutboundQueue object for the client
+     */
+    public OutboundQueue createOutboundQueue(){
+        return new OutboundQueue(maxQueuedMessages, maxQueuedBytes, slowConsumerPolicy);
+    }
+
+    /**
+     * Create the object which batches the writes for a new client, using the configured window and threshold.
+     * @return WriteCoalescer object for the client
+     */
+    public WriteCoalescer createWriteCoalescer(){
+        return new WriteCoalescer(flushWindowMicros * 1000, maxBatchBytes);
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class which keeps track of the clients connected to the server. Each user-name is claimed
+ * atomically by one connection, so two clients can never get the same user-name, and every
+ * change is O(1).
+ */
+public class SessionRegistry {
+
+    // declaring fields
+    // connections which have claimed a user-name, by user-name
+    private final ConcurrentHashMap<String, ClientConnection> sessions = new ConcurrentHashMap<>();
+    // every accepted connection, including the ones which have not chosen a user-name yet
+    private final Set<ClientConnection> connections = ConcurrentHashMap.newKeySet();
+    // interned ids of the user-names, which stay the same when a user reconnects
+    private final ConcurrentHashMap<String, Integer> senderIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSenderId = new AtomicInteger(1); // 0 means no sender
+
+    /**
+     * Add a newly accepted connection, which has not chosen a user-name yet.
+     * @param connection ClientConnection representing the new client
+     */
+    public void addConnection(ClientConnection connection){
+        connections.add(connection);
+    }
+
+    /**
+     * Try to claim a user-name for a connection.
+     * @param userName String representing the requested user-name
+     * @param connection ClientConnection which requests it
+     * @return true if the user-name was free and now belongs to the connection, false if it is taken
+     */
+    public boolean claim(String userName, ClientConnection connection){
+        return sessions.putIfAbsent(userName, connection) == null;
+    }
+
+    /**
+     * Remove a connection and free its user-name, if it had one.
+     * @param userName String representing the user-name of the connection, or null
+     * @param connection ClientConnection which is removed
+     */
+    public void release(String userName, ClientConnection connection){
+        connections.remove(connection);
+        // only free the user-name if it belongs to this connection
+        if(userName != null){
+            sessions.remove(userName, connection);
+        }
+    }
+
+    /**
+     * Return the interned id of a user-name, used to identify senders in the binary protocol.
+     * @param userName String representing the user-name
+     * @return id of the user-name, the same every time it is requested
+     */
+    public int internSender(String userName){
+        return senderIds.computeIfAbsent(userName, name -> nextSenderId.getAndIncrement());
+    }
+
+    /**
+     * Return the connection which has claimed a user-name.
+     * @param userName String representing the user-name
+     * @return ClientConnection of the user, or null if nobody uses that user-name
+     */
+    public ClientConnection get(String userName){
+        return sessions.get(userName);
+    }
+
+    /**
+     * Check if a user-name has been claimed.
+     * @param userName String representing the user-name
+     * @return true if a connected client uses that user-name
+     */
+    public boolean contains(String userName){
+        return sessions.containsKey(userName);
+    }
+
+    /**
+     * Return every accepted connection, including the ones which have not chosen a user-name yet.
+     * @return read-only Collection of ClientConnection objects
+     */
+    public Collection<ClientConnection> getConnections(){
+        return Collections.unmodifiableSet(connections);
+    }
+
+    /**
+     * Return the number of connections which have a user-name.
+     * @return number of users
+     */
+    public int size(){
+        return sessions.size();
+    }
+}
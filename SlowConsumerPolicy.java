@@ -0,0 +1,23 @@
+/**
+ * Enum which represents what the server does with a client whose outbound queue is full,
+ * because the client reads its messages slower than they are sent.
+ */
+public enum SlowConsumerPolicy {
+    DROP_OLDEST, // drop the oldest queued messages to make room for the new one
+    DROP_NEWEST, // drop the new message
+    DISCONNECT; // disconnect the client
+
+    /**
+     * Return the policy with the given command line name, e.g. "drop-oldest".
+     * @param name String representing the name of the policy
+     * @return SlowConsumerPolicy with that name, or null if there is no such policy
+     */
+    public static SlowConsumerPolicy fromName(String name){
+        for(SlowConsumerPolicy policy: values()){
+            if(policy.name().replace('_', '-').equalsIgnoreCase(name)){
+                return policy;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,282 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Class which plays many seeded games of Dungeons of Doom on all the cores (see GameSimulation)
+ * and prints how often each side wins, to measure changes to the bot or the difficulty of a map.
+ * The games of a tournament only depend on its seed, so running it again gives the same results.
+ * It also prints the number of games played per second, as a benchmark of the game engine.
+ *
+ * Usage: java Tournament [-map easyMap.txt] [-games 100000] [-seed 1] [-maxTurns 1000]
+ *                        [-threads n] [-agent greedy|scripted] [-bot local|planning]
+ */
+public class Tournament {
+
+    /**
+     * Class which represents the totals of a number of games. Totals of separate games are merged.
+     */
+    public static class Summary {
+
+        // declaring fields
+        private long games;
+        private long playerWins;
+        private long botWins;
+        private long unfinished; // games stopped after the maximum number of turns
+        private long caught;
+        private long turns;
+        private long gold;
+
+        /**
+         * Add the result of a game.
+         * @param result GameResult of the game
+         */
+        public void add(GameResult result){
+            games++;
+            switch(result.getWinner()){
+                case PLAYER:
+                    playerWins++;
+                    break;
+                case BOT:
+                    botWins++;
+                    break;
+                default:
+                    unfinished++;
+            }
+            if(result.wasPlayerCaught()){
+                caught++;
+            }
+            turns += result.getTurns();
+            gold += result.getGold();
+        }
+
+        /**
+         * Add the totals of other games.
+         * @param other Summary of the other games
+         * @return this Summary, with both totals
+         */
+        public Summary merge(Summary other){
+            games += other.games;
+            playerWins += other.playerWins;
+            botWins += other.botWins;
+            unfinished += other.unfinished;
+            caught += other.caught;
+            turns += other.turns;
+            gold += other.gold;
+            return this;
+        }
+
+        /**
+         * Return the number of games.
+         * @return number of games
+         */
+        public long getGames(){
+            return games;
+        }
+
+        /**
+         * Return the number of games won by the player.
+         * @return number of wins
+         */
+        public long getPlayerWins(){
+            return playerWins;
+        }
+
+        /**
+         * Return the number of games won by the bot.
+         * @return number of wins
+         */
+        public long getBotWins(){
+            return botWins;
+        }
+
+        /**
+         * Return the number of games stopped after the maximum number of turns.
+         * @return number of unfinished games
+         */
+        public long getUnfinished(){
+            return unfinished;
+        }
+
+        /**
+         * Return the totals as text.
+         * @return String describing the games
+         */
+        @Override
+        public String toString(){
+            double count = Math.max(games, 1);
+            return String.format("Games: %d%nPlayer wins: %d (%.2f%%)%nBot wins: %d (%.2f%%), caught: %d%n" +
+                            "Unfinished: %d%nAverage turns: %.1f%nAverage gold: %.2f",
+                    games, playerWins, 100 * playerWins / count, botWins, 100 * botWins / count, caught,
+                    unfinished, turns / count, gold / count);
+        }
+    }
+
+    /**
+     * Class which represents the task of playing a range of the tournament's games, split
+     * in halves until the ranges are small enough.
+     */
+    private static class GamesTask extends RecursiveTask<Summary> {
+
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 256; // games played by a task without splitting it
+
+        private final Map map;
+        private final Function<Random, GameAgent> agents;
+        private final long seed;
+        private final int maxTurns;
+        private final BotPlayer.Strategy bot;
+        private final long from, to; // indexes of the games, the last one excluded
+
+        /**
+         * Constructor which stores the range of games to play.
+         * @param map Map object the games are played on
+         * @param agents Function which creates the agent of each game
+         * @param seed seed of the tournament
+         * @param maxTurns number of commands after which a game is stopped
+         * @param bot how the bot plays
+         * @param from index of the first game
+         * @param to index after the last game
+         */
+        private GamesTask(Map map, Function<Random, GameAgent> agents, long seed, int maxTurns, BotPlayer.Strategy bot,
+                          long from, long to){
+            this.map = map;
+            this.agents = agents;
+            this.seed = seed;
+            this.maxTurns = maxTurns;
+            this.bot = bot;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Play the games of the range, or split it.
+         * @return Summary of the games
+         */
+        @Override
+        protected Summary compute(){
+            if(to - from <= THRESHOLD){
+                Summary summary = new Summary();
+                for(long index = from; index < to; index++){
+                    summary.add(GameSimulation.play(map, agents, gameSeed(seed, index), maxTurns, bot));
+                }
+                return summary;
+            }
+            long middle = (from + to) >>> 1;
+            GamesTask first = new GamesTask(map, agents, seed, maxTurns, bot, from, middle);
+            first.fork();
+            Summary second = new GamesTask(map, agents, seed, maxTurns, bot, middle, to).compute();
+            return first.join().merge(second);
+        }
+    }
+
+    /**
+     * Play a tournament.
+     * @param map Map object the games are played on
+     * @param agents Function which creates the agent of each game, given the game's Random
+     * @param games number of games
+     * @param seed seed of the tournament
+     * @param maxTurns number of commands after which a game is stopped
+     * @param bot how the bot plays
+     * @param threads number of threads which play the games
+     * @return Summary of the games
+     */
+    public static Summary run(Map map, Function<Random, GameAgent> agents, long games, long seed, int maxTurns,
+                              BotPlayer.Strategy bot, int threads){
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try{
+            return pool.invoke(new GamesTask(map, agents, seed, maxTurns, bot, 0, games));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Return the seed of a game of a tournament. Neighbouring games get unrelated seeds
+     * (the finalizer of SplitMix64).
+     * @param seed seed of the tournament
+     * @param index index of the game
+     * @return seed of the game
+     */
+    public static long gameSeed(long seed, long index){
+        long mixed = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        mixed = (mixed ^ (mixed >>> 30)) * 0xBF58476D1CE4E5B9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94D049BB133111EBL;
+        return mixed ^ (mixed >>> 31);
+    }
+
+    /**
+     * Main method which parses the arguments, plays the tournament and prints the results.
+     * @param args the arguments
+     */
+    public static void main(String[] args){
+        String mapName = "easyMap.txt";
+        long games = 100000;
+        long seed = 1;
+        int maxTurns = GameSimulation.DEFAULT_MAX_TURNS;
+        String agentName = "greedy";
+        BotPlayer.Strategy bot = BotPlayer.Strategy.LOCAL;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try{
+            for(int index = 0; index < args.length; index += 2){
+                String value = args[index + 1];
+                switch(args[index]){
+                    case "-map":
+                        mapName = value;
+                        break;
+                    case "-games":
+                        games = Long.parseLong(value);
+                        break;
+                    case "-seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "-maxTurns":
+                        maxTurns = Integer.parseInt(value);
+                        break;
+                    case "-threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "-agent":
+                        agentName = value;
+                        break;
+                    case "-bot":
+                        bot = BotPlayer.Strategy.valueOf(value.toUpperCase());
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[index]);
+                }
+            }
+            if(threads < 1 || games < 0 || maxTurns < 1){
+                throw new IllegalArgumentException("Invalid option value");
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e){
+            System.out.println("Usage: java Tournament [-map easyMap.txt] [-games 100000] [-seed 1] " +
+                    "[-maxTurns 1000] [-threads n] [-agent greedy|scripted] [-bot local|planning]");
+            return;
+        }
+        Function<Random, GameAgent> agents;
+        if(agentName.equals("greedy")){
+            agents = GreedyAgent::new;
+        }
+        else if(agentName.equals("scripted")){
+            // walks in a square, looking around at each corner
+            agents = random -> new ScriptedAgent(Arrays.asList("hello", "look", "move n", "move n", "pickup",
+                    "look", "move e", "move e", "pickup", "look", "move s", "move s", "pickup",
+                    "look", "move w", "move w", "pickup"));
+        }
+        else{
+            System.out.println("Unknown agent " + agentName + ", use greedy or scripted.");
+            return;
+        }
+        Map map = new Map(mapName);
+        System.out.println("Playing " + games + " games on " + map.getName() + " with the " + agentName +
+                " agent against the " + bot.name().toLowerCase() + " bot, on " + threads + " threads...");
+        long start = System.nanoTime();
+        Summary summary = run(map, agents, games, seed, maxTurns, bot, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(summary);
+        System.out.printf("Time: %.2f s, %.0f games/s%n", seconds, summary.getGames() / seconds);
+    }
+}
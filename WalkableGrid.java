@@ -0,0 +1,25 @@
+/**
+ * Interface which represents a grid of tiles the pathfinding works on (see PathFinder): tiles are
+ * numbered row after row, from 0 to rows * columns - 1, and each one can be walked on or not.
+ */
+public interface WalkableGrid {
+
+    /**
+     * Return the number of rows.
+     * @return number of rows
+     */
+    int getRows();
+
+    /**
+     * Return the number of columns.
+     * @return number of columns
+     */
+    int getColumns();
+
+    /**
+     * Check if a tile can be walked on.
+     * @param index index of the tile, row * columns + column
+     * @return true if the tile is not a wall
+     */
+    boolean isWalkable(int index);
+}
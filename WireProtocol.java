@@ -0,0 +1,206 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class which describes the compact binary protocol clients can use instead of the newline
+ * terminated text protocol. A client asks for it by sending PROTOCOL_REQUEST before its user-name;
+ * the server answers with the same line and, once the user-name has been confirmed, both sides
+ * switch to frames of the form:
+ *
+ * [int length][byte type][int sender id][payload, UTF-8]
+ *
+ * where length counts the type, the sender id and the payload. Senders are identified by an
+ * interned id instead of their name; the server announces the name of an id with a SENDER frame
+ * before the first message from it.
+ */
+public final class WireProtocol {
+
+    /**
+     * Class which represents one received frame.
+     */
+    public static class Frame {
+
+        private final byte type;
+        private final int senderId;
+        private final String payload;
+
+        /**
+         * Constructor which stores the content of the frame.
+         * @param type type of the frame
+         * @param senderId id of the sender, 0 if there is none
+         * @param payload String representing the decoded payload
+         */
+        public Frame(byte type, int senderId, String payload){
+            this.type = type;
+            this.senderId = senderId;
+            this.payload = payload;
+        }
+
+        /**
+         * Return the type of the frame.
+         * @return one of MESSAGE, SENDER, SERVER or COMMAND
+         */
+        public byte getType(){
+            return type;
+        }
+
+        /**
+         * Return the id of the sender.
+         * @return id of the sender, 0 if there is none
+         */
+        public int getSenderId(){
+            return senderId;
+        }
+
+        /**
+         * Return the payload of the frame.
+         * @return String representing the payload
+         */
+        public String getPayload(){
+            return payload;
+        }
+    }
+
+    // declaring fields
+    public static final String PROTOCOL_REQUEST = "/protocol binary"; // line which asks for the binary protocol
+    public static final byte MESSAGE = 1; // chat message; from the server it carries the sender's id
+    public static final byte SENDER = 2; // from the server: the payload is the name of the sender id
+    public static final byte SERVER = 3; // from the server: message of the server itself
+    public static final byte COMMAND = 4; // from a client: command such as "/disconnect"
+    public static final int HEADER_SIZE = 5; // type and sender id
+    public static final int MAX_FRAME_LENGTH = 64 * 1024; // longer frames close the connection
+
+    /**
+     * Private constructor, since the class only has static methods.
+     */
+    private WireProtocol(){
+    }
+
+    /**
+     * Read one line, terminated by "\n" or "\r\n", byte by byte, so that the bytes following it
+     * (possibly binary frames) are left in the stream.
+     * @param in InputStream to read from, which should be buffered
+     * @param lineBuffer ByteArrayOutputStream reused to collect the bytes of the line
+     * @return String representing the line, or null if the stream has ended
+     * @throws IOException if the stream cannot be read
+     */
+    public static String readLine(InputStream in, ByteArrayOutputStream lineBuffer) throws IOException {
+        lineBuffer.reset();
+        int read;
+        while((read = in.read()) != '\n'){
+            if(read == -1){
+                return lineBuffer.size() == 0 ? null : lineBuffer.toString(StandardCharsets.UTF_8);
+            }
+            if(lineBuffer.size() >= MAX_FRAME_LENGTH){
+                throw new IOException("Line too long");
+            }
+            lineBuffer.write(read);
+        }
+        String line = lineBuffer.toString(StandardCharsets.UTF_8);
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    /**
+     * Read one frame from a stream.
+     * @param in DataInputStream to read from
+     * @return Frame object, or null if the stream has ended
+     * @throws IOException if the stream cannot be read or the frame is not valid
+     */
+    public static Frame readFrame(DataInputStream in) throws IOException {
+        int length;
+        try{
+            length = in.readInt();
+        } catch (EOFException e){
+            return null;
+        }
+        checkLength(length);
+        byte type = in.readByte();
+        int senderId = in.readInt();
+        byte[] payload = new byte[length - HEADER_SIZE];
+        in.readFully(payload);
+        return new Frame(type, senderId, new String(payload, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode one frame from a buffer, if it contains a complete one.
+     * @param buffer ByteBuffer, ready to be read, which holds the received bytes
+     * @return Frame object, or null if the frame is not complete yet; in that case
+     *          the buffer's position is not changed
+     * @throws IOException if the frame is not valid
+     */
+    public static Frame decodeFrame(ByteBuffer buffer) throws IOException {
+        if(buffer.remaining() < 4){
+            return null;
+        }
+        int length = buffer.getInt(buffer.position());
+        checkLength(length);
+        if(buffer.remaining() < 4 + length){
+            return null;
+        }
+        buffer.getInt();
+        byte type = buffer.get();
+        int senderId = buffer.getInt();
+        int payloadLength = length - HEADER_SIZE;
+        String payload;
+        if(buffer.hasArray()){
+            payload = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), payloadLength,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + payloadLength);
+        }
+        else{
+            byte[] bytes = new byte[payloadLength];
+            buffer.get(bytes);
+            payload = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new Frame(type, senderId, payload);
+    }
+
+    /**
+     * Return the number of bytes a frame needs, once its length prefix has been received.
+     * @param buffer ByteBuffer, ready to be read, which starts with a length prefix
+     * @return total size of the frame, including the prefix, or 0 if the prefix is not complete
+     * @throws IOException if the frame is not valid
+     */
+    public static int frameSize(ByteBuffer buffer) throws IOException {
+        if(buffer.remaining() < 4){
+            return 0;
+        }
+        int length = buffer.getInt(buffer.position());
+        checkLength(length);
+        return 4 + length;
+    }
+
+    /**
+     * Write one frame to a stream and flush it.
+     * @param out DataOutputStream to write to
+     * @param type type of the frame
+     * @param senderId id of the sender, 0 if there is none
+     * @param payload String representing the payload
+     * @throws IOException if the stream cannot be written
+     */
+    public static void writeFrame(DataOutputStream out, byte type, int senderId, String payload) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(HEADER_SIZE + bytes.length);
+        out.writeByte(type);
+        out.writeInt(senderId);
+        out.write(bytes);
+        out.flush();
+    }
+
+    /**
+     * Check that the length prefix of a frame is valid.
+     * @param length length read from the prefix
+     * @throws IOException if the length is not valid
+     */
+    private static void checkLength(int length) throws IOException {
+        if(length < HEADER_SIZE || length > MAX_FRAME_LENGTH){
+            throw new IOException("Invalid frame length " + length);
+        }
+    }
+}
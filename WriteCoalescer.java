@@ -0,0 +1,84 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class which decides how the queued messages of one client are batched into socket writes.
+ * When the client is idle, a message is written as soon as it is queued. When the client is
+ * busy (its last write carried more than one message), the writer waits up to a short window
+ * for more messages, or until the batch reaches a byte threshold, and writes them all at once.
+ */
+public class WriteCoalescer {
+
+    // declaring fields
+    public static final int MAX_BATCH_BYTES = 1024 * 1024; // largest batching threshold, so batches stay small
+    private static final AtomicLong socketWrites = new AtomicLong(); // for all the clients
+    private static final AtomicLong writtenMessages = new AtomicLong(); // for all the clients
+    private final long windowNanos; // how long a busy writer waits for more messages
+    private final int maxBatchBytes; // a batch is written as soon as it reaches this size
+    private volatile boolean busy = false;
+
+    /**
+     * Constructor which sets the batching window and threshold.
+     * @param windowNanos maximum time, in nanoseconds, a busy writer waits for more messages
+     * @param maxBatchBytes number of bytes after which a batch is written without waiting, from 1 to MAX_BATCH_BYTES
+     * @throws IllegalArgumentException if the window is negative or the threshold is out of range
+     */
+    public WriteCoalescer(long windowNanos, int maxBatchBytes){
+        if(windowNanos < 0 || maxBatchBytes <= 0 || maxBatchBytes > MAX_BATCH_BYTES){
+            throw new IllegalArgumentException("Invalid batching window " + windowNanos + " or threshold " + maxBatchBytes);
+        }
+        this.windowNanos = windowNanos;
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * Check if the writer should wait for more messages before writing a batch.
+     * @param batchBytes number of bytes already in the batch
+     * @return true if the client is busy and the batch has not reached the threshold yet
+     */
+    public boolean shouldWaitForMore(long batchBytes){
+        return busy && windowNanos > 0 && batchBytes < maxBatchBytes;
+    }
+
+    /**
+     * Let the coalescer know a batch has been written, so it can adapt to the load.
+     * @param messages number of messages in the batch
+     * @param writes number of socket writes used to write the batch
+     */
+    public void batchWritten(int messages, int writes){
+        busy = messages > 1;
+        writtenMessages.addAndGet(messages);
+        socketWrites.addAndGet(writes);
+    }
+
+    /**
+     * Return the maximum time a busy writer waits for more messages.
+     * @return the window in nanoseconds
+     */
+    public long getWindowNanos(){
+        return windowNanos;
+    }
+
+    /**
+     * Return the number of bytes after which a batch is written without waiting.
+     * @return the threshold in bytes
+     */
+    public int getMaxBatchBytes(){
+        return maxBatchBytes;
+    }
+
+    /**
+     * Return the number of socket writes done for all the clients.
+     * @return number of socket writes
+     */
+    public static long getSocketWrites(){
+        return socketWrites.get();
+    }
+
+    /**
+     * Return the number of messages written to all the clients.
+     * @return number of written messages
+     */
+    public static long getWrittenMessages(){
+        return writtenMessages.get();
+    }
+}